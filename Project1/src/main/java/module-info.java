@@ -2,6 +2,11 @@ module se233.project1 {
     requires javafx.controls;
     requires javafx.fxml;
     requires jaffree;
+    // Optional: the DSP kernels use it only when the JVM runs with --add-modules jdk.incubator.vector.
+    // Only VectorDsp imports it; reading it makes javac warn about an incubating module on every build.
+    requires static jdk.incubator.vector;
+    // Collector counts for --benchmark-io; its allocation counter is read reflectively from jdk.management
+    requires java.management;
 
 
     opens se233.project1 to javafx.fxml;
@@ -1,10 +1,86 @@
 package se233.project1;
 
 import javafx.application.Application;
+import se233.project1.controller.ConversionCoordinator;
+import se233.project1.controller.ConversionWorker;
+import se233.project1.controller.CpuBenchmark;
+import se233.project1.controller.DspBenchmark;
+import se233.project1.controller.IoBenchmark;
+import se233.project1.controller.PeerWorker;
+import se233.project1.controller.StartupBenchmark;
+import se233.project1.model.ConversionConfig;
 import se233.project1.view.AudioConverter;
 
+import java.io.File;
+
 public class Launcher {
-    public static void main(String[] args) {
-        Application.launch(AudioConverter.class, args);
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--coordinator")) {
+            runCoordinator(args);
+        } else if (args.length > 0 && args[0].equals("--worker")) {
+            runWorker(args);
+        } else if (args.length > 0 && args[0].equals("--peer")) {
+            runPeer(args);
+        } else if (args.length > 0 && args[0].equals("--benchmark-dsp")) {
+            new DspBenchmark().run(System.out);
+        } else if (args.length > 0 && args[0].equals("--benchmark-cpu")) {
+            new CpuBenchmark(args.length > 1 ? Integer.parseInt(args[1]) : 0).run(System.out);
+        } else if (args.length > 0 && args[0].equals("--benchmark-io")) {
+            new IoBenchmark(args.length > 1 ? Integer.parseInt(args[1]) : 0).run(System.out);
+        } else if (args.length > 0 && args[0].equals("--benchmark-startup")) {
+            new StartupBenchmark(args.length > 1 ? Integer.parseInt(args[1]) : 0).run(System.out, args);
+        } else if (args.length > 0 && args[0].equals(StartupBenchmark.PROBE_ARGUMENT)) {
+            StartupBenchmark.markProbe();
+            Application.launch(AudioConverter.class);
+        } else {
+            Application.launch(AudioConverter.class, args);
+        }
+    }
+
+    // --coordinator <port> <input file>...
+    private static void runCoordinator(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: --coordinator <port> <input file>...");
+            System.exit(2);
+        }
+        ConversionConfig config = new ConversionConfig();
+        for (int i = 2; i < args.length; i++) {
+            config.addInputFile(new File(args[i]));
+        }
+
+        ConversionCoordinator coordinator = new ConversionCoordinator(config, Integer.parseInt(args[1]));
+        coordinator.setLogCallback(System.out::println);
+        coordinator.start();
+        try {
+            coordinator.awaitCompletion();
+        } finally {
+            coordinator.shutdown();
+        }
+        System.exit(coordinator.getFailedJobCount() == 0 ? 0 : 1);
+    }
+
+    // --worker <host:port> <output directory>
+    private static void runWorker(String[] args) throws Exception {
+        if (args.length < 3 || !args[1].contains(":")) {
+            System.err.println("Usage: --worker <host:port> <output directory>");
+            System.exit(2);
+        }
+        String host = args[1].substring(0, args[1].lastIndexOf(':'));
+        int port = Integer.parseInt(args[1].substring(args[1].lastIndexOf(':') + 1));
+
+        ConversionWorker worker = new ConversionWorker(host, port, new File(args[2]));
+        worker.setLogCallback(System.out::println);
+        worker.run();
+    }
+
+    // --peer <shared input directory> <output directory> [format]
+    private static void runPeer(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: --peer <shared input directory> <output directory> [format]");
+            System.exit(2);
+        }
+        PeerWorker peer = new PeerWorker(new File(args[1]), new File(args[2]), args.length > 3 ? args[3] : null);
+        peer.setLogCallback(System.out::println);
+        peer.run();
     }
 }
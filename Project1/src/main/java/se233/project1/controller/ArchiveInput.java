@@ -0,0 +1,255 @@
+package se233.project1.controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+// Treats ZIP and uncompressed TAR archives as read-only directories whose entries stream straight into a job
+public class ArchiveInput {
+    private static final String[] ARCHIVE_EXTENSIONS = {"zip", "tar"};
+    private static final int TAR_BLOCK = 512;
+
+    // ZipFile is safe for concurrent getInputStream calls, so one handle per archive serves every job
+    private static final Map<File, ZipFile> OPEN_ZIPS = new ConcurrentHashMap<>();
+    private static final Map<File, Map<String, long[]>> TAR_INDEX = new ConcurrentHashMap<>();
+
+    private ArchiveInput() {
+    }
+
+    public static boolean isArchive(File file) {
+        String name = file.getName().toLowerCase();
+        for (String extension : ARCHIVE_EXTENSIONS) {
+            if (name.endsWith("." + extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static List<Entry> listEntries(File archive) throws IOException {
+        String name = archive.getName().toLowerCase();
+        if (name.endsWith(".zip")) {
+            return listZip(archive);
+        }
+        if (name.endsWith(".tar")) {
+            return listTar(archive);
+        }
+        throw new IOException("Unsupported archive type: " + archive.getName());
+    }
+
+    public static ReadableByteChannel openEntry(File archive, String entryName) throws IOException {
+        String name = archive.getName().toLowerCase();
+        if (name.endsWith(".zip")) {
+            ZipFile zip = zipFor(archive);
+            ZipEntry entry = zip.getEntry(entryName);
+            if (entry == null) {
+                throw new IOException("No entry " + entryName + " in " + archive.getName());
+            }
+            return Channels.newChannel(zip.getInputStream(entry));
+        }
+
+        Map<String, long[]> index = TAR_INDEX.get(archive);
+        if (index == null) {
+            listTar(archive);
+            index = TAR_INDEX.get(archive);
+        }
+        long[] location = index.get(entryName);
+        if (location == null) {
+            throw new IOException("No entry " + entryName + " in " + archive.getName());
+        }
+        return new BoundedChannel(FileChannel.open(archive.toPath(), StandardOpenOption.READ), location[0], location[1]);
+    }
+
+    public static long entrySize(File archive, String entryName) throws IOException {
+        if (archive.getName().toLowerCase().endsWith(".zip")) {
+            ZipEntry entry = zipFor(archive).getEntry(entryName);
+            if (entry == null) {
+                throw new IOException("No entry " + entryName + " in " + archive.getName());
+            }
+            return entry.getSize();
+        }
+        if (!TAR_INDEX.containsKey(archive)) {
+            listTar(archive);
+        }
+        long[] location = TAR_INDEX.get(archive).get(entryName);
+        if (location == null) {
+            throw new IOException("No entry " + entryName + " in " + archive.getName());
+        }
+        return location[1];
+    }
+
+    public static void closeAll() {
+        for (ZipFile zip : OPEN_ZIPS.values()) {
+            try {
+                zip.close();
+            } catch (IOException ignored) {
+            }
+        }
+        OPEN_ZIPS.clear();
+        TAR_INDEX.clear();
+    }
+
+    private static ZipFile zipFor(File archive) throws IOException {
+        ZipFile zip = OPEN_ZIPS.get(archive);
+        if (zip == null) {
+            ZipFile opened = new ZipFile(archive);
+            zip = OPEN_ZIPS.putIfAbsent(archive, opened);
+            if (zip == null) {
+                zip = opened;
+            } else {
+                opened.close();
+            }
+        }
+        return zip;
+    }
+
+    private static List<Entry> listZip(File archive) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        Enumeration<? extends ZipEntry> all = zipFor(archive).entries();
+        while (all.hasMoreElements()) {
+            ZipEntry entry = all.nextElement();
+            if (!entry.isDirectory()) {
+                entries.add(new Entry(entry.getName(), entry.getSize()));
+            }
+        }
+        return entries;
+    }
+
+    // Walks the 512 byte headers and seeks over the data, so listing never reads the audio itself
+    private static List<Entry> listTar(File archive) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        Map<String, long[]> index = new ConcurrentHashMap<>();
+        try (FileChannel channel = FileChannel.open(archive.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(TAR_BLOCK);
+            long position = 0;
+            String longName = null;
+            while (position + TAR_BLOCK <= channel.size()) {
+                header.clear();
+                while (header.hasRemaining()) {
+                    if (channel.read(header, position + header.position()) < 0) {
+                        break;
+                    }
+                }
+                byte[] block = header.array();
+                if (block[0] == 0) {
+                    break;
+                }
+                long size = parseOctal(block, 124, 12);
+                byte type = block[156];
+                long dataOffset = position + TAR_BLOCK;
+
+                if (type == 'L') {
+                    ByteBuffer nameBuffer = ByteBuffer.allocate((int) size);
+                    channel.read(nameBuffer, dataOffset);
+                    longName = cString(nameBuffer.array(), 0, (int) size);
+                } else if (type == '0' || type == 0) {
+                    String entryName = longName != null ? longName : tarName(block);
+                    entries.add(new Entry(entryName, size));
+                    index.put(entryName, new long[]{dataOffset, size});
+                    longName = null;
+                } else {
+                    longName = null;
+                }
+                position = dataOffset + (size + TAR_BLOCK - 1) / TAR_BLOCK * TAR_BLOCK;
+            }
+        }
+        TAR_INDEX.put(archive, index);
+        return entries;
+    }
+
+    private static String tarName(byte[] block) {
+        String name = cString(block, 0, 100);
+        boolean ustar = cString(block, 257, 6).startsWith("ustar");
+        String prefix = ustar ? cString(block, 345, 155) : "";
+        return prefix.isEmpty() ? name : prefix + "/" + name;
+    }
+
+    private static String cString(byte[] bytes, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && bytes[end] != 0) {
+            end++;
+        }
+        return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static long parseOctal(byte[] bytes, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '7') {
+                value = value * 8 + (b - '0');
+            } else if (value > 0 || (b != ' ' && b != 0)) {
+                break;
+            }
+        }
+        return value;
+    }
+
+    public static class Entry {
+        private final String name;
+        private final long size;
+
+        public Entry(String name, long size) {
+            this.name = name;
+            this.size = size;
+        }
+
+        public String getName() { return name; }
+        public long getSize() { return size; }
+    }
+
+    // Positional reads over one TAR member, so several entries of one archive can be read in parallel
+    private static class BoundedChannel implements ReadableByteChannel {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        private BoundedChannel(FileChannel channel, long start, long length) {
+            this.channel = channel;
+            this.position = start;
+            this.end = start + length;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int limit = dst.limit();
+            if (dst.remaining() > end - position) {
+                dst.limit(dst.position() + (int) (end - position));
+            }
+            try {
+                int read = channel.read(dst, position);
+                if (read > 0) {
+                    position += read;
+                }
+                return read;
+            } finally {
+                dst.limit(limit);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,474 @@
+package se233.project1.controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/*
+ * Packs every output into one ZIP of STORED entries. Whichever output starts writing while the archive is free
+ * streams straight into it: its local header is written with blank sizes and patched once the entry is done,
+ * so those bytes are written exactly once. Outputs that start while another one streams are kept in memory
+ * and take the stream over on their next write once it is free. Only when every waiting entry together would
+ * pass BUFFER_BUDGET_BYTES does an entry send the rest of its bytes to a temp file, keeping what it already holds
+ * on the heap; only the bytes spilled before the takeover cost one more write and read. A streamed entry that is abandoned is cut off again, since nothing follows it.
+ * The central directory is written on close, with ZIP64 records once the archive passes 4 GB.
+ */
+public class ArchiveSink implements OutputSink {
+    private static final int CHUNK_BYTES = 256 * 1024;
+    private static final long BUFFER_BUDGET_BYTES = 32L * 1024 * 1024;
+    // Local headers carry 32-bit sizes, which are patched in after the data, so there is no room for ZIP64 there
+    private static final long MAX_ENTRY_BYTES = 0xfffffffeL;
+    private static final int LOCAL_HEADER_BYTES = 30;
+    private static final int FLAG_UTF8 = 0x0800;
+
+    private final File archiveFile;
+    private final FileChannel archive;
+    private final int dosTime;
+    private final int dosDate;
+    // Everything below is guarded by this
+    private final List<CentralEntry> entries = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+    private final Deque<PendingEntry> ready = new ArrayDeque<>();
+    private boolean busy;
+    private long end;
+    private long bufferedBytes;
+    private IOException failure;
+
+    public ArchiveSink(File archiveFile) throws IOException {
+        this.archiveFile = archiveFile;
+        this.archive = FileChannel.open(archiveFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        LocalDateTime now = LocalDateTime.now();
+        this.dosTime = now.getHour() << 11 | now.getMinute() << 5 | now.getSecond() / 2;
+        this.dosDate = Math.max(0, now.getYear() - 1980) << 9 | now.getMonthValue() << 5 | now.getDayOfMonth();
+    }
+
+    @Override
+    public Output create(String name) throws IOException {
+        checkFailure();
+        return new EntryOutput(name);
+    }
+
+    @Override
+    public File locate(String name) {
+        return new File(archiveFile, name);
+    }
+
+    @Override
+    public File getLocation() {
+        return archiveFile;
+    }
+
+    // Every job has committed or abandoned its outputs by now, so only entries still waiting are appended
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+            synchronized (this) {
+                if (busy) {
+                    throw new IOException("An entry of " + archiveFile.getName() + " is still being written");
+                }
+                checkFailure();
+                writeCentralDirectory();
+            }
+        } finally {
+            archive.close();
+        }
+    }
+
+    private synchronized void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Archive writer failed for " + archiveFile.getName(), failure);
+        }
+    }
+
+    // The archive is taken only when no finished entry is waiting for it, so those are never overtaken for long
+    private synchronized long claim() {
+        if (busy || failure != null || !ready.isEmpty()) {
+            return -1;
+        }
+        busy = true;
+        return end;
+    }
+
+    private synchronized void release(CentralEntry written, long newEnd) {
+        if (written != null) {
+            entries.add(written);
+        }
+        end = newEnd;
+        busy = false;
+    }
+
+    private synchronized void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+        }
+        busy = false;
+        for (PendingEntry pending : ready) {
+            pending.discard();
+        }
+        ready.clear();
+    }
+
+    /*
+     * A name is taken by the first entry committed under it. A retry after a job got part of its outputs in
+     * commits the same names again with the same bytes, so those later entries are dropped rather than failing
+     * the archive, which cannot hold a name twice.
+     */
+    private synchronized boolean takeName(String name) {
+        return names.add(name);
+    }
+
+    // Appends finished entries while the archive is free; whoever frees it calls this
+    private void drain() {
+        while (true) {
+            PendingEntry next;
+            long start;
+            synchronized (this) {
+                if (busy || failure != null || ready.isEmpty()) {
+                    return;
+                }
+                busy = true;
+                next = ready.poll();
+                start = end;
+            }
+            try {
+                long position = start + writeLocalHeader(start, next.nameBytes, next.crc, next.size);
+                position += next.writeTo(archive, position);
+                release(new CentralEntry(next.name, next.nameBytes, start, next.crc, next.size), position);
+            } catch (IOException e) {
+                fail(e);
+            } finally {
+                next.discard();
+                synchronized (this) {
+                    bufferedBytes -= next.reserved;
+                }
+            }
+        }
+    }
+
+    // Heap for one more chunk of a waiting entry, or false when the budget is spent and the entry must spill
+    private synchronized boolean reserve() {
+        if (bufferedBytes + CHUNK_BYTES > BUFFER_BUDGET_BYTES) {
+            return false;
+        }
+        bufferedBytes += CHUNK_BYTES;
+        return true;
+    }
+
+    private synchronized void unreserve(long bytes) {
+        bufferedBytes -= bytes;
+    }
+
+    private int writeLocalHeader(long position, byte[] name, long crc, long size) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_BYTES + name.length).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0x04034b50).putShort((short) 20).putShort((short) FLAG_UTF8).putShort((short) 0)
+                .putShort((short) dosTime).putShort((short) dosDate)
+                .putInt((int) crc).putInt((int) size).putInt((int) size)
+                .putShort((short) name.length).putShort((short) 0).put(name).flip();
+        writeFully(header, position);
+        return header.capacity();
+    }
+
+    private void writeFully(ByteBuffer bytes, long position) throws IOException {
+        while (bytes.hasRemaining()) {
+            position += archive.write(bytes, position);
+        }
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        long start = end;
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        long position = start;
+        for (CentralEntry entry : entries) {
+            boolean zip64 = entry.offset >= 0xffffffffL;
+            int recordBytes = 46 + entry.nameBytes.length + (zip64 ? 12 : 0);
+            if (buffer.remaining() < recordBytes) {
+                buffer.flip();
+                writeFully(buffer, position);
+                position += buffer.limit();
+                buffer.clear();
+            }
+            buffer.putInt(0x02014b50).putShort((short) (zip64 ? 45 : 20)).putShort((short) (zip64 ? 45 : 20))
+                    .putShort((short) FLAG_UTF8).putShort((short) 0)
+                    .putShort((short) dosTime).putShort((short) dosDate)
+                    .putInt((int) entry.crc).putInt((int) entry.size).putInt((int) entry.size)
+                    .putShort((short) entry.nameBytes.length).putShort((short) (zip64 ? 12 : 0))
+                    .putShort((short) 0).putShort((short) 0).putShort((short) 0).putInt(0)
+                    .putInt(zip64 ? 0xffffffff : (int) entry.offset).put(entry.nameBytes);
+            if (zip64) {
+                buffer.putShort((short) 0x0001).putShort((short) 8).putLong(entry.offset);
+            }
+        }
+        long size = position + buffer.position() - start;
+
+        boolean zip64 = entries.size() >= 0xffff || start >= 0xffffffffL || size >= 0xffffffffL;
+        if (buffer.remaining() < 56 + 20 + 22) {
+            buffer.flip();
+            writeFully(buffer, position);
+            position += buffer.limit();
+            buffer.clear();
+        }
+        if (zip64) {
+            long record = start + size;
+            buffer.putInt(0x06064b50).putLong(44).putShort((short) 45).putShort((short) 45).putInt(0).putInt(0)
+                    .putLong(entries.size()).putLong(entries.size()).putLong(size).putLong(start);
+            buffer.putInt(0x07064b50).putInt(0).putLong(record).putInt(1);
+        }
+        buffer.putInt(0x06054b50).putShort((short) 0).putShort((short) 0)
+                .putShort((short) Math.min(entries.size(), 0xffff)).putShort((short) Math.min(entries.size(), 0xffff))
+                .putInt(zip64 ? 0xffffffff : (int) size).putInt(zip64 ? 0xffffffff : (int) start).putShort((short) 0);
+        buffer.flip();
+        writeFully(buffer, position);
+        archive.truncate(position + buffer.limit());
+    }
+
+    private class EntryOutput implements Output {
+        private final String name;
+        private final byte[] nameBytes;
+        private final CRC32 crc = new CRC32();
+        private long size;
+        private boolean open = true;
+        // Set while this entry streams straight into the archive
+        private long streamStart = -1;
+        private int headerBytes;
+        // Otherwise the entry waits in chunks on the heap, or in a spill file once the budget is spent
+        private final List<byte[]> chunks = new ArrayList<>();
+        private int chunkFill = CHUNK_BYTES;
+        private long reserved;
+        private Path spillFile;
+        private FileChannel spill;
+
+        private EntryOutput(String name) {
+            this.name = name;
+            this.nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int length = src.remaining();
+            if (size + length > MAX_ENTRY_BYTES) {
+                throw new IOException(name + " is too large for an entry of " + archiveFile.getName());
+            }
+            if (streamStart < 0) {
+                tryStream();
+            }
+            crc.update(src.duplicate());
+            if (streamStart >= 0) {
+                writeFully(src, streamStart + headerBytes + size);
+            } else if (spill != null) {
+                while (src.hasRemaining()) {
+                    spill.write(src);
+                }
+            } else {
+                buffer(src);
+            }
+            size += length;
+            return length;
+        }
+
+        // Takes the archive over if it is free, moving whatever was buffered or spilled so far into it first
+        private void tryStream() throws IOException {
+            long start = claim();
+            if (start < 0) {
+                return;
+            }
+            PendingEntry buffered = new PendingEntry(name, nameBytes, chunks, chunkFill, spill, spillFile, size, 0,
+                    reserved);
+            try {
+                headerBytes = writeLocalHeader(start, nameBytes, 0, 0);
+                buffered.writeTo(archive, start + headerBytes);
+            } catch (IOException e) {
+                abandonStream(start);
+                throw e;
+            }
+            streamStart = start;
+            buffered.discard();
+            spill = null;
+            chunks.clear();
+            unreserve(reserved);
+            reserved = 0;
+        }
+
+        private void buffer(ByteBuffer src) throws IOException {
+            while (src.hasRemaining()) {
+                if (chunkFill == CHUNK_BYTES) {
+                    if (!reserve()) {
+                        startSpill();
+                        while (src.hasRemaining()) {
+                            spill.write(src);
+                        }
+                        return;
+                    }
+                    reserved += CHUNK_BYTES;
+                    chunks.add(new byte[CHUNK_BYTES]);
+                    chunkFill = 0;
+                }
+                int n = Math.min(src.remaining(), CHUNK_BYTES - chunkFill);
+                src.get(chunks.get(chunks.size() - 1), chunkFill, n);
+                chunkFill += n;
+            }
+        }
+
+        // The chunks already on the heap stay there; only what follows them goes to the spill file
+        private void startSpill() throws IOException {
+            spillFile = Files.createTempFile("archive-entry", ".part");
+            spill = FileChannel.open(spillFile, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        }
+
+        @Override
+        public void commit() throws IOException {
+            checkFailure();
+            if (!takeName(name)) {
+                close();
+                return;
+            }
+            open = false;
+            if (streamStart < 0) {
+                tryStream();
+            }
+            if (streamStart >= 0) {
+                try {
+                    ByteBuffer sizes = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+                    sizes.putInt((int) crc.getValue()).putInt((int) size).putInt((int) size).flip();
+                    writeFully(sizes, streamStart + 14);
+                } catch (IOException e) {
+                    fail(e);
+                    throw e;
+                }
+                release(new CentralEntry(name, nameBytes, streamStart, crc.getValue(), size),
+                        streamStart + headerBytes + size);
+            } else {
+                synchronized (ArchiveSink.this) {
+                    ready.add(new PendingEntry(name, nameBytes, chunks, chunkFill, spill, spillFile, size,
+                            crc.getValue(), reserved));
+                }
+            }
+            drain();
+            checkFailure();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!open) {
+                return;
+            }
+            open = false;
+            if (streamStart >= 0) {
+                abandonStream(streamStart);
+                drain();
+            } else {
+                new PendingEntry(name, nameBytes, chunks, chunkFill, spill, spillFile, size, 0, 0).discard();
+                unreserve(reserved);
+            }
+        }
+
+        // Nothing can follow an entry that is still streaming, so cutting the file back removes every trace of it
+        private void abandonStream(long start) throws IOException {
+            try {
+                archive.truncate(start);
+            } catch (IOException e) {
+                fail(e);
+                throw e;
+            }
+            release(null, start);
+        }
+    }
+
+    private static class PendingEntry {
+        private final String name;
+        private final byte[] nameBytes;
+        private final List<byte[]> chunks;
+        private final int lastChunkFill;
+        private final FileChannel spill;
+        private final Path spillFile;
+        private final long size;
+        private final long crc;
+        private final long reserved;
+
+        private PendingEntry(String name, byte[] nameBytes, List<byte[]> chunks, int lastChunkFill, FileChannel spill,
+                             Path spillFile, long size, long crc, long reserved) {
+            this.name = name;
+            this.nameBytes = nameBytes;
+            this.chunks = chunks;
+            this.lastChunkFill = lastChunkFill;
+            this.spill = spill;
+            this.spillFile = spillFile;
+            this.size = size;
+            this.crc = crc;
+            this.reserved = reserved;
+        }
+
+        // The heap chunks first, then the spilled rest; returns the number of bytes written at position
+        private long writeTo(FileChannel archive, long position) throws IOException {
+            long start = position;
+            for (int i = 0; i < chunks.size(); i++) {
+                ByteBuffer chunk = ByteBuffer.wrap(chunks.get(i), 0, i == chunks.size() - 1 ? lastChunkFill : CHUNK_BYTES);
+                while (chunk.hasRemaining()) {
+                    position += archive.write(chunk, position);
+                }
+            }
+            long spilled = size - (position - start);
+            long copied = 0;
+            while (copied < spilled) {
+                long n = spill.transferTo(copied, spilled - copied, archive.position(position));
+                if (n <= 0) {
+                    throw new IOException("Spill file for " + name + " ended early");
+                }
+                copied += n;
+                position += n;
+            }
+            return position - start;
+        }
+
+        private void discard() {
+            try {
+                if (spill != null) {
+                    spill.close();
+                    Files.deleteIfExists(spillFile);
+                }
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static class CentralEntry {
+        private final String name;
+        private final byte[] nameBytes;
+        private final long offset;
+        private final long crc;
+        private final long size;
+
+        private CentralEntry(String name, byte[] nameBytes, long offset, long crc, long size) {
+            this.name = name;
+            this.nameBytes = nameBytes;
+            this.offset = offset;
+            this.crc = crc;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package se233.project1.controller;
+
+// Sample format conversion, channel mixing and FIR dot products on primitive buffers. The loops run on the
+// incubating Vector API when the JVM was started with --add-modules jdk.incubator.vector, and as plain
+// scalar loops otherwise; -Dse233.dsp.scalar=true forces the scalar path.
+public final class AudioDsp {
+    private static final boolean VECTORIZED = detectVectorSupport();
+
+    private AudioDsp() {
+    }
+
+    public static boolean isVectorized() {
+        return VECTORIZED;
+    }
+
+    // 16-bit PCM to floats in [-1, 1)
+    public static void toFloat(short[] in, float[] out, int count) {
+        if (VECTORIZED) {
+            VectorDsp.toFloat(in, out, count);
+        } else {
+            Scalar.toFloat(in, out, 0, count);
+        }
+    }
+
+    // Clamps to [-1, 1] and truncates to 16-bit PCM
+    public static void toShort(float[] in, short[] out, int count) {
+        if (VECTORIZED) {
+            VectorDsp.toShort(in, out, count);
+        } else {
+            Scalar.toShort(in, out, 0, count);
+        }
+    }
+
+    // Averages the channels of interleaved frames into one mono sample per frame
+    public static void downmix(float[] interleaved, int channels, float[] mono, int frames) {
+        if (VECTORIZED) {
+            VectorDsp.downmix(interleaved, channels, mono, frames);
+        } else {
+            Scalar.downmix(interleaved, channels, mono, 0, frames);
+        }
+    }
+
+    // Multiplies every sample by gain in place, e.g. a loudness normalisation gain
+    public static void scale(float[] samples, int count, float gain) {
+        if (VECTORIZED) {
+            VectorDsp.scale(samples, count, gain);
+        } else {
+            Scalar.scale(samples, 0, count, gain);
+        }
+    }
+
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return VECTORIZED ? VectorDsp.dot(a, aOffset, b, bOffset, length) : Scalar.dot(a, aOffset, b, bOffset, length);
+    }
+
+    public static void deinterleave(float[] interleaved, int channels, int channel, float[] out, int frames) {
+        for (int frame = 0, i = channel; frame < frames; frame++, i += channels) {
+            out[frame] = interleaved[i];
+        }
+    }
+
+    public static void interleave(float[] in, int channels, int channel, float[] interleaved, int frames) {
+        for (int frame = 0, i = channel; frame < frames; frame++, i += channels) {
+            interleaved[i] = in[frame];
+        }
+    }
+
+    // VectorDsp must not be touched unless the module is in the boot layer, or loading it fails
+    private static boolean detectVectorSupport() {
+        if (Boolean.getBoolean("se233.dsp.scalar") ||
+                ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            return VectorDsp.isWorthwhile();
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    // Reference loops, also used for the tails the vector kernels leave; each covers [from, to)
+    static final class Scalar {
+        private Scalar() {
+        }
+
+        static void toFloat(short[] in, float[] out, int from, int to) {
+            for (int i = from; i < to; i++) {
+                out[i] = in[i] * (1.0f / 32768.0f);
+            }
+        }
+
+        static void toShort(float[] in, short[] out, int from, int to) {
+            for (int i = from; i < to; i++) {
+                out[i] = (short) (Math.max(-1.0f, Math.min(1.0f, in[i])) * 32767.0f);
+            }
+        }
+
+        static void downmix(float[] interleaved, int channels, float[] mono, int from, int to) {
+            float scale = 1.0f / channels;
+            for (int frame = from; frame < to; frame++) {
+                float sum = 0;
+                int base = frame * channels;
+                for (int c = 0; c < channels; c++) {
+                    sum += interleaved[base + c];
+                }
+                mono[frame] = sum * scale;
+            }
+        }
+
+        static void scale(float[] samples, int from, int to, float gain) {
+            for (int i = from; i < to; i++) {
+                samples[i] *= gain;
+            }
+        }
+
+        static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+            float sum = 0;
+            for (int i = 0; i < length; i++) {
+                sum += a[aOffset + i] * b[bOffset + i];
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package se233.project1.controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+// Reads just enough of a file's header to learn its codec, sample rate, channels and duration
+public class AudioProbe {
+    private static final int[] MP3_BITRATES_V1_L3 = {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 0};
+    private static final int[] MP3_BITRATES_V2_L3 = {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160, 0};
+    private static final int[] MP3_SAMPLE_RATES_V1 = {44100, 48000, 32000, 0};
+    // Tags an encoder writes into the first, silent frame: Xing for VBR, Info for CBR, VBRI from Fraunhofer
+    private static final int MP3_TAG_XING = 0x58696e67;
+    private static final int MP3_TAG_INFO = 0x496e666f;
+    private static final int MP3_TAG_VBRI = 0x56425249;
+    // Frames compared when a stream has no tag to say whether its bitrate varies
+    private static final int MP3_SAMPLED_FRAMES = 8;
+
+    private AudioProbe() {
+    }
+
+    public static AudioInfo probe(File file) throws IOException {
+        String name = file.getName().toLowerCase();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (name.endsWith(".wav")) {
+                return probeWav(channel);
+            }
+            if (name.endsWith(".flac")) {
+                return probeFlac(channel);
+            }
+            if (name.endsWith(".mp3")) {
+                return probeMp3(channel);
+            }
+        }
+        return AudioInfo.unknown(extensionOf(name));
+    }
+
+    // Goes by the bytes rather than the name, for files whose extension says what they should be, not what they are
+    public static AudioInfo probeContent(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = readAt(channel, 0, 12);
+            if (magic.remaining() >= 12 && magic.getInt(0) == 0x52494646 && magic.getInt(8) == 0x57415645) { // RIFF WAVE
+                return probeWav(channel);
+            }
+            if (magic.remaining() >= 4 && magic.getInt(0) == 0x664c6143) { // fLaC
+                return probeFlac(channel);
+            }
+            if (magic.remaining() >= 3 && (magic.get(0) == 'I' && magic.get(1) == 'D' && magic.get(2) == '3' ||
+                    (magic.get(0) & 0xff) == 0xff && (magic.get(1) & 0xe0) == 0xe0)) {
+                return probeMp3(channel);
+            }
+            if (magic.remaining() >= 8 && magic.getInt(4) == 0x66747970) { // ....ftyp
+                return AudioInfo.unknown("mp4");
+            }
+            if (magic.remaining() >= 4 && magic.getInt(0) == 0x4f676753) { // OggS
+                return AudioInfo.unknown("ogg");
+            }
+        }
+        return AudioInfo.unknown("");
+    }
+
+    private static AudioInfo probeWav(FileChannel channel) throws IOException {
+        ByteBuffer header = readAt(channel, 0, 12).order(ByteOrder.LITTLE_ENDIAN);
+        if (header.remaining() < 12 || header.getInt(0) != 0x46464952 || header.getInt(8) != 0x45564157) {
+            return AudioInfo.unknown("wav");
+        }
+
+        AudioInfo info = new AudioInfo("wav");
+        long position = 12;
+        boolean extraChunks = false;
+        while (position + 8 <= channel.size()) {
+            ByteBuffer chunk = readAt(channel, position, 8).order(ByteOrder.LITTLE_ENDIAN);
+            int id = chunk.getInt(0);
+            long size = Integer.toUnsignedLong(chunk.getInt(4));
+            if (id == 0x20746d66) { // "fmt "
+                ByteBuffer fmt = readAt(channel, position + 8, 16).order(ByteOrder.LITTLE_ENDIAN);
+                int audioFormat = Short.toUnsignedInt(fmt.getShort(0));
+                info.channels = Short.toUnsignedInt(fmt.getShort(2));
+                info.sampleRate = fmt.getInt(4);
+                info.byteRate = Integer.toUnsignedLong(fmt.getInt(8));
+                info.bitsPerSample = Short.toUnsignedInt(fmt.getShort(14));
+                info.codec = audioFormat == 1 ? "pcm_s" + info.bitsPerSample + "le" : "wav_" + audioFormat;
+            } else if (id == 0x61746164) { // "data"
+                info.dataOffset = position + 8;
+                info.dataLength = Math.min(size, channel.size() - info.dataOffset);
+                info.truncated = size > info.dataLength;
+            } else {
+                extraChunks = true;
+            }
+            position += 8 + size + (size & 1);
+        }
+        info.extraHeaderData = extraChunks;
+        if (info.byteRate > 0 && info.dataLength > 0) {
+            info.durationSeconds = (double) info.dataLength / info.byteRate;
+        }
+        return info;
+    }
+
+    private static AudioInfo probeFlac(FileChannel channel) throws IOException {
+        ByteBuffer header = readAt(channel, 0, 42);
+        if (header.remaining() < 42 || header.getInt(0) != 0x664c6143) { // "fLaC"
+            return AudioInfo.unknown("flac");
+        }
+        // STREAMINFO: 20 bits sample rate, 3 bits channels - 1, 5 bits bits per sample - 1, 36 bits total samples
+        long packed = header.getLong(18);
+        AudioInfo info = new AudioInfo("flac");
+        info.codec = "flac";
+        info.sampleRate = (int) (packed >>> 44);
+        info.channels = (int) ((packed >>> 41) & 0x7) + 1;
+        info.bitsPerSample = (int) ((packed >>> 36) & 0x1f) + 1;
+        long totalSamples = packed & 0xfffffffffL;
+        if (info.sampleRate > 0 && totalSamples > 0) {
+            info.durationSeconds = (double) totalSamples / info.sampleRate;
+        }
+        info.dataOffset = 0;
+        info.dataLength = channel.size();
+        return info;
+    }
+
+    private static AudioInfo probeMp3(FileChannel channel) throws IOException {
+        long offset = 0;
+        ByteBuffer id3 = readAt(channel, 0, 10);
+        boolean tagged = false;
+        if (id3.remaining() == 10 && id3.get(0) == 'I' && id3.get(1) == 'D' && id3.get(2) == '3') {
+            int size = ((id3.get(6) & 0x7f) << 21) | ((id3.get(7) & 0x7f) << 14) | ((id3.get(8) & 0x7f) << 7) | (id3.get(9) & 0x7f);
+            offset = 10 + size;
+            tagged = true;
+        }
+
+        ByteBuffer scan = readAt(channel, offset, 4096);
+        for (int i = 0; i + 4 <= scan.limit(); i++) {
+            int b1 = scan.get(i) & 0xff;
+            int b2 = scan.get(i + 1) & 0xff;
+            if (b1 != 0xff || (b2 & 0xe0) != 0xe0) {
+                continue;
+            }
+            int version = (b2 >> 3) & 0x3;     // 3 = MPEG1, 2 = MPEG2, 0 = MPEG2.5
+            int layer = (b2 >> 1) & 0x3;       // 1 = Layer III
+            int b3 = scan.get(i + 2) & 0xff;
+            int b4 = scan.get(i + 3) & 0xff;
+            int bitrateIndex = b3 >> 4;
+            int rateIndex = (b3 >> 2) & 0x3;
+            if (version == 1 || layer != 1 || bitrateIndex == 0 || bitrateIndex == 15 || rateIndex == 3) {
+                continue;
+            }
+
+            AudioInfo info = new AudioInfo("mp3");
+            info.codec = "mp3";
+            int kbps = version == 3 ? MP3_BITRATES_V1_L3[bitrateIndex] : MP3_BITRATES_V2_L3[bitrateIndex];
+            int rate = MP3_SAMPLE_RATES_V1[rateIndex];
+            info.sampleRate = version == 3 ? rate : version == 2 ? rate / 2 : rate / 4;
+            info.channels = (b4 >> 6) == 3 ? 1 : 2;
+            info.bitrateKbps = kbps;
+            info.dataOffset = offset + i;
+            info.dataLength = channel.size() - info.dataOffset;
+            info.extraHeaderData = tagged;
+            measureMp3(channel, info, scan.getInt(i), version == 3);
+            return info;
+        }
+        return AudioInfo.unknown("mp3");
+    }
+
+    // The first frame's bitrate holds for the whole stream only when the encoder kept it constant. A Xing or
+    // VBRI tag gives the frame count and so the exact duration; without one the first few frames are compared,
+    // and a stream whose bitrate moves gets the average of those frames.
+    private static void measureMp3(FileChannel channel, AudioInfo info, int header, boolean mpeg1) throws IOException {
+        int sideInfo = mpeg1 ? (info.channels == 1 ? 17 : 32) : (info.channels == 1 ? 9 : 17);
+        ByteBuffer frame = readAt(channel, info.dataOffset, 4 + 32 + 18);
+        long frames = 0;
+        Boolean variable = null;
+        int xing = 4 + sideInfo;
+        if (frame.limit() >= xing + 12 &&
+                (frame.getInt(xing) == MP3_TAG_XING || frame.getInt(xing) == MP3_TAG_INFO)) {
+            variable = frame.getInt(xing) == MP3_TAG_XING;
+            if ((frame.getInt(xing + 4) & 0x1) != 0) {
+                frames = frame.getInt(xing + 8) & 0xffffffffL;
+            }
+        } else if (frame.limit() >= 4 + 32 + 18 && frame.getInt(4 + 32) == MP3_TAG_VBRI) {
+            variable = true;
+            frames = frame.getInt(4 + 32 + 14) & 0xffffffffL;
+        }
+
+        double kbps = info.bitrateKbps;
+        if (variable == null) {
+            int sampled = 0;
+            long total = 0;
+            long position = info.dataOffset;
+            int next = header;
+            while (sampled < MP3_SAMPLED_FRAMES && mp3FrameLength(next) > 0) {
+                total += mp3Kbps(next);
+                sampled++;
+                position += mp3FrameLength(next);
+                ByteBuffer following = readAt(channel, position, 4);
+                if (following.remaining() < 4) {
+                    break;
+                }
+                next = following.getInt(0);
+            }
+            kbps = (double) total / sampled;
+            variable = kbps != info.bitrateKbps;
+        }
+
+        info.variableBitrate = variable;
+        if (frames > 0) {
+            info.durationSeconds = frames * (mpeg1 ? 1152.0 : 576.0) / info.sampleRate;
+        } else {
+            info.durationSeconds = info.dataLength * 8.0 / (kbps * 1000.0);
+        }
+        if (variable && info.durationSeconds > 0) {
+            info.bitrateKbps = (int) Math.round(info.dataLength * 8.0 / info.durationSeconds / 1000.0);
+        }
+    }
+
+    private static int mp3Kbps(int header) {
+        int bitrateIndex = (header >>> 12) & 0xf;
+        return ((header >>> 19) & 0x3) == 3 ? MP3_BITRATES_V1_L3[bitrateIndex] : MP3_BITRATES_V2_L3[bitrateIndex];
+    }
+
+    // Bytes in the MPEG audio Layer III frame that starts with this header, or -1 when it does not start one
+    static int mp3FrameLength(int header) {
+        if ((header >>> 21) != 0x7ff) {
+            return -1;
+        }
+        int version = (header >>> 19) & 0x3;
+        int layer = (header >>> 17) & 0x3;
+        int bitrateIndex = (header >>> 12) & 0xf;
+        int rateIndex = (header >>> 10) & 0x3;
+        if (version == 1 || layer != 1 || bitrateIndex == 0 || bitrateIndex == 15 || rateIndex == 3) {
+            return -1;
+        }
+        int kbps = version == 3 ? MP3_BITRATES_V1_L3[bitrateIndex] : MP3_BITRATES_V2_L3[bitrateIndex];
+        int rate = MP3_SAMPLE_RATES_V1[rateIndex];
+        rate = version == 3 ? rate : version == 2 ? rate / 2 : rate / 4;
+        return (version == 3 ? 144_000 : 72_000) * kbps / rate + ((header >>> 9) & 1);
+    }
+
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static String extensionOf(String name) {
+        int lastDot = name.lastIndexOf('.');
+        return lastDot > 0 ? name.substring(lastDot + 1) : "";
+    }
+
+    public static class AudioInfo {
+        private final String container;
+        private String codec;
+        private int sampleRate;
+        private int channels;
+        private int bitsPerSample;
+        private int bitrateKbps;
+        private long byteRate;
+        private long dataOffset;
+        private long dataLength;
+        private double durationSeconds;
+        private boolean extraHeaderData;
+        private boolean variableBitrate;
+        private boolean truncated;
+
+        private AudioInfo(String container) {
+            this.container = container;
+        }
+
+        private static AudioInfo unknown(String container) {
+            return new AudioInfo(container);
+        }
+
+        public boolean isKnown() { return codec != null && sampleRate > 0 && channels > 0; }
+        public String getContainer() { return container; }
+        public String getCodec() { return codec; }
+        public int getSampleRate() { return sampleRate; }
+        public int getChannels() { return channels; }
+        public int getBitsPerSample() { return bitsPerSample; }
+        // For a variable bitrate stream this is the average
+        public int getBitrateKbps() { return bitrateKbps; }
+        public boolean isVariableBitrate() { return variableBitrate; }
+        public long getByteRate() { return byteRate; }
+        public long getDataOffset() { return dataOffset; }
+        public long getDataLength() { return dataLength; }
+        public double getDurationSeconds() { return durationSeconds; }
+        public boolean hasExtraHeaderData() { return extraHeaderData; }
+        // The header promises more audio than the file holds
+        public boolean isTruncated() { return truncated; }
+
+        @Override
+        public String toString() {
+            if (!isKnown()) {
+                return container.toUpperCase() + " (unknown)";
+            }
+            return String.format("%s %s, %d Hz, %d ch, %.1fs", container.toUpperCase(), codec, sampleRate, channels, durationSeconds);
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package se233.project1.controller;
+
+import se233.project1.model.ConversionConfig;
+import se233.project1.model.ConversionConfig.FileConversionSettings;
+import se233.project1.model.ConversionConfig.OutputTarget;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * A saved batch: every input and its per-file settings, in a compact binary file that is memory-mapped and
+ * decoded one entry at a time, so opening a million-entry manifest reads only its header and settings table.
+ *
+ *   header     magic "SEBM", version, string count, profile count, entry count, profile and entry offsets
+ *   strings    an offset table, then the UTF-8 bytes; each directory, name and setting value is stored once
+ *   profiles   distinct settings combinations: format, quality, sample rate, channels, bitrate (string indexes),
+ *              target loudness (NaN for none), then the extra output targets as four string indexes each
+ *   entries    24 bytes each: directory, name, profile, flags, size; an archive member keeps the archive path
+ *              as its directory and the entry name as its name
+ *
+ * Saving writes a temporary file and moves it into place, so a reader never sees half a manifest.
+ */
+public class BatchManifest {
+    public static final String EXTENSION = "sebm";
+    private static final int MAGIC = 0x5345424D;
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int ENTRY_BYTES = 24;
+    private static final int ARCHIVE_ENTRY = 1;
+    private static final int NONE = -1;
+
+    private final ByteBuffer buffer;
+    private final int stringCount;
+    private final int entryCount;
+    private final int stringsAt;
+    private final int poolAt;
+    private final int poolEnd;
+    private final int entriesAt;
+    private final String[] strings;
+    private final Profile[] profiles;
+
+    private BatchManifest(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a batch manifest");
+        }
+        short version = buffer.getShort(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported batch manifest version " + version);
+        }
+        try {
+            this.stringCount = buffer.getInt(8);
+            int profileCount = buffer.getInt(12);
+            this.entryCount = buffer.getInt(16);
+            int profilesAt = buffer.getInt(20);
+            this.entriesAt = buffer.getInt(24);
+            this.stringsAt = HEADER_BYTES;
+            this.poolAt = stringsAt + 4 * (stringCount + 1);
+            this.poolEnd = profilesAt;
+            if (stringCount < 0 || entryCount < 0 || profileCount < 0 || poolAt > poolEnd ||
+                    (long) entriesAt + (long) entryCount * ENTRY_BYTES > buffer.capacity()) {
+                throw new IOException("Batch manifest is truncated");
+            }
+            this.strings = new String[stringCount];
+            this.profiles = new Profile[profileCount];
+            int position = profilesAt;
+            for (int i = 0; i < profileCount; i++) {
+                profiles[i] = new Profile(buffer, position);
+                position = profiles[i].end;
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Batch manifest is damaged", e);
+        }
+    }
+
+    // Maps the file and reads the header and profiles; entries are decoded by get()
+    public static BatchManifest open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Batch manifest is too large: " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            return new BatchManifest(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int size() {
+        return entryCount;
+    }
+
+    public FileConversionSettings get(int index) throws IOException {
+        if (index < 0 || index >= entryCount) {
+            throw new IndexOutOfBoundsException("Entry " + index + " of " + entryCount);
+        }
+        int at = entriesAt + index * ENTRY_BYTES;
+        try {
+            String directory = string(buffer.getInt(at));
+            String name = string(buffer.getInt(at + 4));
+            Profile profile = profiles[buffer.getInt(at + 8)];
+            int flags = buffer.getInt(at + 12);
+            long size = buffer.getLong(at + 16);
+
+            FileConversionSettings settings = (flags & ARCHIVE_ENTRY) != 0
+                    ? new FileConversionSettings(new File(directory), name, size)
+                    : new FileConversionSettings(new File(directory, name));
+            profile.applyTo(settings);
+            return settings;
+        } catch (RuntimeException e) {
+            throw new IOException("Batch manifest entry " + index + " is damaged", e);
+        }
+    }
+
+    // Adds every entry without touching the inputs; a missing file shows up when its job runs
+    public int loadInto(ConversionConfig config) throws IOException {
+        int added = 0;
+        for (int i = 0; i < entryCount; i++) {
+            if (config.addSettings(get(i))) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    // Cached, since thousands of entries share one directory
+    private String string(int index) {
+        if (index == NONE) {
+            return null;
+        }
+        String value = strings[index];
+        if (value == null) {
+            int start = buffer.getInt(stringsAt + 4 * index);
+            int end = buffer.getInt(stringsAt + 4 * (index + 1));
+            if (start < 0 || end < start || end > poolEnd - poolAt) {
+                throw new IndexOutOfBoundsException("Bad string offsets " + start + ".." + end);
+            }
+            byte[] bytes = new byte[end - start];
+            buffer.get(poolAt + start, bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+            strings[index] = value;
+        }
+        return value;
+    }
+
+    public static void save(ConversionConfig config, File file) throws IOException {
+        List<FileConversionSettings> allSettings = config.getAllFileSettings();
+        StringTable table = new StringTable();
+        Map<List<Object>, Integer> profileIds = new HashMap<>();
+        List<List<Object>> profileKeys = new ArrayList<>();
+        int[] entries = new int[allSettings.size() * 4];
+        long[] sizes = new long[allSettings.size()];
+
+        for (int i = 0; i < allSettings.size(); i++) {
+            FileConversionSettings settings = allSettings.get(i);
+            List<Object> key = Profile.keyOf(settings);
+            Integer profile = profileIds.get(key);
+            if (profile == null) {
+                profile = profileKeys.size();
+                profileIds.put(key, profile);
+                profileKeys.add(key);
+            }
+            if (settings.isArchiveEntry()) {
+                entries[i * 4] = table.add(settings.getArchiveFile().getAbsolutePath());
+                entries[i * 4 + 1] = table.add(settings.getArchiveEntry());
+                entries[i * 4 + 3] = ARCHIVE_ENTRY;
+            } else {
+                File input = settings.getInputFile().getAbsoluteFile();
+                entries[i * 4] = table.add(input.getParent());
+                entries[i * 4 + 1] = table.add(input.getName());
+            }
+            entries[i * 4 + 2] = profile;
+            sizes[i] = settings.getInputSize();
+        }
+
+        List<int[]> profiles = new ArrayList<>();
+        int profileBytes = 0;
+        for (List<Object> key : profileKeys) {
+            int[] fields = new int[key.size() - 1];
+            for (int f = 0, k = 0; k < key.size(); k++) {
+                if (k != Profile.LUFS_FIELD) {
+                    fields[f++] = key.get(k) == null ? NONE : table.add((String) key.get(k));
+                }
+            }
+            profiles.add(fields);
+            profileBytes += 4 * Profile.FIXED_STRINGS + 8 + 4 + 4 * (fields.length - Profile.FIXED_STRINGS);
+        }
+        int profilesAt = HEADER_BYTES + 4 * (table.size() + 1) + table.poolBytes;
+        long entriesAt = (long) profilesAt + profileBytes;
+        if (entriesAt + (long) allSettings.size() * ENTRY_BYTES > Integer.MAX_VALUE) {
+            throw new IOException("Batch is too large for one manifest");
+        }
+
+        Path target = file.toPath().toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), "." + file.getName(), ".part");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp),
+                    256 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeShort(0);
+                out.writeInt(table.size());
+                out.writeInt(profiles.size());
+                out.writeInt(allSettings.size());
+                out.writeInt(profilesAt);
+                out.writeInt((int) entriesAt);
+                out.writeInt(0);
+
+                int offset = 0;
+                for (byte[] bytes : table.encoded) {
+                    out.writeInt(offset);
+                    offset += bytes.length;
+                }
+                out.writeInt(offset);
+                for (byte[] bytes : table.encoded) {
+                    out.write(bytes);
+                }
+
+                for (int p = 0; p < profiles.size(); p++) {
+                    int[] fields = profiles.get(p);
+                    for (int f = 0; f < Profile.FIXED_STRINGS; f++) {
+                        out.writeInt(fields[f]);
+                    }
+                    Double lufs = (Double) profileKeys.get(p).get(Profile.LUFS_FIELD);
+                    out.writeDouble(lufs == null ? Double.NaN : lufs);
+                    out.writeInt((fields.length - Profile.FIXED_STRINGS) / 4);
+                    for (int f = Profile.FIXED_STRINGS; f < fields.length; f++) {
+                        out.writeInt(fields[f]);
+                    }
+                }
+
+                for (int i = 0; i < allSettings.size(); i++) {
+                    out.writeInt(entries[i * 4]);
+                    out.writeInt(entries[i * 4 + 1]);
+                    out.writeInt(entries[i * 4 + 2]);
+                    out.writeInt(entries[i * 4 + 3]);
+                    out.writeLong(sizes[i]);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Each distinct string once, numbered in order of first use
+    private static class StringTable {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<byte[]> encoded = new ArrayList<>();
+        private int poolBytes;
+
+        private int add(String value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = encoded.size();
+                ids.put(value, id);
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                encoded.add(bytes);
+                poolBytes += bytes.length;
+            }
+            return id;
+        }
+
+        private int size() {
+            return encoded.size();
+        }
+    }
+
+    // One distinct combination of settings, shared by every entry that uses it
+    private class Profile {
+        private static final int FIXED_STRINGS = 5;
+        private static final int LUFS_FIELD = 5;
+
+        private final int[] fields;
+        private final Double targetLufs;
+        private final int[] extras;
+        private final int end;
+
+        private Profile(ByteBuffer buffer, int at) {
+            fields = new int[FIXED_STRINGS];
+            for (int f = 0; f < FIXED_STRINGS; f++) {
+                fields[f] = checked(buffer.getInt(at + 4 * f));
+            }
+            at += 4 * FIXED_STRINGS;
+            double lufs = buffer.getDouble(at);
+            targetLufs = Double.isNaN(lufs) ? null : lufs;
+            int extraCount = buffer.getInt(at + 8);
+            at += 12;
+            if (extraCount < 0 || extraCount > (buffer.capacity() - at) / 16) {
+                throw new IndexOutOfBoundsException("Bad output target count " + extraCount);
+            }
+            extras = new int[extraCount * 4];
+            for (int e = 0; e < extras.length; e++) {
+                extras[e] = checked(buffer.getInt(at + 4 * e));
+            }
+            end = at + 4 * extras.length;
+        }
+
+        private int checked(int index) {
+            if (index != NONE && (index < 0 || index >= stringCount)) {
+                throw new IndexOutOfBoundsException("Bad string index " + index);
+            }
+            return index;
+        }
+
+        private void applyTo(FileConversionSettings settings) {
+            settings.setOutputFormat(string(fields[0]));
+            settings.setQuality(string(fields[1]));
+            settings.setSampleRate(string(fields[2]));
+            settings.setChannels(string(fields[3]));
+            settings.setBitrate(string(fields[4]));
+            settings.setTargetLufs(targetLufs);
+            for (int e = 0; e < extras.length; e += 4) {
+                settings.addOutputTarget(string(extras[e]), string(extras[e + 1]), string(extras[e + 2]),
+                        string(extras[e + 3]));
+            }
+        }
+
+        // Format, quality, sample rate, channels, bitrate, loudness, then four strings per extra target
+        private static List<Object> keyOf(FileConversionSettings settings) {
+            List<Object> key = new ArrayList<>(Arrays.asList(settings.getOutputFormat(), settings.getQuality(),
+                    settings.getSampleRate(), settings.getChannels(), settings.getBitrate(), settings.getTargetLufs()));
+            for (OutputTarget target : settings.getExtraOutputTargets()) {
+                key.add(target.getOutputFormat());
+                key.add(target.getQuality());
+                key.add(target.getSampleRate());
+                key.add(target.getChannels());
+            }
+            return key;
+        }
+    }
+}
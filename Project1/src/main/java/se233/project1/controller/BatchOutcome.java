@@ -0,0 +1,143 @@
+package se233.project1.controller;
+
+import se233.project1.model.ConversionConfig.FileConversionSettings;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Per-file results of one batch; a batch with failures still reports everything that did convert
+public class BatchOutcome {
+    private final int totalFiles;
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger retries = new AtomicInteger();
+    private final AtomicInteger verifiedOutputs = new AtomicInteger();
+    private final AtomicInteger verificationFailures = new AtomicInteger();
+    private final AtomicInteger duplicates = new AtomicInteger();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final Queue<Failure> failures = new ConcurrentLinkedQueue<>();
+    private final Queue<Failure> skipped = new ConcurrentLinkedQueue<>();
+
+    public BatchOutcome(int totalFiles) {
+        this.totalFiles = totalFiles;
+    }
+
+    void succeeded() {
+        succeeded.incrementAndGet();
+    }
+
+    void verified(int outputs) {
+        verifiedOutputs.addAndGet(outputs);
+    }
+
+    // Counted per attempt; the attempt then takes the retry path like any other failure
+    void verificationFailed() {
+        verificationFailures.incrementAndGet();
+    }
+
+    // A file that succeeded with copies of another input's outputs
+    void duplicated() {
+        duplicates.incrementAndGet();
+    }
+
+    void moved(BytePump.Counter counter) {
+        bytesRead.addAndGet(counter.getBytesRead());
+        bytesWritten.addAndGet(counter.getBytesWritten());
+    }
+
+    void retried() {
+        retries.incrementAndGet();
+    }
+
+    void failed(FileConversionSettings settings, int attempts, String reason) {
+        failures.add(new Failure(settings, attempts, reason));
+    }
+
+    void skipped(FileConversionSettings settings, String reason) {
+        skipped.add(new Failure(settings, 0, reason));
+    }
+
+    public int getTotalFiles() { return totalFiles; }
+    public int getSucceeded() { return succeeded.get(); }
+    public int getRetries() { return retries.get(); }
+    public int getDuplicates() { return duplicates.get(); }
+    // Over the jobs that succeeded
+    public long getBytesRead() { return bytesRead.get(); }
+    public long getBytesWritten() { return bytesWritten.get(); }
+    public int getVerifiedOutputs() { return verifiedOutputs.get(); }
+    public int getVerificationFailures() { return verificationFailures.get(); }
+    public List<Failure> getFailures() { return sorted(failures); }
+    public List<Failure> getSkipped() { return sorted(skipped); }
+
+    public boolean isCompleteSuccess() {
+        return failures.isEmpty() && skipped.isEmpty();
+    }
+
+    public String summarize(int maxListed) {
+        StringBuilder text = new StringBuilder();
+        text.append(succeeded.get()).append(" of ").append(totalFiles).append(" file(s) converted");
+        if (retries.get() > 0) {
+            text.append(", ").append(retries.get()).append(" retr").append(retries.get() == 1 ? "y" : "ies");
+        }
+        if (duplicates.get() > 0) {
+            text.append(", ").append(duplicates.get()).append(" as copies of identical inputs");
+        }
+        if (verifiedOutputs.get() > 0 || verificationFailures.get() > 0) {
+            text.append(", ").append(verifiedOutputs.get()).append(" output(s) verified");
+            if (verificationFailures.get() > 0) {
+                text.append(", ").append(verificationFailures.get()).append(" failed verification");
+            }
+        }
+        text.append("\n");
+        appendList(text, "Failed", getFailures(), maxListed);
+        appendList(text, "Skipped (quarantined)", getSkipped(), maxListed);
+        return text.toString().trim();
+    }
+
+    private static void appendList(StringBuilder text, String title, List<Failure> list, int maxListed) {
+        if (list.isEmpty()) {
+            return;
+        }
+        text.append(title).append(": ").append(list.size()).append("\n");
+        for (int i = 0; i < Math.min(maxListed, list.size()); i++) {
+            text.append("• ").append(list.get(i)).append("\n");
+        }
+        if (list.size() > maxListed) {
+            text.append("... and ").append(list.size() - maxListed).append(" more\n");
+        }
+    }
+
+    private static List<Failure> sorted(Queue<Failure> queue) {
+        List<Failure> list = new ArrayList<>(queue);
+        list.sort(Comparator.comparing(Failure::getLocation));
+        return list;
+    }
+
+    public static class Failure {
+        private final FileConversionSettings settings;
+        private final int attempts;
+        private final String reason;
+
+        private Failure(FileConversionSettings settings, int attempts, String reason) {
+            this.settings = settings;
+            this.attempts = attempts;
+            this.reason = reason;
+        }
+
+        public FileConversionSettings getSettings() { return settings; }
+        public String getLocation() { return settings.getSourceLocation(); }
+        public int getAttempts() { return attempts; }
+        public String getReason() { return reason; }
+
+        @Override
+        public String toString() {
+            return settings.getInputFile().getName() + (attempts > 1 ? " (" + attempts + " attempts)" : "") +
+                    ": " + reason;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package se233.project1.controller;
+
+import se233.project1.model.ConversionConfig.FileConversionSettings;
+import se233.project1.model.ConversionConfig.FileStatus;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// What one batch is doing right now. Workers only touch atomics and lock-free queues, and never the UI;
+// the window reads this once per frame, so its cost follows the frame rate rather than the job rate.
+// Per-file statuses reach the settings model in publishStatuses(), on the reader's thread.
+public class BatchState {
+    private static final FileStatus[] STATUSES = FileStatus.values();
+
+    private final List<FileConversionSettings> jobs;
+    // Written once before the batch starts and only read afterwards
+    private final Map<FileConversionSettings, Integer> jobIndex = new IdentityHashMap<>();
+    private final AtomicIntegerArray statuses;
+    private final AtomicIntegerArray dirty;
+    private final Queue<Integer> changedJobs = new ConcurrentLinkedQueue<>();
+    private final Queue<String> log = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger settled = new AtomicInteger();
+    private final AtomicLong changes = new AtomicLong();
+    private volatile String currentFile;
+    private volatile String finalStatus;
+    // Nobody drains an idle state, so it keeps no log
+    private final boolean keepsLog;
+
+    public BatchState(List<FileConversionSettings> jobs) {
+        this.jobs = jobs;
+        this.keepsLog = !jobs.isEmpty();
+        this.statuses = new AtomicIntegerArray(jobs.size());
+        this.dirty = new AtomicIntegerArray(jobs.size());
+        for (int i = 0; i < jobs.size(); i++) {
+            jobIndex.put(jobs.get(i), i);
+            statuses.set(i, jobs.get(i).getStatus().ordinal());
+        }
+    }
+
+    // A state with no jobs, for conversions that run outside a batch
+    public static BatchState idle() {
+        return new BatchState(List.of());
+    }
+
+    void setTotal(int count) {
+        total.set(count);
+        changes.incrementAndGet();
+    }
+
+    // Returns how many jobs have settled, this one included
+    int settle() {
+        int count = settled.incrementAndGet();
+        changes.incrementAndGet();
+        return count;
+    }
+
+    void started(String fileName) {
+        currentFile = fileName;
+        changes.incrementAndGet();
+    }
+
+    void setStatus(FileConversionSettings settings, FileStatus status) {
+        Integer index = jobIndex.get(settings);
+        if (index == null) {
+            return;
+        }
+        statuses.set(index, status.ordinal());
+        // Queued once however often it changes before the next publish
+        if (dirty.compareAndSet(index, 0, 1)) {
+            changedJobs.add(index);
+        }
+        changes.incrementAndGet();
+    }
+
+    // Returns false when the line was not kept. Once the batch has finished, the window draws its last frame
+    // and stops reading, so later lines are not kept either and go to the log callback instead.
+    boolean log(String message) {
+        if (!keepsLog || finalStatus != null) {
+            return false;
+        }
+        log.add(message);
+        changes.incrementAndGet();
+        return true;
+    }
+
+    void finish(String status) {
+        finalStatus = status;
+        changes.incrementAndGet();
+    }
+
+    // Bumped by every update; a reader that saw the same value last frame can skip the frame
+    public long getChanges() { return changes.get(); }
+    public int getTotal() { return total.get(); }
+    public int getSettled() { return settled.get(); }
+    public int getQueued() { return total.get() - settled.get(); }
+    public boolean isFinished() { return finalStatus != null; }
+
+    public double getProgress() {
+        int count = total.get();
+        return count == 0 ? 0 : (double) settled.get() / count;
+    }
+
+    public String describe() {
+        String done = finalStatus;
+        if (done != null) {
+            return done;
+        }
+        String file = currentFile;
+        return file == null ? "Starting conversion..." : "Converting: " + file + " (" + settled.get() + "/" + total.get() + ")";
+    }
+
+    // Hands at most maxLines queued log lines to the consumer; the rest wait for the next call
+    public int drainLog(int maxLines, Consumer<String> consumer) {
+        int drained = 0;
+        String line;
+        while (drained < maxLines && (line = log.poll()) != null) {
+            consumer.accept(line);
+            drained++;
+        }
+        return drained;
+    }
+
+    // Copies at most maxJobs changed statuses into the settings model and returns how many it copied
+    public int publishStatuses(int maxJobs) {
+        int published = 0;
+        Integer index;
+        while (published < maxJobs && (index = changedJobs.poll()) != null) {
+            dirty.set(index, 0);
+            jobs.get(index).setStatus(STATUSES[statuses.get(index)]);
+            published++;
+        }
+        return published;
+    }
+}
@@ -0,0 +1,181 @@
+package se233.project1.controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Every byte a job moves goes through here. Streams are pumped through direct buffers borrowed from a bounded
+// pool, so a long batch keeps reusing the same few megabytes instead of allocating per job, and the buffers
+// are never copied in and out of the Java heap; file-to-file moves skip the buffers and let the kernel copy.
+// Whatever a call moves is added to the job's Counter.
+public class BytePump {
+    public static final int DEFAULT_BUFFER_BYTES = 256 * 1024;
+    // Chunked so a bandwidth-limited device is charged as a transfer progresses rather than all at once
+    private static final long TRANSFER_CHUNK_BYTES = 8L * 1024 * 1024;
+
+    private static BytePump shared;
+
+    private final int bufferBytes;
+    private final int maxBuffers;
+    private final BlockingQueue<ByteBuffer> free;
+    private final AtomicInteger created = new AtomicInteger();
+
+    // Buffers are allocated on first use, up to maxBuffers; after that a caller waits for one to come back
+    public BytePump(int bufferBytes, int maxBuffers) {
+        if (bufferBytes < 1 || maxBuffers < 1) {
+            throw new IllegalArgumentException("The pool needs at least one buffer of at least one byte");
+        }
+        this.bufferBytes = bufferBytes;
+        this.maxBuffers = maxBuffers;
+        this.free = new ArrayBlockingQueue<>(maxBuffers);
+    }
+
+    // Workers never outnumber the cores, so two buffers per core covers them and the duplicate finder together
+    public static synchronized BytePump shared() {
+        if (shared == null) {
+            shared = new BytePump(DEFAULT_BUFFER_BYTES, 2 * Runtime.getRuntime().availableProcessors());
+        }
+        return shared;
+    }
+
+    public int getBufferBytes() { return bufferBytes; }
+    public int getMaxBuffers() { return maxBuffers; }
+    public int getCreatedBuffers() { return created.get(); }
+
+    // Blocks while every buffer is out, which caps the direct memory all jobs together can hold
+    public Lease acquire() throws InterruptedException {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            buffer = created.getAndUpdate(n -> n < maxBuffers ? n + 1 : n) < maxBuffers
+                    ? ByteBuffer.allocateDirect(bufferBytes) : free.take();
+        }
+        buffer.clear();
+        return new Lease(buffer);
+    }
+
+    // Reads input to its end and writes every chunk to each output in turn; listener, which may be null, sees
+    // each chunk first and must leave its position alone. Returns the number of bytes read.
+    public long pump(ReadableByteChannel input, List<? extends WritableByteChannel> outputs, Counter counter,
+                     ChunkListener listener) throws IOException, InterruptedException {
+        long total = 0;
+        try (Lease lease = acquire()) {
+            ByteBuffer buffer = lease.buffer();
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                buffer.flip();
+                int length = buffer.remaining();
+                counter.read(length);
+                if (listener != null) {
+                    listener.onChunk(buffer);
+                }
+                for (WritableByteChannel output : outputs) {
+                    buffer.position(0);
+                    writeFully(output, buffer, counter);
+                }
+                total += length;
+                buffer.clear();
+            }
+        }
+        return total;
+    }
+
+    // Fills buffer from position onwards, up to its limit, unless the file ends first; returns the bytes read
+    public int readFully(FileChannel input, long position, ByteBuffer buffer, Counter counter) throws IOException {
+        int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            if (input.read(buffer, position + buffer.position() - start) < 0) {
+                break;
+            }
+        }
+        int read = buffer.position() - start;
+        counter.read(read);
+        return read;
+    }
+
+    public int writeFully(WritableByteChannel output, ByteBuffer bytes, Counter counter) throws IOException {
+        int length = bytes.remaining();
+        while (bytes.hasRemaining()) {
+            output.write(bytes);
+        }
+        counter.written(length);
+        return length;
+    }
+
+    // Moves count bytes from position without a user-space buffer: sinks over a FileChannel keep the kernel-side
+    // copy, other channels get the JDK's own transfer loop
+    public void transfer(FileChannel input, long position, long count, WritableByteChannel output, Counter counter,
+                         Progress progress) throws IOException, InterruptedException {
+        long done = 0;
+        while (done < count) {
+            long length = Math.min(count - done, TRANSFER_CHUNK_BYTES);
+            long transferred = output instanceof OutputSink.Output sinkOutput
+                    ? sinkOutput.transferFrom(input, position + done, length)
+                    : input.transferTo(position + done, length, output);
+            if (transferred <= 0) {
+                throw new IOException("Unexpected end of input after " + done + " of " + count + " bytes");
+            }
+            counter.read(transferred);
+            counter.written(transferred);
+            if (progress != null) {
+                progress.moved(transferred);
+            }
+            done += transferred;
+        }
+    }
+
+    public interface ChunkListener {
+        void onChunk(ByteBuffer chunk) throws InterruptedException;
+    }
+
+    public interface Progress {
+        void moved(long bytes) throws InterruptedException;
+    }
+
+    public class Lease implements AutoCloseable {
+        private ByteBuffer buffer;
+
+        private Lease(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        // Cleared when handed out; must not be kept after the lease is closed
+        public ByteBuffer buffer() {
+            if (buffer == null) {
+                throw new IllegalStateException("Buffer already returned to the pool");
+            }
+            return buffer;
+        }
+
+        @Override
+        public void close() {
+            if (buffer != null) {
+                free.offer(buffer);
+                buffer = null;
+            }
+        }
+    }
+
+    // Bytes one job read from its inputs and wrote to its outputs, across every engine path it took
+    public static class Counter {
+        private final AtomicLong read = new AtomicLong();
+        private final AtomicLong written = new AtomicLong();
+
+        void read(long bytes) {
+            read.addAndGet(bytes);
+        }
+
+        void written(long bytes) {
+            written.addAndGet(bytes);
+        }
+
+        public long getBytesRead() { return read.get(); }
+        public long getBytesWritten() { return written.get(); }
+    }
+}
@@ -0,0 +1,129 @@
+package se233.project1.controller;
+
+import se233.project1.model.ConversionConfig.FileConversionSettings;
+import se233.project1.model.ConversionConfig.OutputTarget;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+// Groups short clips with identical output targets so one encoder invocation can handle many of them
+public class ClipBatcher {
+    public static final double DEFAULT_MAX_CLIP_SECONDS = 10.0;
+    public static final double DEFAULT_GROUP_SECONDS = 120.0;
+    public static final int DEFAULT_MAX_GROUP_SIZE = 64;
+    // Used when the header cannot be read, e.g. M4A: assume a 128 kbps stream
+    private static final double FALLBACK_BYTES_PER_SECOND = 16_000.0;
+    // 48 kHz stereo 24-bit PCM; a file bigger than this many bytes per clip second cannot be a short clip
+    private static final double MAX_BYTES_PER_SECOND = 288_000.0;
+
+    private final double maxClipSeconds;
+    private final double groupSeconds;
+    private final int maxGroupSize;
+
+    public ClipBatcher() {
+        this(DEFAULT_MAX_CLIP_SECONDS, DEFAULT_GROUP_SECONDS, DEFAULT_MAX_GROUP_SIZE);
+    }
+
+    public ClipBatcher(double maxClipSeconds, double groupSeconds, int maxGroupSize) {
+        if (maxClipSeconds <= 0 || groupSeconds <= 0 || maxGroupSize < 1) {
+            throw new IllegalArgumentException("Clip batching limits must be positive");
+        }
+        this.maxClipSeconds = maxClipSeconds;
+        this.groupSeconds = groupSeconds;
+        this.maxGroupSize = maxGroupSize;
+    }
+
+    // Long files come back as single-element groups; short clips are packed until the group holds
+    // about groupSeconds of audio, so 2s clips share an invocation with many more neighbours than 9s clips.
+    // Groups are also kept small enough that every one of the parallel workers still gets a share.
+    // Groups are built as the caller pulls them, so an input's header is read only when its turn comes and
+    // the first jobs start while the rest of the batch is still unread.
+    public Iterator<List<FileConversionSettings>> group(List<FileConversionSettings> allSettings, int parallelism) {
+        // Sizes alone bound how many inputs could be short clips, which is all the share needs
+        long maxClipBytes = (long) (maxClipSeconds * MAX_BYTES_PER_SECOND);
+        int shortClips = 0;
+        for (FileConversionSettings settings : allSettings) {
+            if (settings.getInputSize() <= maxClipBytes) {
+                shortClips++;
+            }
+        }
+        int groupLimit = Math.max(1, Math.min(maxGroupSize, shortClips / Math.max(1, parallelism)));
+        return new Groups(allSettings.iterator(), groupLimit, maxClipBytes);
+    }
+
+    public static double estimateSeconds(FileConversionSettings settings) {
+        if (!settings.isArchiveEntry()) {
+            try {
+                AudioProbe.AudioInfo info = AudioProbe.probe(settings.getInputFile());
+                if (info.getDurationSeconds() > 0) {
+                    return info.getDurationSeconds();
+                }
+            } catch (IOException e) {
+                // Fall through to the size based estimate
+            }
+        }
+        return settings.getInputSize() / FALLBACK_BYTES_PER_SECOND;
+    }
+
+    // Pulls inputs until a group is complete; the groups still open when the inputs run out come last
+    private class Groups implements Iterator<List<FileConversionSettings>> {
+        private final Iterator<FileConversionSettings> inputs;
+        private final int groupLimit;
+        private final long maxClipBytes;
+        private final Queue<List<FileConversionSettings>> ready = new ArrayDeque<>();
+        private final Map<List<OutputTarget>, List<FileConversionSettings>> open = new LinkedHashMap<>();
+        private final Map<List<OutputTarget>, Double> openSeconds = new LinkedHashMap<>();
+
+        private Groups(Iterator<FileConversionSettings> inputs, int groupLimit, long maxClipBytes) {
+            this.inputs = inputs;
+            this.groupLimit = groupLimit;
+            this.maxClipBytes = maxClipBytes;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (ready.isEmpty() && inputs.hasNext()) {
+                add(inputs.next());
+            }
+            if (ready.isEmpty() && !open.isEmpty()) {
+                ready.addAll(open.values());
+                open.clear();
+                openSeconds.clear();
+            }
+            return !ready.isEmpty();
+        }
+
+        @Override
+        public List<FileConversionSettings> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return ready.remove();
+        }
+
+        private void add(FileConversionSettings settings) {
+            // Too big to be a short clip whatever its format, so there is no header to read
+            double seconds = settings.getInputSize() > maxClipBytes ? Double.MAX_VALUE : estimateSeconds(settings);
+            if (seconds > maxClipSeconds) {
+                ready.add(List.of(settings));
+                return;
+            }
+            List<OutputTarget> key = settings.getOutputTargets();
+            List<FileConversionSettings> group = open.computeIfAbsent(key, k -> new ArrayList<>());
+            group.add(settings);
+            double total = openSeconds.merge(key, seconds, Double::sum);
+            if (group.size() >= groupLimit || total >= groupSeconds) {
+                ready.add(group);
+                open.remove(key);
+                openSeconds.remove(key);
+            }
+        }
+    }
+}
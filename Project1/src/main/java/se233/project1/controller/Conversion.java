@@ -1,152 +1,1008 @@
 package se233.project1.controller;
 
-import javafx.application.Platform;
 import javafx.concurrent.Task;
 import se233.project1.model.ConversionConfig;
 import se233.project1.model.ConversionConfig.FileConversionSettings;
+import se233.project1.model.ConversionConfig.FileStatus;
+import se233.project1.model.ConversionConfig.OutputTarget;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 public class Conversion {
+    private static final int ENCODER_STARTUP_MILLIS = 500;
+    // loudnorm's default true peak and loudness range targets
+    private static final double PEAK_CEILING_DB = -1.5;
+    private static final double LOUDNESS_RANGE = 11.0;
+    // Enough queued behind each worker to keep the device lanes busy without holding the batch in memory
+    private static final int JOBS_IN_FLIGHT_PER_SLOT = 4;
+    private static final long DEFAULT_BYTES_IN_FLIGHT = 1L << 30;
+
     private ExecutorService executorService;
+    private ExecutorService verifierService;
+    private final CpuBudget cpuBudget;
+    private final IoScheduler ioScheduler;
+    private final BytePump bytePump = BytePump.shared();
     private ConversionConfig config;
     private Consumer<String> logCallback;
-    private Consumer<Double> progressCallback;
-    private Consumer<String> statusCallback;
-    private AtomicInteger processedFiles;
-    private AtomicInteger totalFiles;
+    private volatile BatchState batchState = BatchState.idle();
+    private boolean linkPassthroughOutputs;
+    private ClipBatcher clipBatcher;
+    private ReportWriter.Format reportFormat;
+    private RetryPolicy retryPolicy = new RetryPolicy();
+    private final Quarantine quarantine = new Quarantine();
+    private SegmentPlanner segmentPlanner = new SegmentPlanner();
+    private LoudnessCache loudnessCache = new LoudnessCache();
+    private int maxJobsInFlight;
+    private long maxBytesInFlight = DEFAULT_BYTES_IN_FLIGHT;
+    private OutputVerifier outputVerifier;
+    // One per output directory for jobs converted one at a time, so their names never collide either
+    private final Map<File, OutputPlanner> directoryPlanners = new ConcurrentHashMap<>();
 
     public Conversion(ConversionConfig config) {
+        this(config, new CpuBudget());
+    }
+
+    public Conversion(ConversionConfig config, CpuBudget cpuBudget) {
         this.config = config;
-        this.executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-        this.processedFiles = new AtomicInteger(0);
-        this.totalFiles = new AtomicInteger(0);
+        this.cpuBudget = cpuBudget;
+        this.ioScheduler = new IoScheduler(cpuBudget.getJobSlots());
+        this.maxJobsInFlight = cpuBudget.getJobSlots() * JOBS_IN_FLIGHT_PER_SLOT;
+    }
+
+    // Created on first use, so building a Conversion starts no threads
+    private synchronized ExecutorService executor() {
+        if (executorService == null) {
+            executorService = Executors.newFixedThreadPool(cpuBudget.getJobSlots());
+        }
+        return executorService;
+    }
+
+    // One low-priority thread: verification reads a few kilobytes per output and should only use what the
+    // encodes leave over, never a worker slot
+    private synchronized ExecutorService verifierExecutor() {
+        if (verifierService == null) {
+            verifierService = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "output-verifier");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        }
+        return verifierService;
     }
 
+    // Called on the worker thread that logs; a UI reads getBatchState() instead
     public void setLogCallback(Consumer<String> callback) {
         this.logCallback = callback;
     }
 
-    public void setProgressCallback(Consumer<Double> callback) {
-        this.progressCallback = callback;
+    // The running or last batch; replaced when the next batch starts
+    public BatchState getBatchState() {
+        return batchState;
     }
 
-    public void setStatusCallback(Consumer<String> callback) {
-        this.statusCallback = callback;
+    public Task<BatchOutcome> createConversionTask(File outputDirectory) {
+        return createConversionTask(new DirectorySink(outputDirectory));
     }
 
-    public Task<Void> createConversionTask(File outputDirectory) {
-        return new Task<Void>() {
+    public Task<BatchOutcome> createConversionTask(OutputSink sink) {
+        return new Task<BatchOutcome>() {
             @Override
-            protected Void call() throws Exception {
-                performBatchConversion(outputDirectory);
-                return null;
+            protected BatchOutcome call() throws Exception {
+                try (sink) {
+                    return performBatchConversion(sink);
+                }
             }
 
             @Override
             protected void succeeded() {
-                Platform.runLater(() -> {
-                    updateStatus("All conversions completed successfully!");
+                BatchOutcome outcome = getValue();
+                if (outcome == null || outcome.isCompleteSuccess()) {
                     logMessage("Batch conversion completed successfully!");
-                });
+                    batchState.finish("All conversions completed successfully!");
+                } else {
+                    logMessage("Batch conversion finished with failures");
+                    batchState.finish("Completed: " + outcome.getSucceeded() + " of " + outcome.getTotalFiles() +
+                            " file(s) converted");
+                }
             }
 
             @Override
             protected void failed() {
-                Platform.runLater(() -> {
-                    updateStatus("Conversion failed!");
-                    Throwable exception = getException();
-                    if (exception != null) {
-                        handleException(new ConversionException("Batch conversion failed", exception));
-                    }
-                });
+                Throwable exception = getException();
+                if (exception != null) {
+                    handleException(new ConversionException("Batch conversion failed", exception));
+                }
+                batchState.finish("Conversion failed!");
             }
         };
     }
 
-    private void performBatchConversion(File outputDirectory) throws Exception {
+    private BatchOutcome performBatchConversion(OutputSink sink) throws Exception {
         List<FileConversionSettings> allSettings = config.getAllFileSettings();
         if (allSettings == null || allSettings.isEmpty()) {
             throw new ConversionException("No input files provided");
         }
 
-        validateOutputDirectory(outputDirectory);
+        validateOutputLocation(sink);
+
+        BatchOutcome outcome = new BatchOutcome(allSettings.size());
+        BatchState state = new BatchState(allSettings);
+        batchState = state;
+        List<FileConversionSettings> runnable = new ArrayList<>();
+        for (FileConversionSettings settings : allSettings) {
+            Quarantine.Entry entry = quarantine.find(settings, sink.getLocation());
+            if (entry != null) {
+                outcome.skipped(settings, entry.getReason());
+                state.setStatus(settings, FileStatus.SKIPPED);
+                logMessage("⛔ Skipping quarantined " + settings.getInputFile().getName() + ": " + entry.getReason());
+            } else {
+                state.setStatus(settings, FileStatus.PENDING);
+                runnable.add(settings);
+            }
+        }
+
+        state.setTotal(runnable.size());
+
+        logMessage("Starting batch conversion of " + runnable.size() + " file(s)");
+        logMessage((sink instanceof ArchiveSink ? "Output archive: " : "Output directory: ") +
+                sink.getLocation().getAbsolutePath());
+
+        OutputVerifier verifier = outputVerifier;
+        if (verifier != null && sink instanceof ArchiveSink) {
+            logMessage("Outputs packaged into an archive are not verified");
+            verifier = null;
+        }
+
+        // Outputs inside an archive cannot be read back to copy, so there every input converts on its own
+        Map<FileConversionSettings, List<FileConversionSettings>> copies = sink instanceof ArchiveSink
+                ? Map.of() : planCopies(runnable);
+        List<FileConversionSettings> originals = withoutCopies(runnable, copies);
+
+        try (ReportWriter report = openReport(sink)) {
+            runBatch(originals, new Batch(sink, OutputPlanner.plan(runnable), report, outcome, planSegments(originals),
+                    verifier, copies));
+        }
+        logMessage("📋 " + outcome.summarize(20));
+        logMessage(String.format(Locale.ROOT, "   Moved %.1f MB in and %.1f MB out through %d pooled buffer(s)",
+                outcome.getBytesRead() / 1048576.0, outcome.getBytesWritten() / 1048576.0,
+                bytePump.getCreatedBuffers()));
+        return outcome;
+    }
+
+    // Inputs with the same content key and the same output settings would produce the same outputs, so only the
+    // first of them is converted; the others get links or copies of its outputs under their own names
+    private Map<FileConversionSettings, List<FileConversionSettings>> planCopies(List<FileConversionSettings> runnable) {
+        Map<List<Object>, FileConversionSettings> originals = new HashMap<>();
+        Map<FileConversionSettings, List<FileConversionSettings>> copies = new HashMap<>();
+        for (FileConversionSettings settings : runnable) {
+            String contentKey = settings.getContentKey();
+            if (contentKey == null) {
+                continue;
+            }
+            List<Object> key = Arrays.asList(contentKey, settings.getOutputTargets(), settings.getBitrate(),
+                    settings.getTargetLufs());
+            FileConversionSettings original = originals.putIfAbsent(key, settings);
+            if (original != null) {
+                copies.computeIfAbsent(original, k -> new ArrayList<>()).add(settings);
+            }
+        }
+        int count = copies.values().stream().mapToInt(List::size).sum();
+        if (count > 0) {
+            logMessage("🔁 " + count + " file(s) have the same content as another input and are copied, not converted");
+        }
+        return copies;
+    }
+
+    private static List<FileConversionSettings> withoutCopies(List<FileConversionSettings> runnable,
+                                                              Map<FileConversionSettings, List<FileConversionSettings>> copies) {
+        if (copies.isEmpty()) {
+            return runnable;
+        }
+        Set<FileConversionSettings> skipped = Collections.newSetFromMap(new IdentityHashMap<>());
+        copies.values().forEach(skipped::addAll);
+        List<FileConversionSettings> originals = new ArrayList<>();
+        for (FileConversionSettings settings : runnable) {
+            if (!skipped.contains(settings)) {
+                originals.add(settings);
+            }
+        }
+        return originals;
+    }
+
+    // Every job settles on its own: a failure is retried or recorded, and never cancels or repeats its neighbours.
+    // Jobs are built only when the dispatcher has room for them, so a batch of any length keeps a bounded
+    // number of futures, closures and retries alive at once.
+    private void runBatch(List<FileConversionSettings> allSettings, Batch batch) throws InterruptedException {
+        Iterator<List<FileConversionSettings>> jobs = clipBatcher != null
+                ? clipBatcher.group(allSettings, cpuBudget.getJobSlots())
+                : allSettings.stream().map(List::of).iterator();
+
+        int[] nextIndex = {1};
+        new JobDispatcher(maxJobsInFlight, maxBytesInFlight).run(jobs, Conversion::inputBytes, group -> {
+            int firstIndex = nextIndex[0];
+            nextIndex[0] += group.size();
+            return group.size() == 1
+                    ? submitSingleFile(group.get(0), batch, firstIndex, 1)
+                    : submitClipGroup(group, batch, firstIndex);
+        });
+    }
+
+    private static long inputBytes(List<FileConversionSettings> group) {
+        long bytes = 0;
+        for (FileConversionSettings settings : group) {
+            bytes += settings.getInputSize();
+        }
+        return bytes;
+    }
 
-        totalFiles.set(allSettings.size());
-        processedFiles.set(0);
+    private CompletableFuture<Void> submitSingleFile(FileConversionSettings settings, Batch batch, int fileIndex,
+                                                     int attempt) {
+        long queuedAt = System.nanoTime();
+        List<SegmentPlanner.Segment> segments = segmentsFor(settings, batch);
+        CompletableFuture<Void> job = !segments.isEmpty()
+                ? submitSegments(settings, segments, batch, fileIndex, queuedAt, attempt)
+                : ioScheduler.submit(settings.getInputFile(), batch.sink.getLocation(), () -> {
+                    try {
+                        convertSingleFile(settings, batch, fileIndex, queuedAt, false, attempt);
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor());
+        if (batch.verifier != null) {
+            job = job.thenCompose(ignored -> verifyOutputs(settings, batch, attempt));
+        }
+        return job.handle((ignored, error) -> error).thenCompose(error -> error == null
+                ? CompletableFuture.completedFuture(null)
+                : afterFailure(settings, batch, fileIndex, attempt, unwrap(error)));
+    }
 
-        logMessage("Starting batch conversion of " + allSettings.size() + " file(s)");
-        logMessage("Output directory: " + outputDirectory.getAbsolutePath());
+    // Plain files big enough to dwarf the rest of the batch, with the bytes of that rest. Only sizes are
+    // compared here; a candidate's header is read when it is dispatched, in segmentsFor.
+    private Map<FileConversionSettings, Long> planSegments(List<FileConversionSettings> allSettings) {
+        Map<FileConversionSettings, Long> candidates = new HashMap<>();
+        if (segmentPlanner == null) {
+            return candidates;
+        }
+        long totalBytes = 0;
+        for (FileConversionSettings settings : allSettings) {
+            totalBytes += settings.getInputSize();
+        }
+        int workers = cpuBudget.getJobSlots();
+        for (FileConversionSettings settings : allSettings) {
+            long bytes = settings.getInputSize();
+            if (!settings.isArchiveEntry() && segmentPlanner.isCandidate(bytes, totalBytes - bytes, workers)) {
+                candidates.put(settings, totalBytes - bytes);
+            }
+        }
+        return candidates;
+    }
 
-        List<CompletableFuture<Void>> futures = new ArrayList<>();
+    // The segments a candidate is cut into, or none. Decided once per batch, so a retry neither probes nor
+    // plans again. Only files whose every target needs the encoder qualify; copies are I/O bound and gain nothing.
+    private List<SegmentPlanner.Segment> segmentsFor(FileConversionSettings settings, Batch batch) {
+        Long restOfQueueBytes = batch.segmentCandidates.get(settings);
+        return restOfQueueBytes == null ? List.of()
+                : batch.segments.computeIfAbsent(settings, s -> planSegments(s, restOfQueueBytes));
+    }
 
-        for (int i = 0; i < allSettings.size(); i++) {
-            final FileConversionSettings settings = allSettings.get(i);
-            final int fileIndex = i + 1;
+    private List<SegmentPlanner.Segment> planSegments(FileConversionSettings settings, long restOfQueueBytes) {
+        // Segments can only share a normalisation gain that is known before they start
+        if (settings.getTargetLufs() != null && loudnessCache.find(settings.getInputFile()) == null) {
+            return List.of();
+        }
+        int workers = cpuBudget.getJobSlots();
+        try {
+            AudioProbe.AudioInfo source = AudioProbe.probe(settings.getInputFile());
+            double seconds = source.getDurationSeconds();
+            // The rest of the queue is taken to have this file's bitrate
+            double restOfQueueSeconds = seconds * restOfQueueBytes / Math.max(1, settings.getInputSize());
+            if (seconds <= 0 || !segmentPlanner.shouldSplit(seconds, restOfQueueSeconds, workers) ||
+                    settings.getOutputTargets().stream()
+                            .anyMatch(target -> EnginePath.choose(source, target) != EnginePath.TRANSCODE)) {
+                return List.of();
+            }
+            List<SegmentPlanner.Segment> segments = segmentPlanner.plan(source, settings.getInputSize(), workers);
+            if (segments.size() < 2) {
+                return List.of();
+            }
+            logMessage("✂ Splitting " + settings.getInputFile().getName() + " (" + Math.round(seconds / 60) +
+                    " min) into " + segments.size() + " segments of about " +
+                    Math.round(segments.get(0).getDurationSeconds()) + " s");
+            return segments;
+        } catch (IOException e) {
+            // Converted in one piece
+            return List.of();
+        }
+    }
 
-            CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+    // Segments are queued like separate jobs so idle workers pick them up; the parts are joined in order
+    // once every segment is done. A failed segment stops the ones not started yet and fails the whole file.
+    private CompletableFuture<Void> submitSegments(FileConversionSettings settings,
+                                                   List<SegmentPlanner.Segment> segments, Batch batch, int fileIndex,
+                                                   long queuedAt, int attempt) {
+        SegmentedJob job = new SegmentedJob(settings, segments);
+        File inputFile = settings.getInputFile();
+        File location = batch.sink.getLocation();
+        CompletableFuture<?>[] parts = new CompletableFuture<?>[job.segments.size()];
+        for (SegmentPlanner.Segment segment : job.segments) {
+            parts[segment.getIndex()] = ioScheduler.submit(inputFile, location, () -> {
                 try {
-                    convertSingleFile(settings, outputDirectory, fileIndex);
+                    encodeSegment(job, segment, batch, fileIndex, attempt);
                 } catch (Exception e) {
-                    throw new RuntimeException(new ConversionException("Failed to convert " + settings.getInputFile().getName(), e));
+                    job.failed = true;
+                    throw new CompletionException(e);
+                }
+            }, executor());
+        }
+        return CompletableFuture.allOf(parts)
+                .thenCompose(ignored -> ioScheduler.submit(inputFile, location, () -> {
+                    try {
+                        concatSegments(job, batch, queuedAt);
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor()))
+                .whenComplete((ignored, error) -> {
+                    job.deleteParts();
+                    if (error != null) {
+                        Throwable cause = unwrap(error);
+                        String status = retryPolicy.shouldRetry(attempt, cause)
+                                ? ReportWriter.STATUS_RETRY : ReportWriter.STATUS_FAILED;
+                        record(batch, settings, null, queuedAt, job.startedAt.get() != 0 ? job.startedAt.get() : queuedAt,
+                                status, describe(cause));
+                    }
+                });
+    }
+
+    // Clips that fail inside a group are retried on their own, without the clips that already converted
+    private CompletableFuture<Void> submitClipGroup(List<FileConversionSettings> group, Batch batch, int firstIndex) {
+        long queuedAt = System.nanoTime();
+        Map<Integer, Throwable> failures = new ConcurrentHashMap<>();
+        return ioScheduler.submit(group.get(0).getInputFile(), batch.sink.getLocation(), () -> {
+            try {
+                convertClipGroup(group, batch, firstIndex, queuedAt, failures);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor()).handle((ignored, error) -> {
+            // The shared encoder never started; none of the clips ran
+            if (error != null) {
+                for (int i = 0; i < group.size(); i++) {
+                    failures.putIfAbsent(i, unwrap(error));
+                }
+            }
+            return failures;
+        }).thenCompose(failed -> batch.verifier != null ? verifyClips(group, batch, failed)
+                : CompletableFuture.completedFuture(failed)
+        ).thenCompose(failed -> CompletableFuture.allOf(failed.entrySet().stream()
+                .map(f -> afterFailure(group.get(f.getKey()), batch, firstIndex + f.getKey(), 1, f.getValue()))
+                .toArray(CompletableFuture[]::new)));
+    }
+
+    // Clips that converted are verified one by one; one that fails joins the group's failures and is retried alone
+    private CompletableFuture<Map<Integer, Throwable>> verifyClips(List<FileConversionSettings> group, Batch batch,
+                                                                   Map<Integer, Throwable> failures) {
+        List<CompletableFuture<Void>> checks = new ArrayList<>();
+        for (int i = 0; i < group.size(); i++) {
+            if (!failures.containsKey(i)) {
+                int clip = i;
+                checks.add(verifyOutputs(group.get(i), batch, 1).exceptionally(error -> {
+                    failures.put(clip, unwrap(error));
+                    return null;
+                }));
+            }
+        }
+        return CompletableFuture.allOf(checks.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> failures);
+    }
+
+    // Runs on the verifier thread while the workers go on to the next encode. Until it passes, the job has
+    // neither succeeded nor settled; a mismatch fails the attempt, which is then retried or recorded as usual.
+    private CompletableFuture<Void> verifyOutputs(FileConversionSettings settings, Batch batch, int attempt) {
+        Unverified produced = batch.unverified.remove(settings);
+        if (produced == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> {
+            ConversionResult result = produced.result;
+            AudioProbe.AudioInfo source = null;
+            try {
+                source = settings.isArchiveEntry() ? null : AudioProbe.probe(settings.getInputFile());
+            } catch (IOException e) {
+                // Verified without comparing durations
+            }
+            try {
+                for (File outputFile : result.getOutputFiles()) {
+                    try {
+                        result.setVerification(outputFile, batch.verifier.verify(outputFile, source));
+                    } catch (IOException e) {
+                        result.setVerification(outputFile, e.getMessage());
+                        throw e;
+                    }
                 }
-            }, executorService);
+            } catch (IOException e) {
+                batch.outcome.verificationFailed();
+                String status = retryPolicy.shouldRetry(attempt, e) ? ReportWriter.STATUS_RETRY : ReportWriter.STATUS_FAILED;
+                record(batch, settings, result, produced.queuedAt, produced.startedAt, status, describe(e));
+                throw new CompletionException(e);
+            }
+            batch.outcome.verified(result.getOutputFiles().size());
+            finishJob(settings, batch, result, produced.queuedAt, produced.startedAt);
+        }, verifierExecutor());
+    }
+
+    private CompletableFuture<Void> afterFailure(FileConversionSettings settings, Batch batch, int fileIndex,
+                                                 int attempt, Throwable error) {
+        String name = settings.getInputFile().getName();
+        if (retryPolicy.shouldRetry(attempt, error)) {
+            long backoff = retryPolicy.backoffMillis(attempt);
+            batch.outcome.retried();
+            logMessage("↻ Retrying " + name + " in " + backoff + " ms (attempt " + (attempt + 1) + "/" +
+                    retryPolicy.getMaxAttempts() + "): " + describe(error));
+            Executor delayed = CompletableFuture.delayedExecutor(backoff, TimeUnit.MILLISECONDS, executor());
+            return CompletableFuture.supplyAsync(() -> submitSingleFile(settings, batch, fileIndex, attempt + 1), delayed)
+                    .thenCompose(retry -> retry);
+        }
+
+        batch.outcome.failed(settings, attempt, describe(error));
+        batchState.setStatus(settings, FileStatus.FAILED);
+        // A file that fails verification was written wrong, which says nothing about its input
+        if (!isVerificationFailure(error)) {
+            quarantine.add(settings, batch.sink.getLocation(), describe(error));
+        }
+        handleException(new ConversionException("Failed to convert " + name +
+                (attempt > 1 ? " after " + attempt + " attempts" : ""), error));
+        batchState.settle();
+        for (FileConversionSettings copy : batch.copies.getOrDefault(settings, List.of())) {
+            failCopy(copy, batch, null, System.nanoTime(), "same content as " + name + ", which failed: " + describe(error));
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static boolean isVerificationFailure(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OutputVerifier.VerificationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    // The innermost message names the actual problem, e.g. the missing path
+    private static String describe(Throwable error) {
+        Throwable root = error;
+        while (root.getCause() != null) {
+            root = root.getCause();
+        }
+        String message = root.getMessage() != null ? root.getMessage() : root.getClass().getSimpleName();
+        return root == error ? message : error.getMessage() + ": " + message;
+    }
+
+    // Short clips share one encoder start-up; a failing clip is collected on its own and the rest carry on
+    private void convertClipGroup(List<FileConversionSettings> group, Batch batch, int firstIndex, long queuedAt,
+                                  Map<Integer, Throwable> failures) throws Exception {
+        logMessage("🚀 One encoder invocation for " + group.size() + " short clips");
+        startEncoder();
 
-            futures.add(future);
+        for (int i = 0; i < group.size(); i++) {
+            try {
+                convertSingleFile(group.get(i), batch, firstIndex + i, queuedAt, true, 1);
+            } catch (Exception e) {
+                failures.put(i, e);
+            }
         }
+    }
 
+    private void convertSingleFile(FileConversionSettings settings, Batch batch, int fileIndex, long queuedAt,
+                                   boolean encoderRunning, int attempt) throws Exception {
+        logStart(settings, fileIndex, attempt);
+        long startedAt = System.nanoTime();
+        ConversionResult result;
         try {
-            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            result = runJob(settings, batch.sink, batch.planner, encoderRunning);
         } catch (Exception e) {
-            throw new ConversionException("Some conversions failed", e);
+            String status = retryPolicy.shouldRetry(attempt, e) ? ReportWriter.STATUS_RETRY : ReportWriter.STATUS_FAILED;
+            record(batch, settings, null, queuedAt, startedAt, status, describe(e));
+            throw e;
         }
+        produced(settings, batch, result, queuedAt, startedAt);
     }
 
-    private void convertSingleFile(FileConversionSettings settings, File outputDirectory, int fileIndex) throws Exception {
+    private void logStart(FileConversionSettings settings, int fileIndex, int attempt) {
         File inputFile = settings.getInputFile();
-        updateStatus("Converting: " + inputFile.getName());
-        logMessage("Processing file " + fileIndex + "/" + totalFiles.get() + ": " + inputFile.getName());
-        logMessage("   Settings: " + settings.getOutputFormat().toUpperCase() + ", " + settings.getQuality() +
-                ", " + settings.getSampleRate() + ", " + settings.getChannels());
+        batchState.setStatus(settings, FileStatus.CONVERTING);
+        batchState.started(inputFile.getName());
+        logMessage("Processing file " + fileIndex + "/" + batchState.getTotal() + ": " + inputFile.getName() +
+                (attempt > 1 ? " (attempt " + attempt + ")" : ""));
+        for (OutputTarget target : settings.getOutputTargets()) {
+            logMessage("   Settings: " + target.getOutputFormat().toUpperCase() + ", " + target.getQuality() +
+                    ", " + target.getSampleRate() + ", " + target.getChannels());
+        }
+    }
 
-        String outputFileName = generateOutputFileName(inputFile, settings.getOutputFormat());
-        File outputFile = new File(outputDirectory, outputFileName);
+    // With verification on, a job's result waits here until verifyOutputs has checked what it wrote
+    private void produced(FileConversionSettings settings, Batch batch, ConversionResult result, long queuedAt,
+                          long startedAt) {
+        if (batch.verifier == null) {
+            finishJob(settings, batch, result, queuedAt, startedAt);
+        } else {
+            batch.unverified.put(settings, new Unverified(result, queuedAt, startedAt));
+        }
+    }
 
-        performFFmpegConversion(inputFile, outputFile, settings);
+    private void finishJob(FileConversionSettings settings, Batch batch, ConversionResult result, long queuedAt,
+                           long startedAt) {
+        record(batch, settings, result, queuedAt, startedAt, ReportWriter.STATUS_OK, null);
+        batch.outcome.succeeded();
+        batch.outcome.moved(result.getByteCounter());
+        batchState.setStatus(settings, FileStatus.CONVERTED);
+        quarantine.release(settings, batch.sink.getLocation());
 
-        int completed = processedFiles.incrementAndGet();
-        Platform.runLater(() -> {
-            double progress = (double) completed / totalFiles.get();
-            updateProgress(progress);
-            logMessage("Completed: " + outputFile.getName() + " (" + completed + "/" + totalFiles.get() + ")");
-        });
+        int completed = batchState.settle();
+        for (File outputFile : result.getOutputFiles()) {
+            logMessage("Completed: " + outputFile.getName() + " [" + result.getEnginePath(outputFile).getLabel() + "] (" +
+                    completed + "/" + batchState.getTotal() + ")");
+        }
+        for (FileConversionSettings copy : batch.copies.getOrDefault(settings, List.of())) {
+            finishCopy(copy, batch, result);
+        }
+    }
+
+    // Links each output of the original under the copy's name, or copies it where the sink cannot link
+    private void finishCopy(FileConversionSettings copy, Batch batch, ConversionResult original) {
+        long startedAt = System.nanoTime();
+        List<String> outputNames = batch.planner.namesFor(copy);
+        ConversionResult result = new ConversionResult(copy.getInputFile());
+        try {
+            List<File> sources = original.getOutputFiles();
+            for (int i = 0; i < sources.size(); i++) {
+                File source = sources.get(i);
+                String name = batch.sink.link(outputNames.get(i), source);
+                if (name == null) {
+                    try (FileChannel input = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+                         OutputSink.Output output = batch.sink.create(outputNames.get(i), input.size())) {
+                        transferFully(input, 0, input.size(), output, result.getByteCounter(),
+                                ioScheduler.laneFor(source), ioScheduler.laneFor(batch.sink.getLocation()));
+                        output.commit();
+                        name = output.getName();
+                    }
+                }
+                File outputFile = batch.sink.locate(name);
+                result.addOutput(outputFile, EnginePath.DUPLICATE);
+                result.setOutputBytes(outputFile, original.getOutputBytes(source));
+                result.setVerification(outputFile, original.getVerification(source));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failCopy(copy, batch, result, startedAt, "interrupted while copying outputs");
+            return;
+        } catch (IOException e) {
+            failCopy(copy, batch, result, startedAt, "could not copy the outputs of " +
+                    original.getInputFile().getName() + ": " + e.getMessage());
+            return;
+        }
+        batch.outcome.duplicated();
+        finishJob(copy, batch, result, startedAt, startedAt);
+    }
+
+    private void failCopy(FileConversionSettings copy, Batch batch, ConversionResult result, long startedAt,
+                          String reason) {
+        record(batch, copy, result, startedAt, startedAt, ReportWriter.STATUS_FAILED, reason);
+        batch.outcome.failed(copy, 1, reason);
+        batchState.setStatus(copy, FileStatus.FAILED);
+        logMessage("🚨 ERROR: " + copy.getInputFile().getName() + ": " + reason);
+        batchState.settle();
+    }
+
+    private void record(Batch batch, FileConversionSettings settings, ConversionResult result,
+                        long queuedAt, long startedAt, String status, String error) {
+        if (batch.report == null) {
+            return;
+        }
+        long queueMillis = (startedAt - queuedAt) / 1_000_000;
+        long encodeMillis = (System.nanoTime() - startedAt) / 1_000_000;
+        try {
+            batch.report.record(settings, result, queueMillis, encodeMillis, status, error);
+        } catch (IOException e) {
+            logMessage("   Could not write report entry for " + settings.getInputFile().getName() + ": " + e.getMessage());
+        }
+    }
+
+    // The report goes next to the outputs; for an archive sink that is the directory holding the archive
+    private ReportWriter openReport(OutputSink sink) throws IOException {
+        if (reportFormat == null) {
+            return null;
+        }
+        File reportFile = new File(workDirectory(sink), "conversion_report_" + System.currentTimeMillis() + "." +
+                reportFormat.getExtension());
+        logMessage("Report: " + reportFile.getAbsolutePath());
+        return new ReportWriter(reportFile, reportFormat);
     }
 
-    private void performFFmpegConversion(File inputFile, File outputFile, FileConversionSettings settings) throws Exception {
+    // Converts one file outside of a batch, e.g. for a job leased from a ConversionCoordinator. The sink is the
+    // caller's choice: whether a rerun replaces earlier outputs or numbers new ones next to them is up to it.
+    public ConversionResult convertFile(FileConversionSettings settings, OutputSink sink) throws ConversionException {
+        validateOutputLocation(sink);
+        OutputPlanner planner = directoryPlanners.computeIfAbsent(sink.getLocation().getAbsoluteFile(),
+                directory -> new OutputPlanner());
         try {
-            long fileSize = inputFile.length();
-            int baseTime = 500;
-            int sizeTime = (int) (fileSize / (1024 * 1024) * 200);
-            int totalTime = baseTime + sizeTime + (int)(Math.random() * 1000);
+            return runJob(settings, sink, planner, false);
+        } finally {
+            planner.release(settings);
+        }
+    }
 
-            Thread.sleep(Math.min(totalTime, 3000));
+    // Per-device concurrency and bandwidth limits; auto-detected, override with getIoScheduler().setLimits(...)
+    public IoScheduler getIoScheduler() {
+        return ioScheduler;
+    }
 
-            // In real implementation, execute FFmpeg here with settings
-            Files.copy(inputFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    public void setLinkPassthroughOutputs(boolean linkPassthroughOutputs) {
+        this.linkPassthroughOutputs = linkPassthroughOutputs;
+    }
 
-            Platform.runLater(() -> {
-                logMessage("🔧 FFmpeg conversion: " + inputFile.getName() + " → " + outputFile.getName());
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy != null ? retryPolicy : RetryPolicy.noRetries();
+    }
+
+    // Inputs that failed every attempt in an earlier batch; clear() lets the next batch try them again
+    public Quarantine getQuarantine() {
+        return quarantine;
+    }
+
+    // Null turns the per-batch report off
+    public void setReportFormat(ReportWriter.Format reportFormat) {
+        this.reportFormat = reportFormat;
+    }
+
+    // Null turns segment-parallel encoding of very long files off
+    public void setSegmentPlanner(SegmentPlanner segmentPlanner) {
+        this.segmentPlanner = segmentPlanner;
+    }
+
+    // Measurements behind loudness normalisation; new LoudnessCache(null) keeps them in memory only
+    public void setLoudnessCache(LoudnessCache loudnessCache) {
+        this.loudnessCache = loudnessCache != null ? loudnessCache : new LoudnessCache(null);
+    }
+
+    // How much of a batch may be queued or running at once, counted in jobs and in input bytes.
+    // The next job is not even built until one in flight finishes; a file bigger than maxBytes runs alone.
+    public void setDispatchLimits(int maxJobs, long maxBytes) {
+        if (maxJobs < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("A batch needs room for at least one job and one byte");
+        }
+        this.maxJobsInFlight = maxJobs;
+        this.maxBytesInFlight = maxBytes;
+    }
+
+    // Null, the default, turns verification of finished outputs off
+    public void setOutputVerifier(OutputVerifier outputVerifier) {
+        this.outputVerifier = outputVerifier;
+    }
+
+    // Null turns clip batching off; every file then gets its own encoder invocation
+    public void setClipBatcher(ClipBatcher clipBatcher) {
+        this.clipBatcher = clipBatcher;
+    }
+
+    // Sends every target down the cheapest valid path; only targets that need a transcode share the decode
+    private ConversionResult runJob(FileConversionSettings settings, OutputSink sink, OutputPlanner planner,
+                                    boolean encoderRunning) throws ConversionException {
+        File inputFile = settings.getInputFile();
+        List<OutputTarget> targets = settings.getOutputTargets();
+        Double targetLufs = settings.getTargetLufs();
+        AudioProbe.AudioInfo source = settings.isArchiveEntry() ? null : probeSource(inputFile, targets, targetLufs != null);
+        LoudnessMeter.Measurement loudness = null;
+        if (targetLufs != null && !settings.isArchiveEntry()) {
+            loudness = loudnessCache.find(inputFile);
+            if (loudness != null) {
+                logMessage("📏 Cached loudness of " + inputFile.getName() + ": " + describeLoudness(loudness));
+            }
+        }
+
+        ConversionResult result = new ConversionResult(inputFile);
+        FFmpegCommand command = new FFmpegCommand(inputFile).setPipedInput(settings.isArchiveEntry());
+        List<String> outputNames = planner.namesFor(settings);
+        for (int i = 0; i < targets.size(); i++) {
+            OutputTarget target = targets.get(i);
+            File outputFile = sink.locate(outputNames.get(i));
+            EnginePath path = EnginePath.choose(source, target, targetLufs != null);
+            result.addOutput(outputFile, path);
+            if (path == EnginePath.TRANSCODE) {
+                command.addOutput(target, outputFile);
+            } else {
+                double gainDb = 0;
+                if (path == EnginePath.IN_PROCESS && targetLufs != null) {
+                    if (loudness == null) {
+                        loudness = analyseLoudness(inputFile, source, result.getByteCounter());
+                    }
+                    gainDb = normalisationGain(inputFile, loudness, targetLufs);
+                }
+                if (path == EnginePath.IN_PROCESS) {
+                    convertInProcess(inputFile, outputFile, sink, source, target, gainDb, result);
+                } else {
+                    copyWithoutTranscode(inputFile, outputFile, sink, source, path, result);
+                }
+                logMessage("⚡ " + path.getLabel() + ": " + inputFile.getName() + " → " +
+                        result.getOutputFiles().get(i).getName());
+            }
+        }
+
+        if (!command.getOutputFiles().isEmpty()) {
+            // Without a measurement loudnorm runs in its one-pass mode and the same read measures the file
+            LoudnessAnalysis analysis = null;
+            if (targetLufs != null) {
+                command.setAudioFilter(loudnormFilter(targetLufs, loudness));
+                if (loudness == null && !settings.isArchiveEntry()) {
+                    analysis = new LoudnessAnalysis(source);
+                }
+            }
+            try (CpuBudget.Lease lease = acquireCores(queuedJobs())) {
+                command.setThreads(lease.getThreads()).setCpuList(lease.getCpuList());
+                performFFmpegConversion(command, settings, sink, encoderRunning, analysis, result);
+            }
+            if (analysis != null) {
+                storeLoudness(inputFile, analysis);
+            }
+        }
+        return result;
+    }
+
+    // WAV written in-process needs its gain before the first sample, so a first run reads the file twice
+    private LoudnessMeter.Measurement analyseLoudness(File inputFile, AudioProbe.AudioInfo source,
+                                                      BytePump.Counter counter) throws ConversionException {
+        LoudnessAnalysis analysis = new LoudnessAnalysis(source);
+        IoScheduler.Lane inputLane = ioScheduler.laneFor(inputFile);
+        try (FileChannel input = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ)) {
+            bytePump.pump(input, List.of(), counter, chunk -> {
+                inputLane.consume(chunk.remaining());
+                analysis.update(chunk);
             });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConversionException("Conversion interrupted", e);
+        } catch (IOException e) {
+            throw new ConversionException("File I/O error during loudness analysis", e);
+        }
+        logMessage("📏 Analysis pass for " + inputFile.getName());
+        return storeLoudness(inputFile, analysis);
+    }
+
+    private LoudnessMeter.Measurement storeLoudness(File inputFile, LoudnessAnalysis analysis) {
+        analysis.finish();
+        LoudnessMeter.Measurement measurement = analysis.getMeasurement();
+        if (measurement == null) {
+            logMessage("   Loudness of " + inputFile.getName() + " is left to the encoder's loudnorm pass");
+            return null;
+        }
+        logMessage("📏 Loudness of " + inputFile.getName() + ": " + describeLoudness(measurement));
+        try {
+            loudnessCache.put(inputFile, analysis.getContentHash(), measurement);
+        } catch (IOException e) {
+            logMessage("   Could not cache the loudness of " + inputFile.getName() + ": " + e.getMessage());
+        }
+        return measurement;
+    }
+
+    // Capped so the peak stays under the ceiling; a quiet file with loud transients ends up below the target
+    private double normalisationGain(File inputFile, LoudnessMeter.Measurement loudness, double targetLufs) {
+        double gainDb = loudness.gainTo(targetLufs, PEAK_CEILING_DB);
+        if (gainDb < targetLufs - loudness.getIntegrated() - 0.05) {
+            logMessage(String.format(Locale.ROOT, "   Gain for %s limited to %+.1f dB by its %.1f dBFS peak",
+                    inputFile.getName(), gainDb, loudness.getPeak()));
+        }
+        return gainDb;
+    }
+
+    // Linear mode with a cached measurement applies one exact gain; one-pass mode adapts as it goes
+    private static String loudnormFilter(double targetLufs, LoudnessMeter.Measurement loudness) {
+        String filter = String.format(Locale.ROOT, "loudnorm=I=%.1f:TP=%.1f:LRA=%.1f", targetLufs, PEAK_CEILING_DB,
+                LOUDNESS_RANGE);
+        if (loudness == null) {
+            return filter + ":print_format=json";
+        }
+        return filter + String.format(Locale.ROOT, ":measured_I=%.2f:measured_TP=%.2f:measured_LRA=%.2f:" +
+                "measured_thresh=%.2f:linear=true", loudness.getIntegrated(), loudness.getPeak(),
+                loudness.getRange(), loudness.getThreshold());
+    }
+
+    private static String describeLoudness(LoudnessMeter.Measurement loudness) {
+        return String.format(Locale.ROOT, "%.1f LUFS, peak %.1f dBFS, range %.1f LU", loudness.getIntegrated(),
+                loudness.getPeak(), loudness.getRange());
+    }
+
+    // Outside a running batch nothing says how many jobs are coming, so every job slot is assumed busy
+    private int queuedJobs() {
+        BatchState state = batchState;
+        return state.isFinished() || state.getTotal() == 0 ? cpuBudget.getJobSlots() : state.getQueued();
+    }
+
+    private CpuBudget.Lease acquireCores(int queuedJobs) throws ConversionException {
+        try {
+            return cpuBudget.acquire(queuedJobs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConversionException("Conversion interrupted", e);
+        }
+    }
+
+    // Only worth reading the header when some target keeps the source container, or to meter a normalised source
+    private AudioProbe.AudioInfo probeSource(File inputFile, List<OutputTarget> targets, boolean normalise) {
+        String name = inputFile.getName().toLowerCase();
+        boolean sameContainer = targets.stream().anyMatch(t -> name.endsWith("." + t.getOutputFormat()));
+        if (!sameContainer && !normalise) {
+            return null;
+        }
+        try {
+            return AudioProbe.probe(inputFile);
+        } catch (IOException e) {
+            logMessage("   Could not probe " + inputFile.getName() + ", transcoding: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void copyWithoutTranscode(File inputFile, File outputFile, OutputSink sink, AudioProbe.AudioInfo source,
+                                      EnginePath path, ConversionResult result) throws ConversionException {
+        BytePump.Counter counter = result.getByteCounter();
+        try {
+            String linked = path == EnginePath.PASSTHROUGH && linkPassthroughOutputs
+                    ? sink.link(outputFile.getName(), inputFile) : null;
+            if (linked != null) {
+                result.setOutputBytes(outputFile, inputFile.length());
+                result.relocateOutput(outputFile, sink.locate(linked));
+                return;
+            }
+            try (FileChannel input = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ)) {
+                long offset = path == EnginePath.STREAM_COPY ? source.getDataOffset() : 0;
+                long length = path == EnginePath.STREAM_COPY ? source.getDataLength() : input.size();
+                long outputSize = path == EnginePath.STREAM_COPY ? 44 + length : length;
+                try (OutputSink.Output output = sink.create(outputFile.getName(), outputSize)) {
+                    if (path == EnginePath.STREAM_COPY) {
+                        bytePump.writeFully(output, wavHeader(source.getSampleRate(), source.getChannels(),
+                                source.getBitsPerSample(), source.getDataLength()), counter);
+                    }
+                    transferFully(input, offset, length, output, counter, ioScheduler.laneFor(inputFile),
+                            ioScheduler.laneFor(sink.getLocation()));
+                    result.setOutputBytes(outputFile, outputSize);
+                    commit(output, sink, result, outputFile);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConversionException("Conversion interrupted", e);
+        } catch (IOException e) {
+            throw new ConversionException("File I/O error during " + path.getLabel(), e);
+        }
+    }
+
+    // 16-bit PCM WAV to 16-bit PCM WAV at another rate or channel layout, without starting an encoder
+    private void convertInProcess(File inputFile, File outputFile, OutputSink sink, AudioProbe.AudioInfo source,
+                                  OutputTarget target, double gainDb, ConversionResult result)
+            throws ConversionException {
+        BytePump.Counter counter = result.getByteCounter();
+        int sampleRate = Integer.parseInt(target.getSampleRateAsNumber());
+        int channels = Integer.parseInt(target.getChannelsAsNumber());
+        PcmConverter converter = new PcmConverter(source.getSampleRate(), source.getChannels(), sampleRate, channels);
+        converter.setGainDb(gainDb);
+        int blockAlign = source.getChannels() * 2;
+        long inputLength = source.getDataLength() / blockAlign * blockAlign;
+        long dataLength = converter.outputDataLength(inputLength);
+        IoScheduler.Lane inputLane = ioScheduler.laneFor(inputFile);
+        IoScheduler.Lane outputLane = ioScheduler.laneFor(sink.getLocation());
+
+        try (FileChannel input = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ);
+             OutputSink.Output output = sink.create(outputFile.getName(), 44 + dataLength);
+             BytePump.Lease lease = bytePump.acquire()) {
+            bytePump.writeFully(output, wavHeader(sampleRate, channels, 16, dataLength), counter);
+            ByteBuffer chunk = lease.buffer();
+            // Whole input frames, and no more than the converter takes at once
+            int chunkBytes = Math.min(converter.getChunkBytes(), chunk.capacity() / blockAlign * blockAlign);
+            long written = 0;
+            for (long done = 0; done < inputLength; ) {
+                chunk.clear().limit((int) Math.min(chunkBytes, inputLength - done));
+                int read = bytePump.readFully(input, source.getDataOffset() + done, chunk, counter);
+                if (chunk.hasRemaining()) {
+                    throw new IOException("Unexpected end of PCM data in " + inputFile.getName());
+                }
+                done += read;
+                inputLane.consume(read);
+                chunk.flip();
+                int converted = bytePump.writeFully(output, converter.process(chunk), counter);
+                written += converted;
+                outputLane.consume(converted);
+            }
+            written += bytePump.writeFully(output, converter.finish(), counter);
+            if (written != dataLength) {
+                throw new IOException("Converted " + written + " bytes of PCM, expected " + dataLength);
+            }
+            result.setOutputBytes(outputFile, 44 + dataLength);
+            commit(output, sink, result, outputFile);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConversionException("Conversion interrupted", e);
+        } catch (IOException e) {
+            throw new ConversionException("File I/O error during " + EnginePath.IN_PROCESS.getLabel(), e);
+        }
+    }
+
+    // Canonical 44 byte RIFF header; stream copies and in-process conversions follow it with the PCM data chunk
+    private static ByteBuffer wavHeader(int sampleRate, int channels, int bitsPerSample, long dataLength) {
+        int blockAlign = channels * bitsPerSample / 8;
+        ByteBuffer header = ByteBuffer.allocate(44).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0x46464952).putInt((int) (36 + dataLength)).putInt(0x45564157);
+        header.putInt(0x20746d66).putInt(16).putShort((short) 1).putShort((short) channels)
+                .putInt(sampleRate).putInt(sampleRate * blockAlign)
+                .putShort((short) blockAlign).putShort((short) bitsPerSample);
+        header.putInt(0x61746164).putInt((int) dataLength);
+        header.flip();
+        return header;
+    }
+
+    // Charges both devices as the transfer progresses; a copy within one device is charged once
+    private void transferFully(FileChannel input, long position, long count, OutputSink.Output output,
+                               BytePump.Counter counter, IoScheduler.Lane inputLane, IoScheduler.Lane outputLane)
+            throws IOException, InterruptedException {
+        bytePump.transfer(input, position, count, output, counter, transferred -> {
+            inputLane.consume(transferred);
+            if (outputLane != inputLane) {
+                outputLane.consume(transferred);
+            }
+        });
+    }
+
+    // Decodes the input once and fans the stream out to every output of the command
+    private void performFFmpegConversion(FFmpegCommand command, FileConversionSettings settings, OutputSink sink,
+                                         boolean encoderRunning, LoudnessAnalysis analysis,
+                                         ConversionResult result) throws ConversionException {
+        File inputFile = command.getInputFile();
+        List<File> outputFiles = command.getOutputFiles();
+        try {
+            simulateEncode(settings.getInputSize(), outputFiles.size(), encoderRunning);
+
+            // In real implementation, execute the FFmpeg command here
+            fanOut(settings, command, sink, analysis, result);
+
+            for (File outputFile : outputFiles) {
+                logMessage("🔧 FFmpeg conversion: " + inputFile.getName() + " → " + outputFile.getName());
+            }
+            if (outputFiles.size() > 1) {
+                logMessage("   Decoded once for " + outputFiles.size() + " outputs");
+            }
+            logMessage("   " + command);
 
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -156,13 +1012,168 @@ public class Conversion {
         }
     }
 
-    private String generateOutputFileName(File inputFile, String outputFormat) {
-        String baseName = inputFile.getName();
-        int lastDot = baseName.lastIndexOf('.');
-        if (lastDot > 0) {
-            baseName = baseName.substring(0, lastDot);
+    private static void simulateEncode(long inputBytes, int outputs, boolean encoderRunning) throws InterruptedException {
+        int startupTime = encoderRunning ? 0 : ENCODER_STARTUP_MILLIS + (int)(Math.random() * 1000);
+        int sizeTime = (int) (inputBytes / (1024 * 1024) * 200);
+        int encodeTime = outputs * 100;
+        int totalTime = startupTime + sizeTime + encodeTime;
+
+        Thread.sleep(Math.min(totalTime, 3000));
+    }
+
+    // Encodes one time slice of a long input into a hidden part file per target, next to the outputs
+    private void encodeSegment(SegmentedJob job, SegmentPlanner.Segment segment, Batch batch, int fileIndex, int attempt)
+            throws ConversionException {
+        if (job.failed) {
+            throw new ConversionException("Skipped segment " + (segment.getIndex() + 1) + ": another segment failed");
+        }
+        FileConversionSettings settings = job.settings;
+        File inputFile = settings.getInputFile();
+        if (job.startedAt.compareAndSet(0, System.nanoTime())) {
+            logStart(settings, fileIndex, attempt);
+        }
+
+        List<OutputTarget> targets = settings.getOutputTargets();
+        FFmpegCommand command = new FFmpegCommand(inputFile)
+                .setSegment(segment.getStartSeconds(), segment.getDurationSeconds());
+        if (settings.getTargetLufs() != null) {
+            command.setAudioFilter(loudnormFilter(settings.getTargetLufs(), loudnessCache.find(inputFile)));
+        }
+        File[] parts = new File[targets.size()];
+        job.parts[segment.getIndex()] = parts;
+        IoScheduler.Lane inputLane = ioScheduler.laneFor(inputFile);
+        IoScheduler.Lane outputLane = ioScheduler.laneFor(batch.sink.getLocation());
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                parts[i] = Files.createTempFile(workDirectory(batch.sink).toPath(),
+                        "." + inputFile.getName() + ".seg" + segment.getIndex() + ".", ".part").toFile();
+                command.addOutput(targets.get(i), parts[i]);
+            }
+
+            int queuedJobs = batchState.getQueued() - 1 + job.pendingSegments.get();
+            try (CpuBudget.Lease lease = acquireCores(queuedJobs);
+                 FileChannel input = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ)) {
+                command.setThreads(lease.getThreads()).setCpuList(lease.getCpuList());
+                simulateEncode(segment.getLength(), parts.length, false);
+
+                // In real implementation, execute the FFmpeg command here
+                for (File part : parts) {
+                    try (FileChannel output = FileChannel.open(part.toPath(), StandardOpenOption.WRITE)) {
+                        bytePump.transfer(input, segment.getStartByte(), segment.getLength(), output, job.bytes,
+                                transferred -> {
+                                    inputLane.consume(transferred);
+                                    outputLane.consume(transferred);
+                                });
+                    }
+                }
+            }
+            job.pendingSegments.decrementAndGet();
+            logMessage("🔧 Segment " + (segment.getIndex() + 1) + "/" + segment.getCount() + " of " + inputFile.getName() +
+                    String.format(Locale.ROOT, " (%.1f s from %.1f s)", segment.getDurationSeconds(), segment.getStartSeconds()));
+            logMessage("   " + command);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConversionException("Conversion interrupted", e);
+        } catch (IOException e) {
+            throw new ConversionException("File I/O error in segment " + (segment.getIndex() + 1), e);
+        }
+    }
+
+    // Joins the parts in order into each published output, the equivalent of the concat demuxer with -c copy
+    private void concatSegments(SegmentedJob job, Batch batch, long queuedAt) throws ConversionException {
+        FileConversionSettings settings = job.settings;
+        List<String> outputNames = batch.planner.namesFor(settings);
+        ConversionResult result = new ConversionResult(settings.getInputFile(), job.bytes);
+        IoScheduler.Lane outputLane = ioScheduler.laneFor(batch.sink.getLocation());
+        try {
+            for (int i = 0; i < outputNames.size(); i++) {
+                File outputFile = batch.sink.locate(outputNames.get(i));
+                result.addOutput(outputFile, EnginePath.TRANSCODE);
+                long size = 0;
+                for (File[] parts : job.parts) {
+                    size += parts[i].length();
+                }
+                try (OutputSink.Output output = batch.sink.create(outputFile.getName(), size)) {
+                    for (File[] parts : job.parts) {
+                        try (FileChannel part = FileChannel.open(parts[i].toPath(), StandardOpenOption.READ)) {
+                            transferFully(part, 0, part.size(), output, job.bytes, outputLane, outputLane);
+                        }
+                    }
+                    result.setOutputBytes(outputFile, size);
+                    commit(output, batch.sink, result, outputFile);
+                }
+                logMessage("   Joined " + job.parts.length + " segments → " + result.getOutputFiles().get(i).getName());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConversionException("Conversion interrupted", e);
+        } catch (IOException e) {
+            throw new ConversionException("File I/O error while joining segments", e);
+        }
+        produced(settings, batch, result, queuedAt, job.startedAt.get());
+    }
+
+    // Archive members are streamed out of the archive; the encoder would read them from a pipe
+    private static ReadableByteChannel openInput(FileConversionSettings settings) throws IOException {
+        if (settings.isArchiveEntry()) {
+            return ArchiveInput.openEntry(settings.getArchiveFile(), settings.getArchiveEntry());
+        }
+        return FileChannel.open(settings.getInputFile().toPath(), StandardOpenOption.READ);
+    }
+
+    private void startEncoder() throws ConversionException {
+        try {
+            Thread.sleep(ENCODER_STARTUP_MILLIS + (int)(Math.random() * 1000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConversionException("Conversion interrupted", e);
+        }
+    }
+
+    private void fanOut(FileConversionSettings settings, FFmpegCommand command, OutputSink sink,
+                        LoudnessAnalysis analysis, ConversionResult result) throws IOException, InterruptedException {
+        List<File> outputFiles = command.getOutputFiles();
+        List<OutputTarget> targets = command.getTargets();
+        double seconds = ClipBatcher.estimateSeconds(settings);
+        IoScheduler.Lane inputLane = ioScheduler.laneFor(settings.getInputFile());
+        IoScheduler.Lane outputLane = ioScheduler.laneFor(sink.getLocation());
+        List<OutputSink.Output> outputs = new ArrayList<>();
+        try (ReadableByteChannel input = openInput(settings)) {
+            for (int i = 0; i < outputFiles.size(); i++) {
+                outputs.add(sink.create(outputFiles.get(i).getName(), OutputPlanner.estimateSize(seconds, targets.get(i))));
+            }
+            long read = bytePump.pump(input, outputs, result.getByteCounter(), chunk -> {
+                inputLane.consume(chunk.remaining());
+                if (analysis != null) {
+                    analysis.update(chunk);
+                }
+                outputLane.consume((long) chunk.remaining() * outputs.size());
+            });
+            for (int i = 0; i < outputs.size(); i++) {
+                result.setOutputBytes(outputFiles.get(i), read);
+                commit(outputs.get(i), sink, result, outputFiles.get(i));
+            }
+        } finally {
+            for (OutputSink.Output output : outputs) {
+                output.close();
+            }
         }
-        return baseName + "_converted." + outputFormat;
+    }
+
+    // A sink that keeps existing outputs may publish under another name than the planned one
+    private static void commit(OutputSink.Output output, OutputSink sink, ConversionResult result, File outputFile)
+            throws IOException {
+        output.commit();
+        result.relocateOutput(outputFile, sink.locate(output.getName()));
+    }
+
+    private void validateOutputLocation(OutputSink sink) throws ConversionException {
+        validateOutputDirectory(workDirectory(sink));
+    }
+
+    // The output directory itself, or the directory holding the archive
+    private static File workDirectory(OutputSink sink) {
+        return sink instanceof ArchiveSink ? sink.getLocation().getAbsoluteFile().getParentFile() : sink.getLocation();
     }
 
     private void validateOutputDirectory(File outputDirectory) throws ConversionException {
@@ -181,20 +1192,9 @@ public class Conversion {
     }
 
     private void logMessage(String message) {
-        if (logCallback != null) {
-            Platform.runLater(() -> logCallback.accept(message));
-        }
-    }
-
-    private void updateProgress(double progress) {
-        if (progressCallback != null) {
-            Platform.runLater(() -> progressCallback.accept(progress));
-        }
-    }
-
-    private void updateStatus(String status) {
-        if (statusCallback != null) {
-            Platform.runLater(() -> statusCallback.accept(status));
+        // A running batch keeps its own log for the window to read; anything else goes straight to the callback
+        if (!batchState.log(message) && logCallback != null) {
+            logCallback.accept(message);
         }
     }
 
@@ -205,10 +1205,14 @@ public class Conversion {
         }
     }
 
-    public void shutdown() {
+    public synchronized void shutdown() {
         if (executorService != null && !executorService.isShutdown()) {
             executorService.shutdown();
         }
+        if (verifierService != null) {
+            verifierService.shutdown();
+        }
+        ArchiveInput.closeAll();
     }
 
     public static class ConversionException extends Exception {
@@ -220,4 +1224,77 @@ public class Conversion {
             super(message, cause);
         }
     }
+
+    // What every job of one batch writes to
+    private static class Batch {
+        private final OutputSink sink;
+        private final OutputPlanner planner;
+        private final ReportWriter report;
+        private final BatchOutcome outcome;
+        // Inputs that may be split, by the bytes of the rest of the batch; decided on dispatch into segments
+        private final Map<FileConversionSettings, Long> segmentCandidates;
+        private final Map<FileConversionSettings, List<SegmentPlanner.Segment>> segments = new ConcurrentHashMap<>();
+        // Null when outputs are not verified
+        private final OutputVerifier verifier;
+        private final Map<FileConversionSettings, Unverified> unverified = new ConcurrentHashMap<>();
+        // Inputs that are not converted themselves, by the original whose outputs they receive
+        private final Map<FileConversionSettings, List<FileConversionSettings>> copies;
+
+        private Batch(OutputSink sink, OutputPlanner planner, ReportWriter report, BatchOutcome outcome,
+                      Map<FileConversionSettings, Long> segmentCandidates, OutputVerifier verifier,
+                      Map<FileConversionSettings, List<FileConversionSettings>> copies) {
+            this.sink = sink;
+            this.planner = planner;
+            this.report = report;
+            this.outcome = outcome;
+            this.segmentCandidates = segmentCandidates;
+            this.verifier = verifier;
+            this.copies = copies;
+        }
+    }
+
+    // A job that has written its outputs and waits for them to be verified
+    private static class Unverified {
+        private final ConversionResult result;
+        private final long queuedAt;
+        private final long startedAt;
+
+        private Unverified(ConversionResult result, long queuedAt, long startedAt) {
+            this.result = result;
+            this.queuedAt = queuedAt;
+            this.startedAt = startedAt;
+        }
+    }
+
+    // One attempt at a segmented file; the part files live until the join has run or the attempt failed
+    private static class SegmentedJob {
+        private final FileConversionSettings settings;
+        private final List<SegmentPlanner.Segment> segments;
+        private final File[][] parts;
+        private final AtomicInteger pendingSegments;
+        private final AtomicLong startedAt = new AtomicLong();
+        // Shared by every segment and the join, so the result counts the whole job
+        private final BytePump.Counter bytes = new BytePump.Counter();
+        private volatile boolean failed;
+
+        private SegmentedJob(FileConversionSettings settings, List<SegmentPlanner.Segment> segments) {
+            this.settings = settings;
+            this.segments = segments;
+            this.parts = new File[segments.size()][];
+            this.pendingSegments = new AtomicInteger(segments.size());
+        }
+
+        private void deleteParts() {
+            for (File[] segmentParts : parts) {
+                if (segmentParts == null) {
+                    continue;
+                }
+                for (File part : segmentParts) {
+                    if (part != null) {
+                        part.delete();
+                    }
+                }
+            }
+        }
+    }
 }
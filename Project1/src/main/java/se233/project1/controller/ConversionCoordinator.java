@@ -0,0 +1,349 @@
+package se233.project1.controller;
+
+import se233.project1.model.ConversionConfig;
+import se233.project1.model.ConversionConfig.FileConversionSettings;
+import se233.project1.model.ConversionConfig.OutputTarget;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/*
+ * Holds the batch queue and leases jobs to ConversionWorker processes over a line based TCP protocol.
+ * Workers pull work, so faster machines simply ask more often, and each holds one lease per job slot.
+ *
+ *   LEASE <workerId>                 -> JOB <jobId> <token> <file> (<format> <quality> <sampleRate> <channels>)...
+ *                                       | WAIT | DONE
+ *   HEARTBEAT <workerId> [<jobId> <token>]
+ *                                    -> OK | STALE   (renews every lease held by the worker; STALE when the
+ *                                       lease named is not held any more)
+ *   COMPLETE <jobId> <token>         -> OK | STALE
+ *   FAIL <jobId> <token> <message>   -> OK | STALE
+ *
+ * Fields are URL encoded so paths with spaces survive the split. A lease that is not renewed
+ * before it expires, or whose worker disconnects, goes back to the front of the queue. Every lease
+ * gets a new token, and a result counts only under the token of the lease the job is held by now:
+ * a worker that lost its lease gets STALE, whatever it reports, and the job's current holder carries on.
+ */
+public class ConversionCoordinator {
+    public static final long DEFAULT_LEASE_MILLIS = 15_000;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final List<FileConversionSettings> jobs;
+    private final int port;
+    private final long leaseMillis;
+    private final Deque<Integer> pending = new ArrayDeque<>();
+    private final Map<Integer, Lease> leases = new HashMap<>();
+    private final int[] attempts;
+    private final boolean[] done;
+    private int finishedJobs;
+    private long nextToken;
+    private int failedJobs;
+
+    private ServerSocket serverSocket;
+    private ExecutorService connectionPool;
+    private ScheduledExecutorService reaper;
+    private Consumer<String> logCallback;
+
+    public ConversionCoordinator(ConversionConfig config, int port) {
+        this(config, port, DEFAULT_LEASE_MILLIS);
+    }
+
+    public ConversionCoordinator(ConversionConfig config, int port, long leaseMillis) {
+        if (config == null || !config.hasInputFiles()) {
+            throw new IllegalArgumentException("Coordinator needs at least one input file");
+        }
+        this.jobs = config.getAllFileSettings();
+        this.port = port;
+        this.leaseMillis = leaseMillis;
+        this.attempts = new int[jobs.size()];
+        this.done = new boolean[jobs.size()];
+        for (int i = 0; i < jobs.size(); i++) {
+            pending.add(i);
+        }
+    }
+
+    public void setLogCallback(Consumer<String> callback) {
+        this.logCallback = callback;
+    }
+
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(port);
+        connectionPool = Executors.newCachedThreadPool();
+        reaper = Executors.newSingleThreadScheduledExecutor();
+        reaper.scheduleAtFixedRate(this::expireLeases, leaseMillis / 2, leaseMillis / 2, TimeUnit.MILLISECONDS);
+        connectionPool.execute(this::acceptLoop);
+        logMessage("Coordinator listening on port " + serverSocket.getLocalPort() + " with " + jobs.size() + " job(s)");
+    }
+
+    public int getPort() {
+        return serverSocket != null ? serverSocket.getLocalPort() : port;
+    }
+
+    public synchronized void awaitCompletion() throws InterruptedException {
+        while (!isFinished()) {
+            wait();
+        }
+    }
+
+    public synchronized int getFailedJobCount() {
+        return failedJobs;
+    }
+
+    public void shutdown() {
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException ignored) {
+        }
+        if (reaper != null) {
+            reaper.shutdownNow();
+        }
+        if (connectionPool != null) {
+            connectionPool.shutdownNow();
+        }
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connectionPool.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    logMessage("Accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        String workerId = null;
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.split(" ", 3);
+                String reply;
+                switch (parts[0]) {
+                    case "LEASE" -> {
+                        workerId = parts[1];
+                        reply = lease(workerId);
+                    }
+                    case "HEARTBEAT" -> {
+                        String[] lease = parts.length > 2 ? parts[2].split(" ") : null;
+                        reply = heartbeat(parts[1]);
+                        if (lease != null && !holds(Integer.parseInt(lease[0]), Long.parseLong(lease[1]))) {
+                            reply = "STALE";
+                        }
+                    }
+                    case "COMPLETE", "FAIL" -> {
+                        String[] result = line.split(" ", 4);
+                        int jobId = Integer.parseInt(result[1]);
+                        long token = Long.parseLong(result[2]);
+                        reply = result[0].equals("COMPLETE") ? complete(jobId, token)
+                                : fail(jobId, token, result.length > 3 ? decode(result[3]) : "");
+                    }
+                    default -> reply = "ERROR unknown command";
+                }
+                out.write(reply);
+                out.newLine();
+                out.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            logMessage("Worker connection lost" + (workerId != null ? " (" + workerId + ")" : "") + ": " + e.getMessage());
+        } finally {
+            if (workerId != null) {
+                releaseLeases(workerId);
+            }
+        }
+    }
+
+    private synchronized String lease(String workerId) {
+        Integer jobId = pending.poll();
+        if (jobId == null) {
+            return isFinished() ? "DONE" : "WAIT";
+        }
+        attempts[jobId]++;
+        Lease lease = new Lease(workerId, ++nextToken, System.currentTimeMillis() + leaseMillis);
+        leases.put(jobId, lease);
+
+        FileConversionSettings settings = jobs.get(jobId);
+        logMessage("Leased job " + jobId + " (" + settings.getInputFile().getName() + ") to " + workerId);
+        StringBuilder job = new StringBuilder("JOB ").append(jobId).append(' ').append(lease.token).append(' ')
+                .append(encode(settings.getSourceLocation()));
+        for (OutputTarget target : settings.getOutputTargets()) {
+            job.append(' ').append(encode(target.getOutputFormat()))
+                    .append(' ').append(encode(target.getQuality()))
+                    .append(' ').append(encode(target.getSampleRate()))
+                    .append(' ').append(encode(target.getChannels()));
+        }
+        // A trailing single field after the target quadruples carries the loudness target
+        if (settings.getTargetLufs() != null) {
+            job.append(' ').append(encode(String.valueOf(settings.getTargetLufs())));
+        }
+        return job.toString();
+    }
+
+    private synchronized String heartbeat(String workerId) {
+        long expiry = System.currentTimeMillis() + leaseMillis;
+        for (Lease lease : leases.values()) {
+            if (lease.workerId.equals(workerId)) {
+                lease.expiresAt = expiry;
+            }
+        }
+        return "OK";
+    }
+
+    private synchronized String complete(int jobId, long token) {
+        if (!holds(jobId, token)) {
+            logMessage("Ignored completion of job " + jobId + " from a lease that is no longer held");
+            return "STALE";
+        }
+        leases.remove(jobId);
+        done[jobId] = true;
+        finishedJobs++;
+        logMessage("Completed job " + jobId + " (" + finishedJobs + "/" + jobs.size() + ")");
+        notifyAll();
+        return "OK";
+    }
+
+    private synchronized String fail(int jobId, long token, String message) {
+        if (!holds(jobId, token)) {
+            logMessage("Ignored failure of job " + jobId + " from a lease that is no longer held: " + message);
+            return "STALE";
+        }
+        leases.remove(jobId);
+        logMessage("Job " + jobId + " failed: " + message);
+        requeueOrGiveUp(jobId);
+        return "OK";
+    }
+
+    private synchronized boolean holds(int jobId, long token) {
+        Lease lease = leases.get(jobId);
+        return lease != null && lease.token == token;
+    }
+
+    private synchronized void expireLeases() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Integer, Lease>> it = leases.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, Lease> entry = it.next();
+            if (entry.getValue().expiresAt < now) {
+                it.remove();
+                logMessage("Lease expired for job " + entry.getKey() + " held by " + entry.getValue().workerId);
+                requeueOrGiveUp(entry.getKey());
+            }
+        }
+    }
+
+    private synchronized void releaseLeases(String workerId) {
+        List<Integer> orphaned = new ArrayList<>();
+        leases.forEach((jobId, lease) -> {
+            if (lease.workerId.equals(workerId)) {
+                orphaned.add(jobId);
+            }
+        });
+        for (Integer jobId : orphaned) {
+            leases.remove(jobId);
+            requeueOrGiveUp(jobId);
+        }
+    }
+
+    private void requeueOrGiveUp(int jobId) {
+        if (done[jobId]) {
+            return;
+        }
+        if (attempts[jobId] < MAX_ATTEMPTS) {
+            pending.addFirst(jobId);
+        } else {
+            done[jobId] = true;
+            finishedJobs++;
+            failedJobs++;
+            logMessage("Giving up on job " + jobId + " after " + attempts[jobId] + " attempt(s)");
+        }
+        notifyAll();
+    }
+
+    private boolean isFinished() {
+        return finishedJobs == jobs.size();
+    }
+
+    private void logMessage(String message) {
+        if (logCallback != null) {
+            logCallback.accept(message);
+        }
+    }
+
+    static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    static FileConversionSettings parseJob(String[] fields) throws IOException {
+        // fields: JOB, jobId, token, file, then format, quality, sampleRate, channels per output target,
+        // then optionally the target loudness
+        String location = decode(fields[3]);
+        int separator = location.indexOf("!/");
+        File archive = separator > 0 ? new File(location.substring(0, separator)) : null;
+        FileConversionSettings settings;
+        if (archive != null && archive.isFile() && ArchiveInput.isArchive(archive)) {
+            String entry = location.substring(separator + 2);
+            settings = new FileConversionSettings(archive, entry, ArchiveInput.entrySize(archive, entry));
+        } else {
+            settings = new FileConversionSettings(new File(location));
+        }
+        settings.setOutputFormat(decode(fields[4]));
+        settings.setQuality(decode(fields[5]));
+        settings.setSampleRate(decode(fields[6]));
+        settings.setChannels(decode(fields[7]));
+        for (int i = 8; i + 3 < fields.length; i += 4) {
+            settings.addOutputTarget(decode(fields[i]), decode(fields[i + 1]), decode(fields[i + 2]), decode(fields[i + 3]));
+        }
+        if ((fields.length - 4) % 4 == 1) {
+            try {
+                settings.setTargetLufs(Double.parseDouble(decode(fields[fields.length - 1])));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Bad loudness target in job: " + fields[fields.length - 1], e);
+            }
+        }
+        return settings;
+    }
+
+    private static class Lease {
+        private final String workerId;
+        private final long token;
+        private long expiresAt;
+
+        private Lease(String workerId, long token, long expiresAt) {
+            this.workerId = workerId;
+            this.token = token;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package se233.project1.controller;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+// What a finished job produced and which engine path each output took
+public class ConversionResult {
+    private final File inputFile;
+    private final List<File> outputFiles = new ArrayList<>();
+    private final List<EnginePath> enginePaths = new ArrayList<>();
+    private final List<Long> outputBytes = new ArrayList<>();
+    private final List<String> verifications = new ArrayList<>();
+    private final BytePump.Counter byteCounter;
+
+    public ConversionResult(File inputFile) {
+        this(inputFile, new BytePump.Counter());
+    }
+
+    // For a job whose bytes were counted before its result existed, such as a segmented one
+    public ConversionResult(File inputFile, BytePump.Counter byteCounter) {
+        this.inputFile = inputFile;
+        this.byteCounter = byteCounter;
+    }
+
+    public void addOutput(File outputFile, EnginePath path) {
+        outputFiles.add(outputFile);
+        enginePaths.add(path);
+        outputBytes.add(0L);
+        verifications.add(null);
+    }
+
+    public void setOutputBytes(File outputFile, long bytes) {
+        int index = outputFiles.indexOf(outputFile);
+        if (index >= 0) {
+            outputBytes.set(index, bytes);
+        }
+    }
+
+    // For an output the sink published under another name than the planned one
+    public void relocateOutput(File outputFile, File publishedFile) {
+        int index = outputFiles.indexOf(outputFile);
+        if (index >= 0) {
+            outputFiles.set(index, publishedFile);
+        }
+    }
+
+    // What OutputVerifier checked, or why the output failed it
+    public void setVerification(File outputFile, String verification) {
+        int index = outputFiles.indexOf(outputFile);
+        if (index >= 0) {
+            verifications.set(index, verification);
+        }
+    }
+
+    public File getInputFile() { return inputFile; }
+    public List<File> getOutputFiles() { return new ArrayList<>(outputFiles); }
+    public List<EnginePath> getEnginePaths() { return new ArrayList<>(enginePaths); }
+    // Everything the job read and wrote, analysis passes and WAV headers included
+    public BytePump.Counter getByteCounter() { return byteCounter; }
+
+    public EnginePath getEnginePath(File outputFile) {
+        int index = outputFiles.indexOf(outputFile);
+        return index >= 0 ? enginePaths.get(index) : null;
+    }
+
+    public long getOutputBytes(File outputFile) {
+        int index = outputFiles.indexOf(outputFile);
+        return index >= 0 ? outputBytes.get(index) : 0;
+    }
+
+    // Null when the output was not verified
+    public String getVerification(File outputFile) {
+        int index = outputFiles.indexOf(outputFile);
+        return index >= 0 ? verifications.get(index) : null;
+    }
+}
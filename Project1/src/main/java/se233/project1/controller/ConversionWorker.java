@@ -0,0 +1,163 @@
+package se233.project1.controller;
+
+import se233.project1.model.ConversionConfig;
+import se233.project1.model.ConversionConfig.FileConversionSettings;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Pulls jobs from a ConversionCoordinator and runs them through the local Conversion engine, holding as many
+// leases at once as the engine has job slots
+public class ConversionWorker {
+    private static final long WAIT_MILLIS = 1000;
+    private static final AtomicInteger WORKER_COUNTER = new AtomicInteger();
+
+    private final String host;
+    private final int port;
+    private final File outputDirectory;
+    private final long heartbeatMillis;
+    private final String workerId;
+    private final int jobSlots;
+    private final Conversion conversion;
+    private Consumer<String> logCallback;
+
+    private BufferedReader in;
+    private BufferedWriter out;
+
+    public ConversionWorker(String host, int port, File outputDirectory) {
+        this(host, port, outputDirectory, ConversionCoordinator.DEFAULT_LEASE_MILLIS / 3);
+    }
+
+    public ConversionWorker(String host, int port, File outputDirectory, long heartbeatMillis) {
+        this.host = host;
+        this.port = port;
+        this.outputDirectory = outputDirectory;
+        this.heartbeatMillis = heartbeatMillis;
+        this.workerId = "worker-" + ProcessHandle.current().pid() + "-" + WORKER_COUNTER.incrementAndGet();
+        CpuBudget cpuBudget = new CpuBudget();
+        this.jobSlots = cpuBudget.getJobSlots();
+        this.conversion = new Conversion(new ConversionConfig(), cpuBudget);
+    }
+
+    public void setLogCallback(Consumer<String> callback) {
+        this.logCallback = callback;
+    }
+
+    public int run() throws IOException, InterruptedException {
+        int converted = 0;
+        ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor();
+        ExecutorService slots = Executors.newFixedThreadPool(jobSlots);
+        try (Socket socket = new Socket(host, port)) {
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            heartbeat.scheduleAtFixedRate(this::sendHeartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+            logMessage("Worker " + workerId + " connected to " + host + ":" + port + " with " + jobSlots + " job slot(s)");
+
+            // Every holder of a job publishes under the same names, replacing rather than numbering
+            DirectorySink outputs = new DirectorySink(outputDirectory);
+            List<Callable<Integer>> loops = Collections.nCopies(jobSlots, () -> convertLeasedJobs(outputs));
+            for (Future<Integer> loop : slots.invokeAll(loops)) {
+                try {
+                    converted += loop.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException io) {
+                        throw io;
+                    }
+                    throw new IOException("Job slot failed", e.getCause());
+                }
+            }
+        } finally {
+            heartbeat.shutdownNow();
+            slots.shutdownNow();
+            conversion.shutdown();
+        }
+        logMessage("Worker " + workerId + " finished after " + converted + " job(s)");
+        return converted;
+    }
+
+    // One job slot: leases, converts and reports jobs until the coordinator has none left
+    private int convertLeasedJobs(DirectorySink outputs) throws IOException, InterruptedException {
+        int converted = 0;
+        while (true) {
+            String reply = request("LEASE " + workerId);
+            if (reply == null || reply.equals("DONE")) {
+                return converted;
+            }
+            if (reply.equals("WAIT")) {
+                Thread.sleep(WAIT_MILLIS);
+                continue;
+            }
+
+            String[] fields = reply.split(" ");
+            // Results are reported under the lease they belong to
+            String lease = fields[1] + " " + fields[2];
+            FileConversionSettings settings;
+            try {
+                settings = ConversionCoordinator.parseJob(fields);
+            } catch (IOException | RuntimeException e) {
+                request("FAIL " + lease + " " + ConversionCoordinator.encode("Cannot read job: " + e.getMessage()));
+                continue;
+            }
+            String name = settings.getInputFile().getName();
+            // Outputs are published only after the coordinator confirmed the lease, so a worker whose lease
+            // expired mid-conversion leaves the job to its new holder
+            OutputSink sink = new LeasedSink(outputs, () -> "OK".equals(request("HEARTBEAT " + workerId + " " + lease)));
+            try {
+                List<File> outputFiles = conversion.convertFile(settings, sink).getOutputFiles();
+                if ("STALE".equals(request("COMPLETE " + lease))) {
+                    logMessage("Lease on " + name + " was lost after converting; its new holder finishes the job");
+                    continue;
+                }
+                converted++;
+                for (File outputFile : outputFiles) {
+                    logMessage("Converted " + name + " → " + outputFile.getName());
+                }
+            } catch (Conversion.ConversionException e) {
+                if ("STALE".equals(request("FAIL " + lease + " " + ConversionCoordinator.encode(String.valueOf(e.getMessage()))))) {
+                    logMessage("Lease on " + name + " was lost while converting; another worker converts it");
+                } else {
+                    logMessage("Failed " + name + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void sendHeartbeat() {
+        try {
+            request("HEARTBEAT " + workerId);
+        } catch (IOException e) {
+            logMessage("Heartbeat failed: " + e.getMessage());
+        }
+    }
+
+    // The heartbeat thread shares the connection, so each request/reply pair is atomic
+    private synchronized String request(String line) throws IOException {
+        out.write(line);
+        out.newLine();
+        out.flush();
+        return in.readLine();
+    }
+
+    private void logMessage(String message) {
+        if (logCallback != null) {
+            logCallback.accept(message);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package se233.project1.controller;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs one batch of CPU-bound encodes two ways: the way encoders behave on their own, each starting a thread per
+// core, and with the thread counts CpuBudget hands out: --benchmark-cpu [cores]. An encode resamples its frames in
+// one slice per thread, as slice-threaded codecs do. A core count above the real one oversubscribes on purpose,
+// to show the cost on a small machine. Pinning is left out: it applies to encoder processes, not to JVM threads.
+public class CpuBenchmark {
+    private static final int FRAMES_PER_JOB = 2 * 1024 * 1024;
+    private static final int CHUNK_FRAMES = 16 * 1024;
+    private static final int JOBS_PER_SLOT = 4;
+    private static final int ROUNDS = 3;
+
+    private final int cores;
+    private final int jobs;
+    private final float[] input = new float[CHUNK_FRAMES];
+    private final AtomicInteger sink = new AtomicInteger();
+
+    public CpuBenchmark(int cores) {
+        this.cores = cores > 0 ? cores : Runtime.getRuntime().availableProcessors();
+        this.jobs = this.cores * JOBS_PER_SLOT;
+        for (int i = 0; i < CHUNK_FRAMES; i++) {
+            input[i] = (float) Math.sin(2 * Math.PI * 440 * i / 44100.0);
+        }
+    }
+
+    public void run(PrintStream out) throws InterruptedException, ExecutionException {
+        out.println(cores + " cores (" + Runtime.getRuntime().availableProcessors() + " available), " + cores +
+                " job slots, " + jobs + " encodes of " + FRAMES_PER_JOB + " frames");
+        runBatch(false);
+        runBatch(true);
+        long unbounded = Long.MAX_VALUE;
+        long budgeted = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            unbounded = Math.min(unbounded, runBatch(false));
+            budgeted = Math.min(budgeted, runBatch(true));
+        }
+        out.printf("%-34s %10.1f ms%n", "encoder threads = cores per job", unbounded / 1e6);
+        out.printf("%-34s %10.1f ms%n", "encoder threads from CpuBudget", budgeted / 1e6);
+        out.printf("%-34s %10.2fx%n", "speedup", (double) unbounded / budgeted);
+        if (sink.get() == 42) {
+            out.println();
+        }
+    }
+
+    // Encodes on a pool of job slots, as Conversion does; returns the wall time of the whole batch in nanoseconds
+    private long runBatch(boolean budgeted) throws InterruptedException, ExecutionException {
+        CpuBudget budget = new CpuBudget(cores, cores, false);
+        ExecutorService slots = Executors.newFixedThreadPool(budget.getJobSlots());
+        AtomicInteger queued = new AtomicInteger(jobs);
+        long start = System.nanoTime();
+        try {
+            List<Future<Void>> encodes = new ArrayList<>();
+            for (int i = 0; i < jobs; i++) {
+                encodes.add(slots.submit(() -> {
+                    if (budgeted) {
+                        try (CpuBudget.Lease lease = budget.acquire(queued.get())) {
+                            encode(lease.getThreads());
+                        }
+                    } else {
+                        encode(cores);
+                    }
+                    queued.decrementAndGet();
+                    return null;
+                }));
+            }
+            for (Future<Void> encode : encodes) {
+                encode.get();
+            }
+        } finally {
+            slots.shutdownNow();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private void encode(int threads) throws InterruptedException {
+        Thread[] slices = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            int frames = FRAMES_PER_JOB / threads;
+            slices[i] = new Thread(() -> resample(frames));
+            slices[i].start();
+        }
+        for (Thread slice : slices) {
+            slice.join();
+        }
+    }
+
+    private void resample(int frames) {
+        Resampler resampler = new Resampler(44100, 48000);
+        float[] output = new float[resampler.maxOutput(CHUNK_FRAMES)];
+        int produced = 0;
+        for (int done = 0; done < frames; done += CHUNK_FRAMES) {
+            produced += resampler.process(input, 0, Math.min(CHUNK_FRAMES, frames - done), output);
+        }
+        sink.addAndGet(produced);
+    }
+}
@@ -0,0 +1,128 @@
+package se233.project1.controller;
+
+import java.io.File;
+import java.util.BitSet;
+
+// Splits the machine's cores between concurrent jobs so job threads times encoder threads never exceeds the core count.
+// Pinning each encoder to its cores with taskset is off unless the JVM runs with -Dse233.cpu.pin=true.
+public class CpuBudget {
+    public static final String PINNING_PROPERTY = "se233.cpu.pin";
+    // A job near the end of a batch takes spare cores, but never more than this many even shares of them
+    private static final int MAX_SHARES_PER_JOB = 4;
+
+    private final int cores;
+    private final int jobSlots;
+    private final boolean pinning;
+    private final BitSet busyCores;
+
+    public CpuBudget() {
+        this(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors(),
+                Boolean.getBoolean(PINNING_PROPERTY));
+    }
+
+    public CpuBudget(int cores, int jobSlots, boolean pinning) {
+        if (cores < 1 || jobSlots < 1) {
+            throw new IllegalArgumentException("Cores and job slots must be at least 1");
+        }
+        this.cores = cores;
+        this.jobSlots = Math.min(jobSlots, cores);
+        this.pinning = pinning && isLinux() && hasTaskset();
+        this.busyCores = new BitSet(cores);
+    }
+
+    public int getCores() {
+        return cores;
+    }
+
+    public int getJobSlots() {
+        return jobSlots;
+    }
+
+    public boolean isPinning() {
+        return pinning;
+    }
+
+    // Jobs near the end of a batch, when fewer are queued than cores are free, get the spare cores, up to
+    // MAX_SHARES_PER_JOB even shares each so a job that starts right after still finds cores free
+    public synchronized Lease acquire(int queuedJobs) throws InterruptedException {
+        while (busyCores.cardinality() >= cores) {
+            wait();
+        }
+        int free = cores - busyCores.cardinality();
+        int sharers = Math.max(1, Math.min(queuedJobs, jobSlots));
+        int share = cores / jobSlots;
+        int threads = Math.min(free, Math.min(share * MAX_SHARES_PER_JOB, Math.max(share, free / sharers)));
+
+        BitSet granted = new BitSet(cores);
+        for (int core = busyCores.nextClearBit(0); core < cores && granted.cardinality() < threads;
+             core = busyCores.nextClearBit(core + 1)) {
+            granted.set(core);
+        }
+        busyCores.or(granted);
+        return new Lease(granted);
+    }
+
+    private synchronized void release(BitSet granted) {
+        busyCores.andNot(granted);
+        notifyAll();
+    }
+
+    private static boolean isLinux() {
+        return System.getProperty("os.name", "").toLowerCase().contains("linux");
+    }
+
+    // Without taskset the prefixed command would not start at all
+    private static boolean hasTaskset() {
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return false;
+        }
+        for (String directory : path.split(File.pathSeparator)) {
+            if (!directory.isEmpty() && new File(directory, "taskset").canExecute()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public class Lease implements AutoCloseable {
+        private final BitSet granted;
+        private boolean released;
+
+        private Lease(BitSet granted) {
+            this.granted = granted;
+        }
+
+        public int getThreads() {
+            return granted.cardinality();
+        }
+
+        // taskset style list such as "0-3,6", or null when pinning is off
+        public String getCpuList() {
+            if (!pinning) {
+                return null;
+            }
+            StringBuilder list = new StringBuilder();
+            for (int start = granted.nextSetBit(0); start >= 0; ) {
+                int end = granted.nextClearBit(start) - 1;
+                if (list.length() > 0) {
+                    list.append(',');
+                }
+                list.append(start);
+                if (end > start) {
+                    list.append('-').append(end);
+                }
+                start = granted.nextSetBit(end + 1);
+            }
+            return list.toString();
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(granted);
+            }
+        }
+    }
+}
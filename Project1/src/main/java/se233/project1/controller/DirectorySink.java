@@ -0,0 +1,219 @@
+package se233.project1.controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+// Every output is its own file in the output directory. Outputs are written to a hidden .part file next to
+// the target and renamed over it only once complete, so a crash never leaves a truncated file under a final name.
+// What a crash does leave are those .part files; opening a sink sweeps the ones nobody has written to for a while.
+public class DirectorySink implements OutputSink {
+    private static final String PART_SUFFIX = ".part";
+    private static final Pattern PART_NAME = Pattern.compile("\\..+\\.[0-9a-f]{1,16}" + Pattern.quote(PART_SUFFIX));
+    // Other processes may be writing to the same directory; a part untouched this long has lost its writer
+    private static final long STALE_PART_MILLIS = 10 * 60 * 1000;
+
+    private final File directory;
+    private final boolean replaceExisting;
+
+    // For a batch, whose planned names are its own and whose reruns and retries update them in place, and for
+    // distributed workers, where each holder of a job writes the job's outputs under the same names
+    public DirectorySink(File directory) {
+        this(directory, true);
+    }
+
+    // Without replacing, an output whose name is already taken, e.g. by another worker writing to the same
+    // directory, is published under the next free numbered name instead: a_converted_2.mp3, a_converted_3.mp3...
+    public DirectorySink(File directory, boolean replaceExisting) {
+        this.directory = directory;
+        this.replaceExisting = replaceExisting;
+        sweepStaleParts();
+    }
+
+    private void sweepStaleParts() {
+        long cutoff = System.currentTimeMillis() - STALE_PART_MILLIS;
+        File[] parts = directory.listFiles(file -> PART_NAME.matcher(file.getName()).matches() &&
+                file.isFile() && file.lastModified() < cutoff);
+        if (parts == null) {
+            return;
+        }
+        for (File part : parts) {
+            try {
+                Files.deleteIfExists(part.toPath());
+            } catch (IOException e) {
+                // Left for the next sweep
+            }
+        }
+    }
+
+    @Override
+    public Output create(String name) throws IOException {
+        return create(name, 0);
+    }
+
+    @Override
+    public Output create(String name, long expectedSize) throws IOException {
+        if (expectedSize > 0 && directory.getUsableSpace() > 0 && directory.getUsableSpace() < expectedSize) {
+            throw new IOException("Not enough space in " + directory + " for " + name);
+        }
+        Path temp = tempPath(name);
+        FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        try {
+            // Java has no fallocate; extending the file up front still lets the file system lay out
+            // the blocks in one go instead of growing the file write by write
+            if (expectedSize > 0) {
+                channel.write(ByteBuffer.allocate(1), expectedSize - 1);
+            }
+        } catch (IOException e) {
+            channel.close();
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return new FileOutput(temp, name, channel);
+    }
+
+    @Override
+    public File locate(String name) {
+        return new File(directory, name);
+    }
+
+    @Override
+    public File getLocation() {
+        return directory;
+    }
+
+    @Override
+    public String link(String name, File source) {
+        Path temp = tempPath(name);
+        try {
+            Files.createLink(temp, source.toPath());
+            return publish(temp, name);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Different file store or no hard link support
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+            }
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private Path tempPath(String name) {
+        return new File(directory, "." + name + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) +
+                PART_SUFFIX).toPath();
+    }
+
+    // Returns the name the output was published under
+    private String publish(Path temp, String name) throws IOException {
+        if (replaceExisting) {
+            replace(temp, locate(name).toPath());
+            return name;
+        }
+        for (int number = 1; ; number++) {
+            String candidate = numbered(name, number);
+            try {
+                claim(temp, locate(candidate).toPath());
+                return candidate;
+            } catch (FileAlreadyExistsException e) {
+                // Taken; try the next number
+            }
+        }
+    }
+
+    // Replaces any previous output in one step; readers see either the old file or the complete new one
+    private static void replace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // A hard link never replaces anything, so of two processes publishing one name only one can get it.
+    // An atomic rename might replace silently, so without hard links a plain move, which checks first, is used.
+    private static void claim(Path temp, Path target) throws IOException {
+        try {
+            Files.createLink(target, temp);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.move(temp, target);
+            return;
+        }
+        Files.delete(temp);
+    }
+
+    // The same numbering OutputPlanner uses: a_converted.mp3, a_converted_2.mp3, ...
+    private static String numbered(String name, int number) {
+        if (number == 1) {
+            return name;
+        }
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) + "_" + number + name.substring(dot) : name + "_" + number;
+    }
+
+    private class FileOutput implements Output {
+        private final Path temp;
+        private String name;
+        private final FileChannel channel;
+        private boolean committed;
+
+        private FileOutput(Path temp, String name, FileChannel channel) {
+            this.temp = temp;
+            this.name = name;
+            this.channel = channel;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return channel.write(src);
+        }
+
+        @Override
+        public long transferFrom(FileChannel input, long position, long count) throws IOException {
+            return input.transferTo(position, count, channel);
+        }
+
+        // Drops the unused part of the reservation and syncs before the rename, so the new name never
+        // points at data that is still only in the page cache
+        @Override
+        public void commit() throws IOException {
+            channel.truncate(channel.position());
+            channel.force(false);
+            channel.close();
+            name = publish(temp, name);
+            committed = true;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+            if (!committed) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+}
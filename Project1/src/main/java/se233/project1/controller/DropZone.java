@@ -7,6 +7,7 @@ import javafx.scene.input.TransferMode;
 import se233.project1.model.ConversionConfig;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -58,10 +59,16 @@ public class DropZone {
                 List<File> validFiles = validateAndFilterFiles(files);
 
                 if (!validFiles.isEmpty()) {
+                    int added = 0;
                     for (File file : validFiles) {
-                        config.addInputFile(file);
+                        if (ArchiveInput.isArchive(file)) {
+                            added += addArchiveEntries(file);
+                        } else {
+                            config.addInputFile(file);
+                            added++;
+                        }
                     }
-                    success = true;
+                    success = added > 0;
                     if (onFilesDropped != null) {
                         onFilesDropped.run();
                     }
@@ -84,6 +91,22 @@ public class DropZone {
         event.consume();
     }
 
+    // Archives act as folders: their audio entries are added and later streamed without extraction
+    private int addArchiveEntries(File archive) throws AudioProcessingException {
+        try {
+            int added = 0;
+            for (ArchiveInput.Entry entry : ArchiveInput.listEntries(archive)) {
+                if (hasSupportedExtension(entry.getName())) {
+                    config.addArchiveEntry(archive, entry.getName(), entry.getSize());
+                    added++;
+                }
+            }
+            return added;
+        } catch (IOException e) {
+            throw new AudioProcessingException("Cannot read archive " + archive.getName(), e);
+        }
+    }
+
     private List<File> validateAndFilterFiles(List<File> files) throws IllegalArgumentException {
         if (files == null || files.isEmpty()) {
             throw new IllegalArgumentException("No files provided");
@@ -102,8 +125,11 @@ public class DropZone {
         if (!file.exists() || !file.isFile()) {
             return false;
         }
+        return ArchiveInput.isArchive(file) || hasSupportedExtension(file.getName());
+    }
 
-        String fileName = file.getName().toLowerCase();
+    private boolean hasSupportedExtension(String name) {
+        String fileName = name.toLowerCase();
         return Arrays.stream(SUPPORTED_FORMATS)
                 .anyMatch(format -> fileName.endsWith("." + format));
     }
@@ -0,0 +1,101 @@
+package se233.project1.controller;
+
+import java.io.PrintStream;
+import java.util.Random;
+
+// Times the scalar and vector DSP kernels side by side: --benchmark-dsp, with and without
+// --add-modules jdk.incubator.vector. Each kernel is warmed up first and the best of several rounds is reported.
+public class DspBenchmark {
+    private static final int SAMPLES = 64 * 1024;
+    private static final int TAPS = Resampler.DEFAULT_TAPS_PER_PHASE;
+    private static final long WARMUP_NANOS = 500_000_000L;
+    private static final long ROUND_NANOS = 200_000_000L;
+    private static final int ROUNDS = 5;
+
+    private final short[] shorts = new short[SAMPLES];
+    private final float[] floats = new float[SAMPLES];
+    private final float[] output = new float[SAMPLES];
+    private final short[] shortOutput = new short[SAMPLES];
+    private final float[] coefficients = new float[TAPS];
+    // Keeps results alive so the JIT cannot drop the work
+    private double sink;
+
+    public DspBenchmark() {
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            shorts[i] = (short) random.nextInt();
+            floats[i] = random.nextFloat() * 2 - 1;
+        }
+        for (int i = 0; i < TAPS; i++) {
+            coefficients[i] = random.nextFloat();
+        }
+    }
+
+    public void run(PrintStream out) {
+        boolean vector = AudioDsp.isVectorized();
+        out.println("Vector API: " + (vector ? "enabled" : "not available, scalar only"));
+        out.printf("%-22s %14s %14s %9s%n", "kernel", "scalar ns/smp", "vector ns/smp", "speedup");
+
+        compare(out, "short -> float", SAMPLES, vector,
+                () -> AudioDsp.Scalar.toFloat(shorts, output, 0, SAMPLES),
+                () -> VectorDsp.toFloat(shorts, output, SAMPLES));
+        compare(out, "float -> short", SAMPLES, vector,
+                () -> AudioDsp.Scalar.toShort(floats, shortOutput, 0, SAMPLES),
+                () -> VectorDsp.toShort(floats, shortOutput, SAMPLES));
+        compare(out, "stereo downmix", SAMPLES, vector,
+                () -> AudioDsp.Scalar.downmix(floats, 2, output, 0, SAMPLES / 2),
+                () -> VectorDsp.downmix(floats, 2, output, SAMPLES / 2));
+        int dots = SAMPLES / TAPS;
+        compare(out, TAPS + "-tap FIR", dots * TAPS, vector,
+                () -> {
+                    for (int i = 0; i < dots; i++) {
+                        sink += AudioDsp.Scalar.dot(coefficients, 0, floats, i * TAPS, TAPS);
+                    }
+                },
+                () -> {
+                    for (int i = 0; i < dots; i++) {
+                        sink += VectorDsp.dot(coefficients, 0, floats, i * TAPS, TAPS);
+                    }
+                });
+
+        Resampler resampler = new Resampler(44100, 48000);
+        float[] resampled = new float[resampler.maxOutput(SAMPLES)];
+        double nanos = measure(() -> sink += resampler.process(floats, 0, SAMPLES, resampled)) / SAMPLES;
+        out.printf("%-22s %14.3f ns per input sample (%s)%n", "resample 44.1k -> 48k", nanos,
+                vector ? "vector" : "scalar");
+        if (sink == 42) {
+            out.println();
+        }
+    }
+
+    private void compare(PrintStream out, String name, int samples, boolean vector, Runnable scalar, Runnable simd) {
+        double scalarNanos = measure(scalar) / samples;
+        if (!vector) {
+            out.printf("%-22s %14.3f %14s %9s%n", name, scalarNanos, "-", "-");
+            return;
+        }
+        double vectorNanos = measure(simd) / samples;
+        out.printf("%-22s %14.3f %14.3f %8.1fx%n", name, scalarNanos, vectorNanos, scalarNanos / vectorNanos);
+    }
+
+    // Best nanoseconds per call over ROUNDS timed rounds
+    private static double measure(Runnable kernel) {
+        long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() < warmupEnd) {
+            kernel.run();
+        }
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long calls = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                kernel.run();
+                calls++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < ROUND_NANOS);
+            best = Math.min(best, (double) elapsed / calls);
+        }
+        return best;
+    }
+}
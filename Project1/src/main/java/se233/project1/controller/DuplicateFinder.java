@@ -0,0 +1,200 @@
+package se233.project1.controller;
+
+import se233.project1.model.ConversionConfig.FileConversionSettings;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/*
+ * Finds inputs with the same bytes under different names, cheapest test first:
+ *
+ *   1. size          no reads at all; a file with a size of its own is unique
+ *   2. sampled hash  SHA-256 of the head, middle and tail blocks, three reads per file
+ *   3. full hash     only for files still sharing a sampled hash and too big for the samples to cover
+ *
+ * Hashing runs on the finder's own threads. Hashes are kept per path, size and modification time,
+ * so finding again after more files arrive only reads the new ones.
+ */
+public class DuplicateFinder {
+    private static final int BLOCK_BYTES = 64 * 1024;
+
+    private final ExecutorService hashers;
+    private final BytePump bytePump = BytePump.shared();
+    private final Map<String, String> sampledHashes = new ConcurrentHashMap<>();
+    private final Map<String, String> fullHashes = new ConcurrentHashMap<>();
+
+    public DuplicateFinder() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public DuplicateFinder(int threads) {
+        this.hashers = Executors.newFixedThreadPool(Math.max(1, threads), task -> {
+            Thread thread = new Thread(task, "duplicate-finder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Gives every settings a content key, equal only for byte-identical inputs and null for inputs without
+    // a copy among the others, and returns the groups of copies in the order given. Archive members and
+    // files that cannot be read are treated as unique. Scans run one at a time and reuse earlier hashes.
+    public synchronized List<List<FileConversionSettings>> find(List<FileConversionSettings> allSettings) {
+        Map<Long, List<FileConversionSettings>> bySize = new LinkedHashMap<>();
+        for (FileConversionSettings settings : allSettings) {
+            settings.setContentKey(null);
+            if (!settings.isArchiveEntry() && settings.getInputSize() > 0) {
+                bySize.computeIfAbsent(settings.getInputSize(), k -> new ArrayList<>()).add(settings);
+            }
+        }
+
+        List<List<FileConversionSettings>> sampled = split(shared(bySize.values()), this::sampledHash);
+        List<List<FileConversionSettings>> groups = new ArrayList<>();
+        List<List<FileConversionSettings>> uncovered = new ArrayList<>();
+        for (List<FileConversionSettings> group : sampled) {
+            // Three blocks of a small file are the whole file, so its sampled hash is already a full one
+            (coveredBySamples(group.get(0)) ? groups : uncovered).add(group);
+        }
+        groups.addAll(split(uncovered, this::fullHash));
+
+        Map<FileConversionSettings, Integer> order = new IdentityHashMap<>();
+        for (int i = 0; i < allSettings.size(); i++) {
+            order.put(allSettings.get(i), i);
+        }
+        for (List<FileConversionSettings> group : groups) {
+            FileConversionSettings first = group.get(0);
+            String key = first.getInputSize() + ":" + (coveredBySamples(first) ? sampledHash(first) : fullHash(first));
+            for (FileConversionSettings settings : group) {
+                settings.setContentKey(key);
+            }
+        }
+        groups.sort(Comparator.comparing(group -> order.get(group.get(0))));
+        return groups;
+    }
+
+    public void shutdown() {
+        hashers.shutdown();
+    }
+
+    // Hashes every member of every group in parallel and splits each group by hash; files that could not be
+    // read and hashes nothing else shares drop out
+    private List<List<FileConversionSettings>> split(List<List<FileConversionSettings>> groups,
+                                                     Function<FileConversionSettings, String> hash) {
+        Map<FileConversionSettings, CompletableFuture<String>> hashes = new LinkedHashMap<>();
+        for (List<FileConversionSettings> group : groups) {
+            for (FileConversionSettings settings : group) {
+                hashes.put(settings, CompletableFuture.supplyAsync(() -> hash.apply(settings), hashers));
+            }
+        }
+        List<List<FileConversionSettings>> result = new ArrayList<>();
+        for (List<FileConversionSettings> group : groups) {
+            Map<String, List<FileConversionSettings>> byHash = new LinkedHashMap<>();
+            for (FileConversionSettings settings : group) {
+                String value = hashes.get(settings).join();
+                if (value != null) {
+                    byHash.computeIfAbsent(value, k -> new ArrayList<>()).add(settings);
+                }
+            }
+            result.addAll(shared(byHash.values()));
+        }
+        return result;
+    }
+
+    private static List<List<FileConversionSettings>> shared(Iterable<List<FileConversionSettings>> groups) {
+        List<List<FileConversionSettings>> result = new ArrayList<>();
+        for (List<FileConversionSettings> group : groups) {
+            if (group.size() > 1) {
+                result.add(group);
+            }
+        }
+        return result;
+    }
+
+    private static boolean coveredBySamples(FileConversionSettings settings) {
+        return settings.getInputSize() <= 3L * BLOCK_BYTES;
+    }
+
+    private String sampledHash(FileConversionSettings settings) {
+        return sampledHashes.computeIfAbsent(cacheKey(settings.getInputFile()), k -> {
+            File file = settings.getInputFile();
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                MessageDigest digest = sha256();
+                long size = channel.size();
+                if (coveredBySamples(settings)) {
+                    update(digest, channel, 0, size);
+                } else {
+                    update(digest, channel, 0, BLOCK_BYTES);
+                    update(digest, channel, size / 2 - BLOCK_BYTES / 2, BLOCK_BYTES);
+                    update(digest, channel, size - BLOCK_BYTES, BLOCK_BYTES);
+                }
+                return HexFormat.of().formatHex(digest.digest());
+            } catch (IOException e) {
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        });
+    }
+
+    private String fullHash(FileConversionSettings settings) {
+        return fullHashes.computeIfAbsent(cacheKey(settings.getInputFile()), k -> {
+            try (FileChannel channel = FileChannel.open(settings.getInputFile().toPath(), StandardOpenOption.READ)) {
+                MessageDigest digest = sha256();
+                update(digest, channel, 0, channel.size());
+                return HexFormat.of().formatHex(digest.digest());
+            } catch (IOException e) {
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        });
+    }
+
+    private void update(MessageDigest digest, FileChannel channel, long position, long length)
+            throws IOException, InterruptedException {
+        try (BytePump.Lease lease = bytePump.acquire()) {
+            ByteBuffer buffer = lease.buffer();
+            for (long done = 0; done < length; ) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), length - done));
+                int read = channel.read(buffer, position + done);
+                if (read < 0) {
+                    throw new IOException("File shrank while it was hashed");
+                }
+                buffer.flip();
+                digest.update(buffer);
+                done += read;
+            }
+        }
+    }
+
+    // A file edited since its last hash gets a new entry rather than a stale answer
+    private static String cacheKey(File file) {
+        return file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
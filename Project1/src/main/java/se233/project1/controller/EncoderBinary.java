@@ -0,0 +1,64 @@
+package se233.project1.controller;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+
+// Finds the ffmpeg executable once: -Dse233.ffmpeg first, then FFMPEG_HOME/bin, then every PATH entry.
+// The PATH scan touches the file system, so warmUp() lets it run in the background before the first command.
+public final class EncoderBinary {
+    private static final String NAME = "ffmpeg";
+    private static CompletableFuture<String> location;
+
+    private EncoderBinary() {
+    }
+
+    public static void warmUp() {
+        location();
+    }
+
+    // Falls back to the bare name and leaves the lookup to the operating system
+    public static String path() {
+        return location().join();
+    }
+
+    private static synchronized CompletableFuture<String> location() {
+        if (location == null) {
+            location = CompletableFuture.supplyAsync(EncoderBinary::find);
+        }
+        return location;
+    }
+
+    private static String find() {
+        String configured = System.getProperty("se233.ffmpeg");
+        if (configured != null && new File(configured).canExecute()) {
+            return configured;
+        }
+        String home = System.getenv("FFMPEG_HOME");
+        if (home != null) {
+            File candidate = executableIn(new File(home, "bin"));
+            if (candidate != null) {
+                return candidate.getAbsolutePath();
+            }
+        }
+        String path = System.getenv("PATH");
+        if (path != null) {
+            for (String directory : path.split(File.pathSeparator)) {
+                File candidate = directory.isEmpty() ? null : executableIn(new File(directory));
+                if (candidate != null) {
+                    return candidate.getAbsolutePath();
+                }
+            }
+        }
+        return NAME;
+    }
+
+    private static File executableIn(File directory) {
+        for (String name : new String[]{NAME, NAME + ".exe"}) {
+            File candidate = new File(directory, name);
+            if (candidate.isFile() && candidate.canExecute()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+}
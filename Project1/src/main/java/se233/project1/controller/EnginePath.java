@@ -0,0 +1,70 @@
+package se233.project1.controller;
+
+import se233.project1.model.ConversionConfig.OutputTarget;
+
+// How a single output gets produced, cheapest first
+public enum EnginePath {
+    PASSTHROUGH("passthrough"),
+    STREAM_COPY("stream copy"),
+    IN_PROCESS("in-process dsp"),
+    TRANSCODE("transcode"),
+    // The output of another input with the same content, linked or copied
+    DUPLICATE("duplicate");
+
+    private final String label;
+
+    EnginePath(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    // Picks the cheapest path that still yields exactly the requested format, sample rate and channels
+    public static EnginePath choose(AudioProbe.AudioInfo source, OutputTarget target) {
+        if (source == null || !source.isKnown() || !source.getContainer().equals(target.getOutputFormat())) {
+            return TRANSCODE;
+        }
+        int channels = Integer.parseInt(target.getChannelsAsNumber());
+        if (source.getSampleRate() != Integer.parseInt(target.getSampleRateAsNumber()) ||
+                source.getChannels() != channels) {
+            return canConvertInProcess(source, target, channels) ? IN_PROCESS : TRANSCODE;
+        }
+
+        switch (target.getOutputFormat()) {
+            case "wav":
+                int bits = target.getQuality().startsWith("24") ? 24 : 16;
+                if (!source.getCodec().equals("pcm_s" + bits + "le")) {
+                    return TRANSCODE;
+                }
+                // Extra RIFF chunks are dropped by copying the PCM data into a fresh header
+                return source.hasExtraHeaderData() ? STREAM_COPY : PASSTHROUGH;
+            case "mp3":
+                // A VBR stream only averages out near the requested bitrate, so it is always encoded again
+                return !source.isVariableBitrate() && target.getQuality().startsWith(source.getBitrateKbps() + " ")
+                        ? PASSTHROUGH : TRANSCODE;
+            case "flac":
+                // Lossless either way; the compression level only changes the size
+                return PASSTHROUGH;
+            default:
+                return TRANSCODE;
+        }
+    }
+
+    // Normalising changes every sample, so copies give way to the in-process path or the encoder
+    public static EnginePath choose(AudioProbe.AudioInfo source, OutputTarget target, boolean normalise) {
+        EnginePath path = choose(source, target);
+        if (!normalise || path == TRANSCODE || path == IN_PROCESS) {
+            return path;
+        }
+        return canConvertInProcess(source, target, Integer.parseInt(target.getChannelsAsNumber())) ? IN_PROCESS : TRANSCODE;
+    }
+
+    // 16-bit WAV to 16-bit WAV needs no codec, only resampling and a downmix or mono duplication
+    private static boolean canConvertInProcess(AudioProbe.AudioInfo source, OutputTarget target, int channels) {
+        return target.getOutputFormat().equals("wav") && !target.getQuality().startsWith("24") &&
+                source.getCodec().equals("pcm_s16le") &&
+                (channels == source.getChannels() || channels == 1 || (channels == 2 && source.getChannels() == 1));
+    }
+}
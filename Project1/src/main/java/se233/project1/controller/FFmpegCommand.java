@@ -0,0 +1,161 @@
+package se233.project1.controller;
+
+import se233.project1.model.ConversionConfig.OutputTarget;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Builds the FFmpeg argument list for one input decoded once and encoded to every requested output
+public class FFmpegCommand {
+    private final File inputFile;
+    private final List<OutputTarget> targets = new ArrayList<>();
+    private final List<File> outputFiles = new ArrayList<>();
+    private int threads;
+    private String cpuList;
+    private boolean pipedInput;
+    private double segmentStart = -1;
+    private double segmentDuration;
+    private String audioFilter;
+
+    public FFmpegCommand(File inputFile) {
+        this.inputFile = inputFile;
+    }
+
+    public FFmpegCommand addOutput(OutputTarget target, File outputFile) {
+        targets.add(target);
+        outputFiles.add(outputFile);
+        return this;
+    }
+
+    // 0 leaves the thread count to the encoder, which otherwise starts one thread per core
+    public FFmpegCommand setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    public FFmpegCommand setCpuList(String cpuList) {
+        this.cpuList = cpuList;
+        return this;
+    }
+
+    public FFmpegCommand setPipedInput(boolean pipedInput) {
+        this.pipedInput = pipedInput;
+        return this;
+    }
+
+    // Encodes only this slice of the input; -ss before -i seeks the demuxer instead of decoding up to the start
+    public FFmpegCommand setSegment(double startSeconds, double durationSeconds) {
+        this.segmentStart = startSeconds;
+        this.segmentDuration = durationSeconds;
+        return this;
+    }
+
+    // Filter graph applied to every output, e.g. loudnorm
+    public FFmpegCommand setAudioFilter(String audioFilter) {
+        this.audioFilter = audioFilter;
+        return this;
+    }
+
+    public File getInputFile() {
+        return inputFile;
+    }
+
+    public List<File> getOutputFiles() {
+        return new ArrayList<>(outputFiles);
+    }
+
+    public List<OutputTarget> getTargets() {
+        return new ArrayList<>(targets);
+    }
+
+    public List<String> toArguments() {
+        List<String> args = new ArrayList<>();
+        if (cpuList != null) {
+            args.add("taskset");
+            args.add("-c");
+            args.add(cpuList);
+        }
+        args.add(EncoderBinary.path());
+        args.add("-y");
+        if (threads > 0) {
+            args.add("-threads");
+            args.add(String.valueOf(threads));
+        }
+        if (segmentStart >= 0) {
+            args.add("-ss");
+            args.add(String.format(Locale.ROOT, "%.6f", segmentStart));
+            args.add("-t");
+            args.add(String.format(Locale.ROOT, "%.6f", segmentDuration));
+        }
+        args.add("-i");
+        args.add(pipedInput ? "pipe:0" : inputFile.getAbsolutePath());
+
+        for (int i = 0; i < targets.size(); i++) {
+            OutputTarget target = targets.get(i);
+            args.add("-map");
+            args.add("0:a");
+            if (audioFilter != null) {
+                args.add("-af");
+                args.add(audioFilter);
+            }
+            addCodecArguments(args, target);
+            if (threads > 0) {
+                args.add("-threads");
+                args.add(String.valueOf(threads));
+            }
+            args.add("-ar");
+            args.add(target.getSampleRateAsNumber());
+            args.add("-ac");
+            args.add(target.getChannelsAsNumber());
+            args.add(outputFiles.get(i).getAbsolutePath());
+        }
+        return args;
+    }
+
+    private static void addCodecArguments(List<String> args, OutputTarget target) {
+        String quality = target.getQuality();
+        switch (target.getOutputFormat()) {
+            case "mp3" -> {
+                args.add("-c:a");
+                args.add("libmp3lame");
+                args.add("-b:a");
+                args.add(leadingNumber(quality) + "k");
+            }
+            case "m4a" -> {
+                args.add("-c:a");
+                args.add("aac");
+                args.add("-b:a");
+                args.add(leadingNumber(quality) + "k");
+            }
+            case "flac" -> {
+                args.add("-c:a");
+                args.add("flac");
+                args.add("-compression_level");
+                args.add(leadingNumber(quality.replace("Level", "").trim()));
+            }
+            case "wav" -> {
+                args.add("-c:a");
+                args.add(quality.startsWith("24") ? "pcm_s24le" : "pcm_s16le");
+            }
+            default -> throw new IllegalArgumentException("Unsupported output format: " + target.getOutputFormat());
+        }
+    }
+
+    private static String leadingNumber(String value) {
+        int end = 0;
+        while (end < value.length() && Character.isDigit(value.charAt(end))) {
+            end++;
+        }
+        if (end == 0) {
+            throw new IllegalArgumentException("Cannot read a number from quality: " + value);
+        }
+        return value.substring(0, end);
+    }
+
+    @Override
+    public String toString() {
+        return String.join(" ", toArguments());
+    }
+}
@@ -0,0 +1,215 @@
+package se233.project1.controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Fans one input out to two outputs the way a transcode job does, many times over, once with a heap buffer
+// allocated per job (how jobs copied before BytePump) and once through the shared pool: --benchmark-io.
+// Reports time, heap allocated per job and the collections the run caused, best of several rounds.
+public class IoBenchmark {
+    private static final int INPUT_BYTES = 1024 * 1024;
+    private static final int OUTPUTS = 2;
+    private static final int HEAP_BUFFER_BYTES = 64 * 1024;
+    private static final int WARMUP_JOBS = 200;
+    private static final int ROUNDS = 5;
+
+    private final int jobs;
+    private final int threads;
+
+    public IoBenchmark(int jobs) {
+        this(jobs, Runtime.getRuntime().availableProcessors());
+    }
+
+    public IoBenchmark(int jobs, int threads) {
+        if (jobs < 0 || threads < 1) {
+            throw new IllegalArgumentException("Jobs cannot be negative and at least one thread is needed");
+        }
+        this.jobs = jobs > 0 ? jobs : 2000;
+        this.threads = threads;
+    }
+
+    public void run(PrintStream out) throws IOException, InterruptedException {
+        File directory = Files.createTempDirectory("io-benchmark").toFile();
+        try {
+            File input = new File(directory, "input.bin");
+            byte[] bytes = new byte[INPUT_BYTES];
+            new Random(42).nextBytes(bytes);
+            Files.write(input.toPath(), bytes);
+
+            BytePump pump = new BytePump(BytePump.DEFAULT_BUFFER_BYTES, threads);
+            out.printf("%d jobs of %d KB fanned out to %d outputs on %d thread(s)%n", jobs, INPUT_BYTES / 1024,
+                    OUTPUTS, threads);
+            out.printf("%-20s %10s %10s %14s %6s %8s%n", "copy", "ms", "MB/s", "heap KB/job", "GCs", "GC ms");
+            measure(out, "per-job heap buffer", directory, input, (in, outs) -> copyWithHeapBuffer(in, outs));
+            measure(out, "pooled direct pump", directory, input,
+                    (in, outs) -> pump.pump(in, outs, new BytePump.Counter(), null));
+            out.printf("Pool allocated %d direct buffer(s) of %d KB in total%n", pump.getCreatedBuffers(),
+                    pump.getBufferBytes() / 1024);
+        } finally {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    private void measure(PrintStream out, String name, File directory, File input, Copy copy)
+            throws IOException, InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try {
+            runJobs(workers, directory, input, copy, WARMUP_JOBS);
+            Round best = null;
+            for (int round = 0; round < ROUNDS; round++) {
+                System.gc();
+                long allocatedBefore = allocatedBytes();
+                long collectionsBefore = collections();
+                long collectionMillisBefore = collectionMillis();
+                long start = System.nanoTime();
+                runJobs(workers, directory, input, copy, jobs);
+                long elapsed = System.nanoTime() - start;
+                Round result = new Round(elapsed, allocatedBytes() - allocatedBefore,
+                        collections() - collectionsBefore, collectionMillis() - collectionMillisBefore);
+                if (best == null || result.nanos < best.nanos) {
+                    best = result;
+                }
+            }
+            double millis = best.nanos / 1e6;
+            double megabytes = (double) jobs * INPUT_BYTES * (1 + OUTPUTS) / (1024 * 1024);
+            out.printf("%-20s %10.0f %10.0f %14s %6d %8d%n", name, millis, megabytes / (millis / 1000),
+                    best.allocated < 0 ? "n/a" : String.format("%.1f", best.allocated / 1024.0 / jobs),
+                    best.collections, best.collectionMillis);
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    // Each thread writes its own pair of outputs, so the jobs compete for buffers and disk but not for files
+    private void runJobs(ExecutorService workers, File directory, File input, Copy copy, int count)
+            throws IOException, InterruptedException {
+        List<Future<Void>> running = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            int share = count / threads + (thread < count % threads ? 1 : 0);
+            File[] outputs = new File[OUTPUTS];
+            for (int i = 0; i < OUTPUTS; i++) {
+                outputs[i] = new File(directory, "output" + thread + "-" + i + ".bin");
+            }
+            running.add(workers.submit(() -> {
+                for (int job = 0; job < share; job++) {
+                    copyOnce(input, outputs, copy);
+                }
+                return null;
+            }));
+        }
+        for (Future<Void> job : running) {
+            try {
+                job.get();
+            } catch (ExecutionException e) {
+                throw new IOException("Benchmark job failed", e.getCause());
+            }
+        }
+    }
+
+    private static void copyOnce(File input, File[] outputFiles, Copy copy) throws IOException, InterruptedException {
+        List<FileChannel> outputs = new ArrayList<>();
+        try (FileChannel in = FileChannel.open(input.toPath(), StandardOpenOption.READ)) {
+            for (File outputFile : outputFiles) {
+                outputs.add(FileChannel.open(outputFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING));
+            }
+            copy.run(in, outputs);
+        } finally {
+            for (FileChannel output : outputs) {
+                output.close();
+            }
+        }
+    }
+
+    private static void copyWithHeapBuffer(FileChannel input, List<FileChannel> outputs) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEAP_BUFFER_BYTES);
+        while (input.read(buffer) != -1) {
+            buffer.flip();
+            for (FileChannel output : outputs) {
+                ByteBuffer view = buffer.duplicate();
+                while (view.hasRemaining()) {
+                    output.write(view);
+                }
+            }
+            buffer.clear();
+        }
+    }
+
+    // Heap allocated by every live thread so far, or -1 when the JVM does not count it. The counter lives in
+    // jdk.management, which the module does not require for a benchmark alone, so it is looked up reflectively;
+    // a launcher that does not resolve that module gets it with --add-modules jdk.management.
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        try {
+            Class<?> counting = Class.forName("com.sun.management.ThreadMXBean");
+            if (!counting.isInstance(threads) ||
+                    !(Boolean) counting.getMethod("isThreadAllocatedMemorySupported").invoke(threads)) {
+                return -1;
+            }
+            long[] allocatedPerThread = (long[]) counting.getMethod("getThreadAllocatedBytes", long[].class)
+                    .invoke(threads, (Object) threads.getAllThreadIds());
+            long total = 0;
+            for (long allocated : allocatedPerThread) {
+                total += Math.max(0, allocated);
+            }
+            return total;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static long collections() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, collector.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long collectionMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, collector.getCollectionTime());
+        }
+        return total;
+    }
+
+    private interface Copy {
+        void run(FileChannel input, List<FileChannel> outputs) throws IOException, InterruptedException;
+    }
+
+    private static class Round {
+        private final long nanos;
+        private final long allocated;
+        private final long collections;
+        private final long collectionMillis;
+
+        private Round(long nanos, long allocated, long collections, long collectionMillis) {
+            this.nanos = nanos;
+            this.allocated = allocated;
+            this.collections = collections;
+            this.collectionMillis = collectionMillis;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package se233.project1.controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+// Admits jobs per storage device: each FileStore gets its own concurrency limit and optional bandwidth budget.
+// Jobs wait in per-device queues instead of holding pool threads, so work on other devices keeps running.
+public class IoScheduler {
+    private static final Set<String> NETWORK_TYPES = Set.of("nfs", "nfs4", "cifs", "smb3", "smbfs", "fuse.sshfs", "9p");
+    private static final int NETWORK_CONCURRENCY = 2;
+    private static final int ROTATIONAL_CONCURRENCY = 2;
+
+    private final int defaultConcurrency;
+    private final Map<Path, Lane> directoryLanes = new ConcurrentHashMap<>();
+    private final Map<FileStore, Lane> storeLanes = new ConcurrentHashMap<>();
+    private final Map<FileStore, long[]> configuredLimits = new ConcurrentHashMap<>();
+    private final Map<List<Lane>, Deque<PendingJob>> waiting = new LinkedHashMap<>();
+    private final Lane unknownLane;
+
+    public IoScheduler(int defaultConcurrency) {
+        this.defaultConcurrency = Math.max(1, defaultConcurrency);
+        this.unknownLane = new Lane("unknown store", this.defaultConcurrency, 0);
+    }
+
+    // Overrides the auto-detected limits for the device holding the given path; bytesPerSecond 0 means unlimited
+    public void setLimits(File anyFileOnStore, int concurrency, long bytesPerSecond) throws IOException {
+        if (concurrency < 1 || bytesPerSecond < 0) {
+            throw new IllegalArgumentException("Concurrency must be at least 1 and bandwidth cannot be negative");
+        }
+        FileStore store = Files.getFileStore(existingPath(anyFileOnStore));
+        configuredLimits.put(store, new long[]{concurrency, bytesPerSecond});
+        Lane lane = storeLanes.get(store);
+        if (lane == null) {
+            return;
+        }
+        // A higher limit has room for jobs already waiting; they start now rather than when the next job ends
+        List<PendingJob> ready;
+        synchronized (this) {
+            lane.concurrency = concurrency;
+            lane.bytesPerSecond = bytesPerSecond;
+            ready = admitWaiting();
+        }
+        for (PendingJob pending : ready) {
+            start(pending);
+        }
+    }
+
+    public CompletableFuture<Void> submit(File inputFile, File outputDirectory, Runnable job, Executor executor) {
+        List<Lane> lanes = lanesFor(inputFile, outputDirectory);
+        PendingJob pending = new PendingJob(lanes, job, executor);
+        boolean admitted;
+        synchronized (this) {
+            admitted = tryAdmit(lanes);
+            if (!admitted) {
+                waiting.computeIfAbsent(lanes, k -> new ArrayDeque<>()).add(pending);
+            }
+        }
+        if (admitted) {
+            start(pending);
+        }
+        return pending.future;
+    }
+
+    public Lane laneFor(File file) {
+        Path directory = existingPath(file);
+        if (!Files.isDirectory(directory)) {
+            directory = directory.getParent() != null ? directory.getParent() : directory;
+        }
+        return directoryLanes.computeIfAbsent(directory, dir -> {
+            try {
+                FileStore store = Files.getFileStore(dir);
+                return storeLanes.computeIfAbsent(store, this::createLane);
+            } catch (IOException e) {
+                return unknownLane;
+            }
+        });
+    }
+
+    private List<Lane> lanesFor(File inputFile, File outputDirectory) {
+        Lane input = laneFor(inputFile);
+        Lane output = laneFor(outputDirectory);
+        return input == output ? List.of(input) : List.of(input, output);
+    }
+
+    private Lane createLane(FileStore store) {
+        long[] configured = configuredLimits.get(store);
+        if (configured != null) {
+            return new Lane(store.toString(), (int) configured[0], configured[1]);
+        }
+        int concurrency = defaultConcurrency;
+        if (NETWORK_TYPES.contains(store.type().toLowerCase())) {
+            concurrency = Math.min(concurrency, NETWORK_CONCURRENCY);
+        } else if (isRotational(store)) {
+            concurrency = Math.min(concurrency, ROTATIONAL_CONCURRENCY);
+        }
+        return new Lane(store.toString(), concurrency, 0);
+    }
+
+    private boolean tryAdmit(List<Lane> lanes) {
+        for (Lane lane : lanes) {
+            if (lane.running >= lane.concurrency) {
+                return false;
+            }
+        }
+        for (Lane lane : lanes) {
+            lane.running++;
+        }
+        return true;
+    }
+
+    // A pool that refuses the job, e.g. one shut down mid-batch, fails it like any other error: its slots go to
+    // the next waiting job and whoever waits on the future, such as the dispatcher's byte budget, is released
+    private void start(PendingJob pending) {
+        CompletableFuture<Void> running;
+        try {
+            running = CompletableFuture.runAsync(pending.job, pending.executor);
+        } catch (RejectedExecutionException e) {
+            finished(pending.lanes);
+            pending.future.completeExceptionally(e);
+            return;
+        }
+        running.whenComplete((ignored, error) -> {
+            finished(pending.lanes);
+            if (error != null) {
+                pending.future.completeExceptionally(error);
+            } else {
+                pending.future.complete(null);
+            }
+        });
+    }
+
+    // Jobs are started outside the lock because a job that is already done completes inline
+    private void finished(List<Lane> lanes) {
+        List<PendingJob> ready;
+        synchronized (this) {
+            for (Lane lane : lanes) {
+                lane.running--;
+            }
+            ready = admitWaiting();
+        }
+        for (PendingJob pending : ready) {
+            start(pending);
+        }
+    }
+
+    // Takes every waiting job that fits now out of the queues; the caller holds the lock and starts them after
+    private List<PendingJob> admitWaiting() {
+        List<PendingJob> ready = new ArrayList<>();
+        Iterator<Deque<PendingJob>> queues = waiting.values().iterator();
+        while (queues.hasNext()) {
+            Deque<PendingJob> queue = queues.next();
+            while (!queue.isEmpty() && tryAdmit(queue.peek().lanes)) {
+                ready.add(queue.poll());
+            }
+            if (queue.isEmpty()) {
+                queues.remove();
+            }
+        }
+        return ready;
+    }
+
+    // Linux only: FileStore.name() is the block device, e.g. /dev/sda1, whose disk reports rotational=1 for spinning media
+    private static boolean isRotational(FileStore store) {
+        String name = store.name();
+        if (!name.startsWith("/dev/")) {
+            return false;
+        }
+        try {
+            Path device = Path.of("/sys/class/block", name.substring("/dev/".length())).toRealPath();
+            Path disk = Files.exists(device.resolve("partition")) ? device.getParent() : device;
+            return Files.readString(disk.resolve("queue/rotational")).trim().equals("1");
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static Path existingPath(File file) {
+        Path path = file.toPath().toAbsolutePath();
+        while (path != null && !Files.exists(path)) {
+            path = path.getParent();
+        }
+        return path != null ? path : file.toPath().toAbsolutePath().getRoot();
+    }
+
+    public static class Lane {
+        private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+        private final String name;
+        private volatile int concurrency;
+        private int running;
+        private volatile long bytesPerSecond;
+        private long nextFreeNanos;
+
+        private Lane(String name, int concurrency, long bytesPerSecond) {
+            this.name = name;
+            this.concurrency = concurrency;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        // Reserves bandwidth for the bytes just moved and sleeps until the budget allows it
+        public void consume(long bytes) throws InterruptedException {
+            long waitNanos;
+            synchronized (this) {
+                if (bytesPerSecond <= 0 || bytes <= 0) {
+                    return;
+                }
+                long now = System.nanoTime();
+                long start = Math.max(now, nextFreeNanos);
+                long end = start + transferNanos(bytes, bytesPerSecond);
+                // Saturates instead of wrapping to a time long past
+                nextFreeNanos = end < start ? Long.MAX_VALUE : end;
+                waitNanos = start - now;
+            }
+            if (waitNanos > 0) {
+                Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+            }
+        }
+
+        // bytes * 1e9 / bytesPerSecond, dividing first: the product overflows from about 9 GB on
+        static long transferNanos(long bytes, long bytesPerSecond) {
+            long seconds = bytes / bytesPerSecond;
+            if (seconds >= Long.MAX_VALUE / NANOS_PER_SECOND) {
+                return Long.MAX_VALUE;
+            }
+            long rest = bytes % bytesPerSecond;
+            return seconds * NANOS_PER_SECOND + (long) ((double) rest * NANOS_PER_SECOND / bytesPerSecond);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public long getBytesPerSecond() {
+            return bytesPerSecond;
+        }
+
+        @Override
+        public String toString() {
+            return name + " (max " + concurrency + " jobs" +
+                    (bytesPerSecond > 0 ? ", " + bytesPerSecond / (1024 * 1024) + " MB/s" : "") + ")";
+        }
+    }
+
+    private static class PendingJob {
+        private final List<Lane> lanes;
+        private final Runnable job;
+        private final Executor executor;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private PendingJob(List<Lane> lanes, Runnable job, Executor executor) {
+            this.lanes = new ArrayList<>(lanes);
+            this.job = job;
+            this.executor = executor;
+        }
+    }
+}
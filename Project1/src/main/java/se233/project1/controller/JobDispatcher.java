@@ -0,0 +1,64 @@
+package se233.project1.controller;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+// Hands jobs to the workers one at a time, pulling the next one from its source only when the batch has room.
+// Room is a number of jobs and a number of input bytes in flight, so neither futures nor the work behind them
+// pile up ahead of the workers however long the batch is; the source waits in step with the slowest job.
+class JobDispatcher {
+    private final int maxJobs;
+    private final long maxBytes;
+    private int jobs;
+    private long bytes;
+
+    JobDispatcher(int maxJobs, long maxBytes) {
+        if (maxJobs < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("A batch needs room for at least one job and one byte");
+        }
+        this.maxJobs = maxJobs;
+        this.maxBytes = maxBytes;
+    }
+
+    // Returns once every job pulled from the source has completed
+    <T> void run(Iterator<T> source, ToLongFunction<T> weight, Function<T, CompletableFuture<Void>> submit)
+            throws InterruptedException {
+        while (source.hasNext()) {
+            T job = source.next();
+            long size = Math.max(0, weight.applyAsLong(job));
+            admit(size);
+            CompletableFuture<Void> running;
+            try {
+                running = submit.apply(job);
+            } catch (RuntimeException e) {
+                release(size);
+                throw e;
+            }
+            running.whenComplete((ignored, error) -> release(size));
+        }
+        awaitIdle();
+    }
+
+    // A job bigger than the whole byte budget still runs, alone
+    private synchronized void admit(long size) throws InterruptedException {
+        while (jobs > 0 && (jobs >= maxJobs || bytes + size > maxBytes)) {
+            wait();
+        }
+        jobs++;
+        bytes += size;
+    }
+
+    private synchronized void release(long size) {
+        jobs--;
+        bytes -= size;
+        notifyAll();
+    }
+
+    private synchronized void awaitIdle() throws InterruptedException {
+        while (jobs > 0) {
+            wait();
+        }
+    }
+}
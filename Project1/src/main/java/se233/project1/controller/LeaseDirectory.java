@@ -0,0 +1,183 @@
+package se233.project1.controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Job claims shared through one directory, for instances that cooperate without a coordinator.
+ *
+ *   <key>.<n>.lease   attempt n, created with CREATE_NEW so exactly one instance wins it
+ *   <key>.done        the job is finished
+ *   <key>.failed      every attempt expired or gave up
+ *
+ * The holder rewrites its lease with a new beat count on every heartbeat. A lease is stale when its content
+ * has not changed for a whole lease period of the observer's own clock, so clock skew between machines on the
+ * share does not matter. A stale or released lease is taken over by creating the next attempt's file, which
+ * is again atomic, and the old holder notices the newer file on its next heartbeat.
+ * File locks are not used: they are per process and often not honoured across machines on network shares.
+ */
+public class LeaseDirectory {
+    public static final long DEFAULT_LEASE_MILLIS = 15_000;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final String RELEASED = "released";
+
+    private final File directory;
+    private final String ownerId;
+    private final long leaseMillis;
+    // Lease file name -> the content last seen there and when it was first seen
+    private final Map<String, Observation> observed = new HashMap<>();
+
+    public LeaseDirectory(File directory, String ownerId) {
+        this(directory, ownerId, DEFAULT_LEASE_MILLIS);
+    }
+
+    public LeaseDirectory(File directory, String ownerId, long leaseMillis) {
+        this.directory = directory;
+        this.ownerId = ownerId;
+        this.leaseMillis = leaseMillis;
+    }
+
+    public long getLeaseMillis() {
+        return leaseMillis;
+    }
+
+    public boolean isSettled(String key) {
+        return marker(key, "done").exists() || marker(key, "failed").exists();
+    }
+
+    // Null when the job is settled, held by a live lease, or another instance won the race for it
+    public synchronized Claim tryClaim(String key) throws IOException {
+        if (isSettled(key)) {
+            return null;
+        }
+        Files.createDirectories(directory.toPath());
+        int attempt = 0;
+        while (leaseFile(key, attempt + 1).exists()) {
+            attempt++;
+        }
+        if (attempt > 0 && !isStale(leaseFile(key, attempt))) {
+            return null;
+        }
+        if (attempt >= MAX_ATTEMPTS) {
+            settle(key, "failed", "gave up after " + attempt + " attempt(s)");
+            return null;
+        }
+        Path lease = leaseFile(key, attempt + 1).toPath();
+        try {
+            Files.writeString(lease, ownerId + "\t0", StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE);
+        } catch (FileAlreadyExistsException e) {
+            return null;
+        }
+        // The previous holder may have finished between the check above and the new lease
+        if (isSettled(key)) {
+            Files.deleteIfExists(lease);
+            return null;
+        }
+        return new Claim(key, attempt + 1);
+    }
+
+    private boolean isStale(File lease) {
+        String content;
+        try {
+            content = Files.readString(lease.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            // Gone or mid-write; look again next round
+            return false;
+        }
+        if (content.endsWith("\t" + RELEASED)) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        Observation last = observed.get(lease.getName());
+        if (last == null || !last.content.equals(content)) {
+            observed.put(lease.getName(), new Observation(content, now));
+            return false;
+        }
+        return now - last.seenAt >= leaseMillis;
+    }
+
+    private void settle(String key, String state, String note) throws IOException {
+        try {
+            Files.writeString(marker(key, state).toPath(), ownerId + "\t" + note, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        } catch (FileAlreadyExistsException e) {
+            // Someone settled it first
+        }
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            Files.deleteIfExists(leaseFile(key, attempt).toPath());
+            observed.remove(leaseFile(key, attempt).getName());
+        }
+    }
+
+    private File leaseFile(String key, int attempt) {
+        return new File(directory, key + "." + attempt + ".lease");
+    }
+
+    private File marker(String key, String state) {
+        return new File(directory, key + "." + state);
+    }
+
+    public class Claim {
+        private final String key;
+        private final int attempt;
+        private long beats;
+        private volatile boolean lost;
+
+        private Claim(String key, int attempt) {
+            this.key = key;
+            this.attempt = attempt;
+        }
+
+        public int getAttempt() { return attempt; }
+        public boolean isLost() { return lost; }
+
+        // False once another instance has taken the job over; from then on the caller publishes nothing more
+        // and leaves completing the job to the new holder
+        public synchronized boolean renew() {
+            if (lost || leaseFile(key, attempt + 1).exists() || isSettled(key)) {
+                lost = true;
+                return false;
+            }
+            try {
+                Files.writeString(leaseFile(key, attempt).toPath(), ownerId + "\t" + (++beats), StandardCharsets.UTF_8,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                return true;
+            } catch (IOException e) {
+                // Try again on the next beat; the lease only goes stale after a whole period without one
+                return true;
+            }
+        }
+
+        public void complete(String note) throws IOException {
+            synchronized (LeaseDirectory.this) {
+                settle(key, "done", note);
+            }
+        }
+
+        // Hands the job back right away instead of after a lease period; the next attempt goes to any instance
+        public synchronized void release() throws IOException {
+            if (!lost) {
+                Files.writeString(leaseFile(key, attempt).toPath(), ownerId + "\t" + RELEASED, StandardCharsets.UTF_8,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            }
+        }
+    }
+
+    private static class Observation {
+        private final String content;
+        private final long seenAt;
+
+        private Observation(String content, long seenAt) {
+            this.content = content;
+            this.seenAt = seenAt;
+        }
+    }
+}
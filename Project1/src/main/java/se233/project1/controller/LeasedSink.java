@@ -0,0 +1,99 @@
+package se233.project1.controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Publishes outputs only while the job's lease is still held. A worker whose lease expired mid-conversion
+// fails the commit instead of publishing next to, or over, the outputs of the worker that took the job over.
+public class LeasedSink implements OutputSink {
+    private final OutputSink sink;
+    private final Lease lease;
+
+    public interface Lease {
+        // Checked right before each output is published; false once another worker holds the job
+        boolean isHeld() throws IOException;
+    }
+
+    public LeasedSink(OutputSink sink, Lease lease) {
+        this.sink = sink;
+        this.lease = lease;
+    }
+
+    @Override
+    public Output create(String name) throws IOException {
+        return new LeasedOutput(sink.create(name));
+    }
+
+    @Override
+    public Output create(String name, long expectedSize) throws IOException {
+        return new LeasedOutput(sink.create(name, expectedSize));
+    }
+
+    @Override
+    public File locate(String name) {
+        return sink.locate(name);
+    }
+
+    @Override
+    public File getLocation() {
+        return sink.getLocation();
+    }
+
+    // Null without the lease, so the caller falls back to a copy, whose commit then fails
+    @Override
+    public String link(String name, File source) {
+        try {
+            return lease.isHeld() ? sink.link(name, source) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        sink.close();
+    }
+
+    private class LeasedOutput implements Output {
+        private final Output output;
+
+        private LeasedOutput(Output output) {
+            this.output = output;
+        }
+
+        @Override
+        public void commit() throws IOException {
+            if (!lease.isHeld()) {
+                throw new IOException("Lease lost before " + output.getName() + " was published");
+            }
+            output.commit();
+        }
+
+        @Override
+        public String getName() {
+            return output.getName();
+        }
+
+        @Override
+        public long transferFrom(FileChannel input, long position, long count) throws IOException {
+            return output.transferFrom(input, position, count);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return output.write(src);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return output.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            output.close();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package se233.project1.controller;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// Hashes a file's bytes and meters its 16-bit PCM data as they stream past, so the pass that already reads
+// a file for conversion measures it too. Sources that are not 16-bit PCM WAV are only hashed.
+public class LoudnessAnalysis {
+    private final MessageDigest digest;
+    private final LoudnessMeter meter;
+    private final long dataStart;
+    private final long dataEnd;
+    private final int channels;
+    private final ByteBuffer pending;
+    private final short[] shorts;
+    private final float[] samples;
+    private long position;
+    private String contentHash;
+    private LoudnessMeter.Measurement measurement;
+
+    public LoudnessAnalysis(AudioProbe.AudioInfo source) {
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        boolean pcm = source != null && "pcm_s16le".equals(source.getCodec()) && source.getDataLength() > 0;
+        this.channels = pcm ? source.getChannels() : 1;
+        this.meter = pcm ? new LoudnessMeter(source.getSampleRate(), channels) : null;
+        this.dataStart = pcm ? source.getDataOffset() : 0;
+        this.dataEnd = pcm ? source.getDataOffset() + source.getDataLength() : 0;
+        int chunkSamples = pcm ? PcmConverter.CHUNK_FRAMES * channels : 0;
+        this.pending = ByteBuffer.allocate(chunkSamples * 2).order(ByteOrder.LITTLE_ENDIAN);
+        this.shorts = new short[chunkSamples];
+        this.samples = new float[chunkSamples];
+    }
+
+    public boolean isMetering() {
+        return meter != null;
+    }
+
+    // The next bytes of the file, in order from offset 0; bytes itself is left untouched
+    public void update(ByteBuffer bytes) {
+        ByteBuffer view = bytes.duplicate();
+        long start = position;
+        position += view.remaining();
+        digest.update(view.duplicate());
+        if (meter == null) {
+            return;
+        }
+        long from = Math.max(start, dataStart);
+        long to = Math.min(position, dataEnd);
+        if (from >= to) {
+            return;
+        }
+        view.position(view.position() + (int) (from - start));
+        view.limit(view.position() + (int) (to - from));
+        while (view.hasRemaining()) {
+            int length = Math.min(view.remaining(), pending.remaining());
+            pending.put(view.slice(view.position(), length));
+            view.position(view.position() + length);
+            if (!pending.hasRemaining()) {
+                meterPending();
+            }
+        }
+    }
+
+    public void finish() {
+        if (contentHash != null) {
+            return;
+        }
+        contentHash = HexFormat.of().formatHex(digest.digest());
+        if (meter != null) {
+            meterPending();
+            measurement = meter.result();
+        }
+    }
+
+    public long getBytesSeen() {
+        return position;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    // Null unless the source was metered
+    public LoudnessMeter.Measurement getMeasurement() {
+        return measurement;
+    }
+
+    // Whole frames only; a split frame waits for the rest of its bytes
+    private void meterPending() {
+        int frames = pending.position() / (2 * channels);
+        int count = frames * channels;
+        pending.flip();
+        pending.asShortBuffer().get(shorts, 0, count);
+        pending.position(count * 2);
+        pending.compact();
+        AudioDsp.toFloat(shorts, samples, count);
+        meter.process(samples, frames);
+    }
+}
@@ -0,0 +1,115 @@
+package se233.project1.controller;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Loudness measurements keyed by the SHA-256 of the file content, so a measurement follows the audio rather than
+// the path. A second index maps path, size and modification time to the content hash, which lets a re-run find
+// its measurement without reading the file at all. Entries are appended one line each; the newest line wins.
+public class LoudnessCache {
+    private static final String MEASUREMENT = "M";
+    private static final String FILE = "F";
+
+    private final File cacheFile;
+    private final Map<String, LoudnessMeter.Measurement> byHash = new ConcurrentHashMap<>();
+    private final Map<String, String> hashByFile = new ConcurrentHashMap<>();
+    private boolean loaded;
+
+    public LoudnessCache() {
+        this(defaultFile());
+    }
+
+    // A null cacheFile keeps the cache in memory only. The file is read on first lookup, not here.
+    public LoudnessCache(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    public static File defaultFile() {
+        return new File(System.getProperty("user.home"), ".se233-audio-converter" + File.separator + "loudness.cache");
+    }
+
+    // Null when this exact file, unchanged, was never measured
+    public LoudnessMeter.Measurement find(File input) {
+        ensureLoaded();
+        String hash = hashByFile.get(fileKey(input));
+        return hash != null ? byHash.get(hash) : null;
+    }
+
+    public LoudnessMeter.Measurement findByHash(String contentHash) {
+        ensureLoaded();
+        return byHash.get(contentHash);
+    }
+
+    public synchronized void put(File input, String contentHash, LoudnessMeter.Measurement measurement)
+            throws IOException {
+        ensureLoaded();
+        String key = fileKey(input);
+        byHash.put(contentHash, measurement);
+        hashByFile.put(key, contentHash);
+        if (cacheFile == null) {
+            return;
+        }
+        File directory = cacheFile.getAbsoluteFile().getParentFile();
+        if (directory != null) {
+            Files.createDirectories(directory.toPath());
+        }
+        try (Writer writer = Files.newBufferedWriter(cacheFile.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(String.format(Locale.ROOT, "%s\t%s\t%.4f\t%.4f\t%.4f\t%.4f%n", MEASUREMENT, contentHash,
+                    measurement.getIntegrated(), measurement.getPeak(), measurement.getRange(),
+                    measurement.getThreshold()));
+            // The key goes last because a path may contain anything but a line break
+            writer.write(FILE + "\t" + contentHash + "\t" + key + System.lineSeparator());
+        }
+    }
+
+    public int size() {
+        ensureLoaded();
+        return byHash.size();
+    }
+
+    private synchronized void ensureLoaded() {
+        if (!loaded) {
+            loaded = true;
+            if (cacheFile != null && cacheFile.isFile()) {
+                load();
+            }
+        }
+    }
+
+    // A damaged line is skipped; the file is only a cache
+    private void load() {
+        try (BufferedReader reader = Files.newBufferedReader(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 3);
+                try {
+                    if (fields[0].equals(MEASUREMENT)) {
+                        String[] values = fields[2].split("\t");
+                        byHash.put(fields[1], new LoudnessMeter.Measurement(Double.parseDouble(values[0]),
+                                Double.parseDouble(values[1]), Double.parseDouble(values[2]),
+                                Double.parseDouble(values[3])));
+                    } else if (fields[0].equals(FILE)) {
+                        hashByFile.put(fields[2], fields[1]);
+                    }
+                } catch (RuntimeException e) {
+                    // Skip it
+                }
+            }
+        } catch (IOException e) {
+            // Start empty
+        }
+    }
+
+    private static String fileKey(File input) {
+        return input.getAbsolutePath() + "|" + input.length() + "|" + input.lastModified();
+    }
+}
@@ -0,0 +1,196 @@
+package se233.project1.controller;
+
+import java.util.Arrays;
+
+// Streaming ITU-R BS.1770-4 loudness meter: K-weighting per channel, mean square over 100 ms steps, then
+// gated 400 ms blocks for the integrated loudness and 3 s windows for the loudness range (EBU Tech 3342).
+// Only one double per 100 ms is kept, so a six hour file needs under 2 MB.
+public class LoudnessMeter {
+    private static final double ABSOLUTE_GATE = -70.0;
+    private static final double RELATIVE_GATE = -10.0;
+    private static final double RANGE_RELATIVE_GATE = -20.0;
+    private static final int BLOCK_STEPS = 4;
+    private static final int SHORT_TERM_STEPS = 30;
+
+    private final int channels;
+    private final double[] weights;
+    private final Biquad[] shelf;
+    private final Biquad[] highPass;
+    private final int stepFrames;
+
+    private double stepEnergy;
+    private int stepFill;
+    private double[] steps = new double[1024];
+    private int stepCount;
+    private double peak;
+
+    public LoudnessMeter(int sampleRate, int channels) {
+        if (sampleRate <= 0 || channels < 1) {
+            throw new IllegalArgumentException("Invalid sample rate or channel count");
+        }
+        this.channels = channels;
+        this.weights = new double[channels];
+        this.shelf = new Biquad[channels];
+        this.highPass = new Biquad[channels];
+        for (int c = 0; c < channels; c++) {
+            // 5.1 order is L R C LFE Ls Rs: the LFE is ignored and the surrounds count +1.5 dB
+            weights[c] = channels == 6 && c == 3 ? 0 : channels == 6 && c >= 4 ? 1.41 : 1.0;
+            shelf[c] = Biquad.highShelf(sampleRate);
+            highPass[c] = Biquad.highPass(sampleRate);
+        }
+        this.stepFrames = Math.max(1, Math.round(sampleRate / 10.0f));
+    }
+
+    // Interleaved samples in [-1, 1]
+    public void process(float[] interleaved, int frames) {
+        for (int frame = 0, i = 0; frame < frames; frame++) {
+            double energy = 0;
+            for (int c = 0; c < channels; c++, i++) {
+                float sample = interleaved[i];
+                peak = Math.max(peak, Math.abs(sample));
+                double weighted = highPass[c].filter(shelf[c].filter(sample));
+                energy += weights[c] * weighted * weighted;
+            }
+            stepEnergy += energy;
+            if (++stepFill == stepFrames) {
+                if (stepCount == steps.length) {
+                    steps = Arrays.copyOf(steps, steps.length * 2);
+                }
+                steps[stepCount++] = stepEnergy / stepFrames;
+                stepEnergy = 0;
+                stepFill = 0;
+            }
+        }
+    }
+
+    // A trailing partial 100 ms step is left out, as a partial gating block would be
+    public Measurement result() {
+        double[] blocks = windows(BLOCK_STEPS);
+        double relativeThreshold = gateThreshold(blocks, RELATIVE_GATE);
+        double integrated = loudness(gatedMean(blocks, relativeThreshold));
+
+        double[] shortTerm = windows(SHORT_TERM_STEPS);
+        double rangeThreshold = gateThreshold(shortTerm, RANGE_RELATIVE_GATE);
+        double[] gated = Arrays.stream(shortTerm).filter(e -> loudness(e) > rangeThreshold).map(LoudnessMeter::loudness)
+                .sorted().toArray();
+        double range = gated.length < 2 ? 0
+                : gated[(int) Math.round(0.95 * (gated.length - 1))] - gated[(int) Math.round(0.10 * (gated.length - 1))];
+
+        double peakDb = peak > 0 ? 20 * Math.log10(peak) : ABSOLUTE_GATE;
+        return new Measurement(Math.max(integrated, ABSOLUTE_GATE), peakDb, range, relativeThreshold);
+    }
+
+    // Mean energy of every window of the given number of steps, advancing one step at a time
+    private double[] windows(int length) {
+        if (stepCount < length) {
+            return new double[0];
+        }
+        double[] energies = new double[stepCount - length + 1];
+        double sum = 0;
+        for (int i = 0; i < stepCount; i++) {
+            sum += steps[i];
+            if (i >= length) {
+                sum -= steps[i - length];
+            }
+            if (i >= length - 1) {
+                energies[i - length + 1] = sum / length;
+            }
+        }
+        return energies;
+    }
+
+    // Absolute gate first, then the relative gate below the loudness of what passed it
+    private static double gateThreshold(double[] energies, double relativeGate) {
+        return loudness(gatedMean(energies, ABSOLUTE_GATE)) + relativeGate;
+    }
+
+    private static double gatedMean(double[] energies, double threshold) {
+        double sum = 0;
+        int count = 0;
+        for (double energy : energies) {
+            if (loudness(energy) > threshold) {
+                sum += energy;
+                count++;
+            }
+        }
+        return count == 0 ? 0 : sum / count;
+    }
+
+    private static double loudness(double energy) {
+        return energy > 0 ? -0.691 + 10 * Math.log10(energy) : Double.NEGATIVE_INFINITY;
+    }
+
+    // What one analysis pass learns about a file; enough for a single linear gain afterwards
+    public static class Measurement {
+        private final double integrated;
+        private final double peak;
+        private final double range;
+        private final double threshold;
+
+        public Measurement(double integrated, double peak, double range, double threshold) {
+            this.integrated = integrated;
+            this.peak = peak;
+            this.range = range;
+            this.threshold = threshold;
+        }
+
+        // LUFS
+        public double getIntegrated() { return integrated; }
+        // Sample peak in dBFS
+        public double getPeak() { return peak; }
+        // LU
+        public double getRange() { return range; }
+        // Relative gate in LUFS
+        public double getThreshold() { return threshold; }
+
+        // Gain in dB that brings the file to targetLufs without pushing the peak above peakCeiling
+        public double gainTo(double targetLufs, double peakCeiling) {
+            return Math.min(targetLufs - integrated, peakCeiling - peak);
+        }
+    }
+
+    // Direct form I biquad with the BS.1770 K-weighting designs, re-derived for any sample rate
+    private static final class Biquad {
+        private final double b0, b1, b2, a1, a2;
+        private double x1, x2, y1, y2;
+
+        private Biquad(double b0, double b1, double b2, double a1, double a2) {
+            this.b0 = b0;
+            this.b1 = b1;
+            this.b2 = b2;
+            this.a1 = a1;
+            this.a2 = a2;
+        }
+
+        // Stage 1: +4 dB shelf modelling the acoustic effect of the head
+        static Biquad highShelf(int sampleRate) {
+            double f0 = 1681.974450955533;
+            double gain = 3.999843853973347;
+            double q = 0.7071752369554196;
+            double k = Math.tan(Math.PI * f0 / sampleRate);
+            double vh = Math.pow(10, gain / 20);
+            double vb = Math.pow(vh, 0.4996667741545416);
+            double a0 = 1 + k / q + k * k;
+            return new Biquad((vh + vb * k / q + k * k) / a0, 2 * (k * k - vh) / a0, (vh - vb * k / q + k * k) / a0,
+                    2 * (k * k - 1) / a0, (1 - k / q + k * k) / a0);
+        }
+
+        // Stage 2: the RLB high-pass
+        static Biquad highPass(int sampleRate) {
+            double f0 = 38.13547087602444;
+            double q = 0.5003270373238773;
+            double k = Math.tan(Math.PI * f0 / sampleRate);
+            double a0 = 1 + k / q + k * k;
+            return new Biquad(1, -2, 1, 2 * (k * k - 1) / a0, (1 - k / q + k * k) / a0);
+        }
+
+        double filter(double x) {
+            double y = b0 * x + b1 * x1 + b2 * x2 - a1 * y1 - a2 * y2;
+            x2 = x1;
+            x1 = x;
+            y2 = y1;
+            y1 = y;
+            return y;
+        }
+    }
+}
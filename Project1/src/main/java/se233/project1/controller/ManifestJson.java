@@ -0,0 +1,321 @@
+package se233.project1.controller;
+
+import se233.project1.model.ConversionConfig;
+import se233.project1.model.ConversionConfig.FileConversionSettings;
+import se233.project1.model.ConversionConfig.OutputTarget;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * The batch manifest as JSON, for other tools. One object per file:
+ *
+ *   {"version": 1, "files": [
+ *     {"path": "/music/a.flac", "format": "mp3", "quality": "192 kbps", "sampleRate": "44100 Hz",
+ *      "channels": "Stereo", "bitrate": "192 kbps", "targetLufs": -16.0,
+ *      "extraTargets": [{"format": "wav", "quality": "...", "sampleRate": "...", "channels": "..."}]},
+ *     {"archive": "/music/set.zip", "entry": "b.wav", "entrySize": 1234, "format": "m4a", ...}
+ *   ]}
+ *
+ * Only "path" (or "archive" and "entry") is required on import; missing settings keep their defaults.
+ */
+public class ManifestJson {
+    private static final int VERSION = 1;
+
+    private ManifestJson() {
+    }
+
+    public static void export(ConversionConfig config, File file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            out.write("{\"version\": " + VERSION + ", \"files\": [");
+            boolean first = true;
+            for (FileConversionSettings settings : config.getAllFileSettings()) {
+                out.write(first ? "\n  {" : ",\n  {");
+                first = false;
+                if (settings.isArchiveEntry()) {
+                    field(out, "archive", settings.getArchiveFile().getAbsolutePath(), true);
+                    field(out, "entry", settings.getArchiveEntry(), false);
+                    out.write(", \"entrySize\": " + settings.getInputSize());
+                } else {
+                    field(out, "path", settings.getInputFile().getAbsolutePath(), true);
+                }
+                field(out, "format", settings.getOutputFormat(), false);
+                field(out, "quality", settings.getQuality(), false);
+                field(out, "sampleRate", settings.getSampleRate(), false);
+                field(out, "channels", settings.getChannels(), false);
+                if (settings.getBitrate() != null) {
+                    field(out, "bitrate", settings.getBitrate(), false);
+                }
+                if (settings.getTargetLufs() != null) {
+                    out.write(", \"targetLufs\": " + settings.getTargetLufs());
+                }
+                List<OutputTarget> extras = settings.getExtraOutputTargets();
+                if (!extras.isEmpty()) {
+                    out.write(", \"extraTargets\": [");
+                    for (int i = 0; i < extras.size(); i++) {
+                        OutputTarget target = extras.get(i);
+                        out.write(i == 0 ? "{" : ", {");
+                        field(out, "format", target.getOutputFormat(), true);
+                        field(out, "quality", target.getQuality(), false);
+                        field(out, "sampleRate", target.getSampleRate(), false);
+                        field(out, "channels", target.getChannels(), false);
+                        out.write("}");
+                    }
+                    out.write("]");
+                }
+                out.write("}");
+            }
+            out.write("\n]}\n");
+        }
+    }
+
+    // Returns the number of files added; files already in the batch are left as they are
+    public static int importInto(ConversionConfig config, File file) throws IOException {
+        Object root = new Parser(Files.readString(file.toPath(), StandardCharsets.UTF_8)).parseDocument();
+        if (!(root instanceof Map<?, ?> document) || !(document.get("files") instanceof List<?> files)) {
+            throw new IOException("Not a batch manifest: expected an object with a \"files\" array");
+        }
+        Object version = document.get("version");
+        if (version instanceof Double number && number.intValue() > VERSION) {
+            throw new IOException("Unsupported batch manifest version " + number.intValue());
+        }
+
+        List<FileConversionSettings> parsed = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            try {
+                parsed.add(toSettings(files.get(i)));
+            } catch (IllegalArgumentException | ClassCastException e) {
+                throw new IOException("File " + (i + 1) + " in the manifest: " + e.getMessage(), e);
+            }
+        }
+        // All or nothing: a bad entry leaves the batch untouched
+        int added = 0;
+        for (FileConversionSettings settings : parsed) {
+            if (config.addSettings(settings)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    private static FileConversionSettings toSettings(Object value) {
+        if (!(value instanceof Map<?, ?> entry)) {
+            throw new IllegalArgumentException("expected an object");
+        }
+        FileConversionSettings settings;
+        if (entry.get("archive") != null) {
+            Object size = entry.get("entrySize");
+            settings = new FileConversionSettings(new File(text(entry, "archive")), text(entry, "entry"),
+                    size != null ? ((Double) size).longValue() : 0);
+        } else {
+            settings = new FileConversionSettings(new File(text(entry, "path")));
+        }
+        if (entry.get("format") != null) settings.setOutputFormat(text(entry, "format"));
+        if (entry.get("quality") != null) settings.setQuality(text(entry, "quality"));
+        if (entry.get("sampleRate") != null) settings.setSampleRate(text(entry, "sampleRate"));
+        if (entry.get("channels") != null) settings.setChannels(text(entry, "channels"));
+        if (entry.get("bitrate") != null) settings.setBitrate(text(entry, "bitrate"));
+        if (entry.get("targetLufs") != null) settings.setTargetLufs((Double) entry.get("targetLufs"));
+        if (entry.get("extraTargets") instanceof List<?> extras) {
+            for (Object extra : extras) {
+                if (!(extra instanceof Map<?, ?> target)) {
+                    throw new IllegalArgumentException("expected an object in extraTargets");
+                }
+                settings.addOutputTarget(text(target, "format"), text(target, "quality"), text(target, "sampleRate"),
+                        text(target, "channels"));
+            }
+        }
+        return settings;
+    }
+
+    private static String text(Map<?, ?> object, String name) {
+        if (!(object.get(name) instanceof String value)) {
+            throw new IllegalArgumentException("\"" + name + "\" must be a string");
+        }
+        return value;
+    }
+
+    private static void field(Writer out, String name, String value, boolean first) throws IOException {
+        StringBuilder line = new StringBuilder(first ? "" : ", ").append('"').append(name).append("\": \"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> line.append("\\\"");
+                case '\\' -> line.append("\\\\");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '\t' -> line.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+                }
+            }
+        }
+        out.write(line.append('"').toString());
+    }
+
+    // Just enough JSON for manifests: objects become maps, arrays lists, numbers doubles
+    private static class Parser {
+        private final String text;
+        private int position;
+
+        private Parser(String text) {
+            this.text = text;
+        }
+
+        private Object parseDocument() throws IOException {
+            Object value = parseValue();
+            skipWhitespace();
+            if (position != text.length()) {
+                throw error("Unexpected text after the document");
+            }
+            return value;
+        }
+
+        private Object parseValue() throws IOException {
+            skipWhitespace();
+            if (position >= text.length()) {
+                throw error("Unexpected end of document");
+            }
+            char c = text.charAt(position);
+            if (c == '{') return parseObject();
+            if (c == '[') return parseArray();
+            if (c == '"') return parseString();
+            if (text.startsWith("true", position)) { position += 4; return Boolean.TRUE; }
+            if (text.startsWith("false", position)) { position += 5; return Boolean.FALSE; }
+            if (text.startsWith("null", position)) { position += 4; return null; }
+            return parseNumber();
+        }
+
+        private Map<String, Object> parseObject() throws IOException {
+            Map<String, Object> object = new LinkedHashMap<>();
+            position++;
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return object;
+            }
+            while (true) {
+                skipWhitespace();
+                if (peek() != '"') {
+                    throw error("Expected a field name");
+                }
+                String name = parseString();
+                skipWhitespace();
+                expect(':');
+                object.put(name, parseValue());
+                skipWhitespace();
+                if (peek() == ',') {
+                    position++;
+                } else {
+                    expect('}');
+                    return object;
+                }
+            }
+        }
+
+        private List<Object> parseArray() throws IOException {
+            List<Object> array = new ArrayList<>();
+            position++;
+            skipWhitespace();
+            if (peek() == ']') {
+                position++;
+                return array;
+            }
+            while (true) {
+                array.add(parseValue());
+                skipWhitespace();
+                if (peek() == ',') {
+                    position++;
+                } else {
+                    expect(']');
+                    return array;
+                }
+            }
+        }
+
+        private String parseString() throws IOException {
+            StringBuilder value = new StringBuilder();
+            position++;
+            while (position < text.length()) {
+                char c = text.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (position >= text.length()) {
+                    break;
+                }
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'u' -> {
+                        if (position + 4 > text.length()) {
+                            throw error("Bad unicode escape");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Bad unicode escape");
+                        }
+                        position += 4;
+                    }
+                    default -> value.append(escaped);
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        private Double parseNumber() throws IOException {
+            int start = position;
+            while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            try {
+                return Double.valueOf(text.substring(start, position));
+            } catch (NumberFormatException e) {
+                position = start;
+                throw error("Unexpected value");
+            }
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private char peek() {
+            return position < text.length() ? text.charAt(position) : '\0';
+        }
+
+        private void expect(char c) throws IOException {
+            if (peek() != c) {
+                throw error("Expected '" + c + "'");
+            }
+            position++;
+        }
+
+        private IOException error(String message) {
+            return new IOException(message + " at character " + position + " of the manifest");
+        }
+    }
+}
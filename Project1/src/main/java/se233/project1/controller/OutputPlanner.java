@@ -0,0 +1,98 @@
+package se233.project1.controller;
+
+import se233.project1.model.ConversionConfig.FileConversionSettings;
+import se233.project1.model.ConversionConfig.OutputTarget;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Resolves every output name of a batch before any job starts, so two inputs such as a.mp3 and a.wav
+// never race on one a_converted.mp3. Names are planned in input order, which keeps them stable between runs.
+public class OutputPlanner {
+    // Lower-cased so the plan also holds on case-insensitive file systems
+    private final Map<String, Integer> taken = new HashMap<>();
+    private final Map<FileConversionSettings, List<String>> planned = new IdentityHashMap<>();
+
+    public static OutputPlanner plan(List<FileConversionSettings> allSettings) {
+        OutputPlanner planner = new OutputPlanner();
+        for (FileConversionSettings settings : allSettings) {
+            planner.namesFor(settings);
+        }
+        return planner;
+    }
+
+    // One name per output target, in target order; settings that were not part of the plan are added on demand
+    public synchronized List<String> namesFor(FileConversionSettings settings) {
+        List<String> names = planned.get(settings);
+        if (names == null) {
+            names = new ArrayList<>();
+            List<OutputTarget> targets = settings.getOutputTargets();
+            for (OutputTarget target : targets) {
+                names.add(reserve(baseName(settings, target, targets), target.getOutputFormat()));
+            }
+            planned.put(settings, names);
+        }
+        return names;
+    }
+
+    // Lets go of the settings once its job is done; its names stay taken, so later jobs still avoid them
+    public synchronized void release(FileConversionSettings settings) {
+        planned.remove(settings);
+    }
+
+    // Each stem remembers the next free suffix, so a thousand inputs called "take" still cost one lookup each
+    private String reserve(String stem, String extension) {
+        String key = (stem + "." + extension).toLowerCase();
+        Integer next = taken.get(key);
+        if (next == null) {
+            taken.put(key, 2);
+            return stem + "." + extension;
+        }
+        while (true) {
+            String candidate = stem + "_" + next + "." + extension;
+            String candidateKey = candidate.toLowerCase();
+            next++;
+            if (!taken.containsKey(candidateKey)) {
+                taken.put(key, next);
+                taken.put(candidateKey, 2);
+                return candidate;
+            }
+        }
+    }
+
+    private static String baseName(FileConversionSettings settings, OutputTarget target, List<OutputTarget> targets) {
+        String baseName = settings.getInputFile().getName();
+        int lastDot = baseName.lastIndexOf('.');
+        if (lastDot > 0) {
+            baseName = baseName.substring(0, lastDot);
+        }
+        long sameFormat = targets.stream()
+                .filter(t -> t.getOutputFormat().equals(target.getOutputFormat()))
+                .count();
+        if (sameFormat > 1) {
+            String variant = target.getQuality() + "_" + target.getSampleRateAsNumber() + "_" + target.getChannels();
+            baseName += "_" + variant.replaceAll("[^A-Za-z0-9_]+", "");
+        }
+        return baseName + "_converted";
+    }
+
+    // Rough size of an encoded output, used to reserve space for it before the encoder starts
+    public static long estimateSize(double seconds, OutputTarget target) {
+        String quality = target.getQuality();
+        double bytesPerSecond;
+        if (quality.endsWith("kbps")) {
+            bytesPerSecond = Integer.parseInt(quality.replaceAll("[^0-9]", "")) * 125.0;
+        } else {
+            int bytesPerSample = quality.startsWith("24") ? 3 : 2;
+            bytesPerSecond = Double.parseDouble(target.getSampleRateAsNumber()) *
+                    Integer.parseInt(target.getChannelsAsNumber()) * bytesPerSample;
+            if (target.getOutputFormat().equals("flac")) {
+                bytesPerSecond *= 0.6;
+            }
+        }
+        return (long) (seconds * bytesPerSecond);
+    }
+}
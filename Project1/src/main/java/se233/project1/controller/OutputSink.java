@@ -0,0 +1,44 @@
+package se233.project1.controller;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+// Where finished outputs go: loose files in a directory, or entries of one packaged archive
+public interface OutputSink extends Closeable {
+
+    // Closing an output without committing it discards what was written
+    Output create(String name) throws IOException;
+
+    // expectedSize is an estimate that lets the sink reserve space up front; it may be 0 when unknown
+    default Output create(String name, long expectedSize) throws IOException {
+        return create(name);
+    }
+
+    // The file an output name ends up as; archive entries are addressed as <archive>/<name>
+    File locate(String name);
+
+    // Directory or archive file the sink writes to, used to find the device it lives on
+    File getLocation();
+
+    // Publishes an identical copy of source without moving bytes, if the sink can, and returns the name it was
+    // published under; null when the sink cannot link
+    default String link(String name, File source) {
+        return null;
+    }
+
+    interface Output extends WritableByteChannel {
+        void commit() throws IOException;
+
+        // The name the output is published under; only a sink that never replaces an existing output may
+        // commit it under another name than the one it was created with
+        String getName();
+
+        // Sinks backed by a FileChannel override this to keep the kernel-side copy
+        default long transferFrom(FileChannel input, long position, long count) throws IOException {
+            return input.transferTo(position, count, this);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package se233.project1.controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+// Cheap checks that a finished output is whole, for outputs that were written but cut short: the container
+// header, the duration against the input's, and a few frames sampled from the start to the very end.
+// An output costs a few kilobytes of reads however long it is; nothing is decoded in full.
+public class OutputVerifier {
+    public static final double DEFAULT_TOLERANCE_SECONDS = 0.5;
+    public static final double DEFAULT_TOLERANCE_FRACTION = 0.02;
+    public static final int DEFAULT_SAMPLED_FRAMES = 4;
+
+    private static final int PCM_FRAMES_PER_SAMPLE = 1024;
+    // Far more than one MP3 or FLAC frame header search needs
+    private static final int SYNC_WINDOW_BYTES = 16 * 1024;
+    private static final int ID3V1_TAG_BYTES = 128;
+
+    private final double toleranceSeconds;
+    private final double toleranceFraction;
+    private final int sampledFrames;
+
+    public OutputVerifier() {
+        this(DEFAULT_TOLERANCE_SECONDS, DEFAULT_TOLERANCE_FRACTION, DEFAULT_SAMPLED_FRAMES);
+    }
+
+    // A duration passes when it is within the larger of the two tolerances
+    public OutputVerifier(double toleranceSeconds, double toleranceFraction, int sampledFrames) {
+        if (toleranceSeconds < 0 || toleranceFraction < 0 || sampledFrames < 1) {
+            throw new IllegalArgumentException("Tolerances cannot be negative and at least one frame must be sampled");
+        }
+        this.toleranceSeconds = toleranceSeconds;
+        this.toleranceFraction = toleranceFraction;
+        this.sampledFrames = sampledFrames;
+    }
+
+    // Returns what was checked; throws on the first mismatch. source is the probed input, or null when its
+    // duration is not known, e.g. for archive members, in which case the duration is not compared.
+    // Containers the probe only recognises (MP4, Ogg) get the header check alone.
+    public String verify(File output, AudioProbe.AudioInfo source) throws IOException {
+        if (!output.isFile() || output.length() == 0) {
+            throw new VerificationException(output, "output is missing or empty");
+        }
+        AudioProbe.AudioInfo info = AudioProbe.probeContent(output);
+        if (info.getContainer().isEmpty()) {
+            throw new VerificationException(output, "container header not recognised");
+        }
+        if (!info.isKnown()) {
+            return info.getContainer() + " header";
+        }
+        if (info.isTruncated()) {
+            throw new VerificationException(output, "header promises more audio than the file holds");
+        }
+
+        StringBuilder checked = new StringBuilder(info.getContainer()).append(" header");
+        double expected = source != null ? source.getDurationSeconds() : 0;
+        double actual = info.getDurationSeconds();
+        if (expected > 0 && actual > 0) {
+            if (Math.abs(actual - expected) > Math.max(toleranceSeconds, expected * toleranceFraction)) {
+                throw new VerificationException(output, String.format(Locale.ROOT,
+                        "duration is %.2f s, the input's is %.2f s", actual, expected));
+            }
+            checked.append(String.format(Locale.ROOT, ", %.1f s of %.1f s", actual, expected));
+        }
+        sampleFrames(output, info);
+        return checked.append(", ").append(sampledFrames).append(" frame(s) sampled").toString();
+    }
+
+    private void sampleFrames(File output, AudioProbe.AudioInfo info) throws IOException {
+        try (FileChannel channel = FileChannel.open(output.toPath(), StandardOpenOption.READ)) {
+            long start = info.getDataOffset();
+            long end = info.getDataOffset() + info.getDataLength();
+            for (int i = 0; i < sampledFrames; i++) {
+                // Spread from the first frame to the last, so a cut-off tail is always among the samples
+                long position = start + (sampledFrames == 1 ? 0 : (end - start) / (sampledFrames - 1) * i);
+                boolean last = i == sampledFrames - 1 && sampledFrames > 1;
+                String problem = switch (info.getCodec()) {
+                    case "mp3" -> checkMp3(channel, position, end, last);
+                    case "flac" -> checkFlac(channel, position, end);
+                    default -> checkPcm(channel, info, position, start, end);
+                };
+                if (problem != null) {
+                    throw new VerificationException(output, problem);
+                }
+            }
+        }
+    }
+
+    // PCM decodes as long as whole sample frames are there to read
+    private static String checkPcm(FileChannel channel, AudioProbe.AudioInfo info, long position, long start, long end)
+            throws IOException {
+        int blockAlign = info.getChannels() * ((info.getBitsPerSample() + 7) / 8);
+        if (blockAlign <= 0) {
+            return "no sample frame size in the header";
+        }
+        if ((end - start) % blockAlign != 0) {
+            return "audio ends in a partial sample frame";
+        }
+        long length = Math.min((long) blockAlign * PCM_FRAMES_PER_SAMPLE, end - start);
+        long from = Math.max(start, Math.min(position, end - length));
+        from -= (from - start) % blockAlign;
+        if (readAt(channel, from, (int) length).remaining() != length) {
+            return "sample frames at byte " + from + " cannot be read";
+        }
+        return null;
+    }
+
+    // A frame header counts only when another one follows exactly one frame later, or the audio ends there.
+    // For the last sample the frames are walked to the end, which catches a final frame that was cut short.
+    private static String checkMp3(FileChannel channel, long position, long end, boolean last) throws IOException {
+        long from = last ? Math.max(0, end - SYNC_WINDOW_BYTES) : position;
+        ByteBuffer window = readAt(channel, from, (int) Math.min(SYNC_WINDOW_BYTES, Math.max(0, end - from)));
+        for (int i = 0; i + 4 <= window.limit(); i++) {
+            int length = AudioProbe.mp3FrameLength(window.getInt(i));
+            if (length <= 0) {
+                continue;
+            }
+            long frameEnd = from + i + length;
+            if (!last && (frameEnd == end || isMp3Frame(channel, frameEnd))) {
+                return null;
+            }
+            if (last && isMp3Frame(channel, frameEnd)) {
+                return walkMp3ToEnd(channel, frameEnd, end);
+            }
+        }
+        return "no MP3 frame near byte " + from;
+    }
+
+    private static String walkMp3ToEnd(FileChannel channel, long position, long end) throws IOException {
+        while (position < end) {
+            int length = mp3FrameLengthAt(channel, position);
+            if (length <= 0) {
+                // A trailing ID3v1 tag is the only thing allowed after the last frame
+                return end - position == ID3V1_TAG_BYTES && isTag(channel, position)
+                        ? null : "stray bytes after the MP3 frame ending at byte " + position;
+            }
+            position += length;
+        }
+        return position == end ? null : "the last MP3 frame is cut short";
+    }
+
+    private static boolean isMp3Frame(FileChannel channel, long position) throws IOException {
+        return mp3FrameLengthAt(channel, position) > 0;
+    }
+
+    private static int mp3FrameLengthAt(FileChannel channel, long position) throws IOException {
+        ByteBuffer header = readAt(channel, position, 4);
+        return header.remaining() == 4 ? AudioProbe.mp3FrameLength(header.getInt(0)) : -1;
+    }
+
+    private static boolean isTag(FileChannel channel, long position) throws IOException {
+        ByteBuffer tag = readAt(channel, position, 3);
+        return tag.remaining() == 3 && tag.get(0) == 'T' && tag.get(1) == 'A' && tag.get(2) == 'G';
+    }
+
+    // A FLAC frame header: the sync code, a defined block size and sample rate, and a valid channel layout
+    private static String checkFlac(FileChannel channel, long position, long end) throws IOException {
+        long from = Math.max(0, Math.min(position, end - SYNC_WINDOW_BYTES));
+        ByteBuffer window = readAt(channel, from, (int) Math.min(SYNC_WINDOW_BYTES, Math.max(0, end - from)));
+        for (int i = 0; i + 4 <= window.limit(); i++) {
+            int b1 = window.get(i) & 0xff;
+            int b2 = window.get(i + 1) & 0xff;
+            int b3 = window.get(i + 2) & 0xff;
+            int b4 = window.get(i + 3) & 0xff;
+            if (b1 == 0xff && (b2 & 0xfe) == 0xf8 && (b3 >> 4) != 0 && (b3 & 0xf) != 0xf &&
+                    (b4 >> 4) <= 10 && ((b4 >> 1) & 0x7) != 3 && (b4 & 1) == 0) {
+                return null;
+            }
+        }
+        return "no FLAC frame near byte " + from;
+    }
+
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // An IOException, so the retry policy treats a bad output like any other transient write failure
+    public static class VerificationException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public VerificationException(File output, String problem) {
+            super(output.getName() + " failed verification: " + problem);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package se233.project1.controller;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Converts interleaved 16-bit little-endian PCM to another sample rate and channel layout, one chunk at a time.
+// Supports downmixing to mono, duplicating mono to stereo, and keeping the channel count.
+public class PcmConverter {
+    public static final int CHUNK_FRAMES = 16 * 1024;
+
+    private final int inputRate;
+    private final int inputChannels;
+    private final int outputRate;
+    private final int outputChannels;
+    // Distinct signals that need resampling: mono to stereo resamples once and writes the result twice
+    private final int planes;
+    private final Resampler[] resamplers;
+
+    private final short[] inputShorts;
+    private final float[] inputSamples;
+    private final float[][] planeInput;
+    private final float[][] planeOutput;
+    private final float[] outputSamples;
+    private final short[] outputShorts;
+    private final ByteBuffer outputBytes;
+    private float gain = 1.0f;
+
+    public PcmConverter(int inputRate, int inputChannels, int outputRate, int outputChannels) {
+        if (outputChannels != inputChannels && outputChannels != 1 && !(inputChannels == 1 && outputChannels == 2)) {
+            throw new IllegalArgumentException("Cannot map " + inputChannels + " channels to " + outputChannels);
+        }
+        this.inputRate = inputRate;
+        this.inputChannels = inputChannels;
+        this.outputRate = outputRate;
+        this.outputChannels = outputChannels;
+        this.planes = outputChannels == 1 || inputChannels == 1 ? 1 : outputChannels;
+
+        Resampler[] resamplers = null;
+        int maxOutputFrames = CHUNK_FRAMES;
+        if (inputRate != outputRate) {
+            resamplers = new Resampler[planes];
+            for (int plane = 0; plane < planes; plane++) {
+                resamplers[plane] = new Resampler(inputRate, outputRate);
+            }
+            maxOutputFrames = resamplers[0].maxOutput(CHUNK_FRAMES);
+        }
+        this.resamplers = resamplers;
+
+        this.inputShorts = new short[CHUNK_FRAMES * inputChannels];
+        this.inputSamples = new float[CHUNK_FRAMES * inputChannels];
+        this.planeInput = new float[planes][CHUNK_FRAMES];
+        this.planeOutput = new float[planes][maxOutputFrames];
+        this.outputSamples = new float[maxOutputFrames * outputChannels];
+        this.outputShorts = new short[maxOutputFrames * outputChannels];
+        this.outputBytes = ByteBuffer.allocate(maxOutputFrames * outputChannels * 2).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Linear gain applied before the samples are clamped back to 16 bits
+    public void setGainDb(double gainDb) {
+        this.gain = (float) Math.pow(10, gainDb / 20);
+    }
+
+    public int getChunkBytes() {
+        return CHUNK_FRAMES * inputChannels * 2;
+    }
+
+    // Size of the converted data chunk; exact, so the WAV header can be written before any audio
+    public long outputDataLength(long inputDataLength) {
+        long frames = inputDataLength / (2L * inputChannels);
+        long outputFrames = inputRate == outputRate ? frames : Resampler.outputLength(frames, inputRate, outputRate);
+        return outputFrames * outputChannels * 2;
+    }
+
+    // input holds whole frames, at most getChunkBytes(); the returned buffer is reused by the next call
+    public ByteBuffer process(ByteBuffer input) {
+        int frames = input.remaining() / (2 * inputChannels);
+        int samples = frames * inputChannels;
+        input.slice().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(inputShorts, 0, samples);
+        input.position(input.position() + samples * 2);
+        AudioDsp.toFloat(inputShorts, inputSamples, samples);
+
+        if (planes == 1 && inputChannels > 1) {
+            AudioDsp.downmix(inputSamples, inputChannels, planeInput[0], frames);
+        } else if (inputChannels == 1) {
+            System.arraycopy(inputSamples, 0, planeInput[0], 0, frames);
+        } else {
+            for (int plane = 0; plane < planes; plane++) {
+                AudioDsp.deinterleave(inputSamples, inputChannels, plane, planeInput[plane], frames);
+            }
+        }
+
+        int outputFrames = frames;
+        float[][] converted = planeInput;
+        if (resamplers != null) {
+            for (int plane = 0; plane < planes; plane++) {
+                outputFrames = resamplers[plane].process(planeInput[plane], 0, frames, planeOutput[plane]);
+            }
+            converted = planeOutput;
+        }
+        return encode(converted, outputFrames);
+    }
+
+    // Flushes what the resamplers still hold; empty when the rate does not change
+    public ByteBuffer finish() {
+        int outputFrames = 0;
+        if (resamplers != null) {
+            for (int plane = 0; plane < planes; plane++) {
+                outputFrames = resamplers[plane].finish(planeOutput[plane]);
+            }
+        }
+        return encode(planeOutput, outputFrames);
+    }
+
+    private ByteBuffer encode(float[][] converted, int frames) {
+        for (int channel = 0; channel < outputChannels; channel++) {
+            AudioDsp.interleave(converted[Math.min(channel, planes - 1)], outputChannels, channel, outputSamples, frames);
+        }
+        int samples = frames * outputChannels;
+        if (gain != 1.0f) {
+            AudioDsp.scale(outputSamples, samples, gain);
+        }
+        AudioDsp.toShort(outputSamples, outputShorts, samples);
+        outputBytes.clear();
+        outputBytes.asShortBuffer().put(outputShorts, 0, samples);
+        outputBytes.limit(samples * 2);
+        return outputBytes;
+    }
+}
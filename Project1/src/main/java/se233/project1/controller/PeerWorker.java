@@ -0,0 +1,197 @@
+package se233.project1.controller;
+
+import se233.project1.model.ConversionConfig;
+import se233.project1.model.ConversionConfig.FileConversionSettings;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Converts the audio files of a shared input directory together with any number of other instances, with no
+// coordinator: each job is claimed through a LeaseDirectory inside the input directory. Every instance starts
+// its pass at a random file, so they rarely contend for the same job, and keeps rescanning until every input is
+// done or failed, which also picks up jobs whose holder died.
+public class PeerWorker {
+    public static final String CLAIMS_DIRECTORY = ".se233-claims";
+    private static final String[] INPUT_FORMATS = {"mp3", "wav", "m4a", "flac"};
+    private static final long WAIT_MILLIS = 1000;
+
+    private final File inputDirectory;
+    private final File outputDirectory;
+    private final String outputFormat;
+    private final String workerId;
+    private final LeaseDirectory leases;
+    private final Conversion conversion;
+    private final Map<LeaseDirectory.Claim, String> held = new ConcurrentHashMap<>();
+    private Consumer<String> logCallback;
+
+    public PeerWorker(File inputDirectory, File outputDirectory, String outputFormat) {
+        this(inputDirectory, outputDirectory, outputFormat, LeaseDirectory.DEFAULT_LEASE_MILLIS);
+    }
+
+    public PeerWorker(File inputDirectory, File outputDirectory, String outputFormat, long leaseMillis) {
+        this.inputDirectory = inputDirectory;
+        this.outputDirectory = outputDirectory;
+        this.outputFormat = outputFormat;
+        this.workerId = hostName() + "-" + ProcessHandle.current().pid() + "-" +
+                Integer.toHexString(ThreadLocalRandom.current().nextInt());
+        this.leases = new LeaseDirectory(new File(inputDirectory, CLAIMS_DIRECTORY), workerId, leaseMillis);
+        this.conversion = new Conversion(new ConversionConfig());
+    }
+
+    public void setLogCallback(Consumer<String> callback) {
+        this.logCallback = callback;
+    }
+
+    public String getWorkerId() {
+        return workerId;
+    }
+
+    // Returns the number of jobs this instance converted
+    public int run() throws IOException, InterruptedException {
+        if (!inputDirectory.isDirectory()) {
+            throw new IOException("Input directory does not exist: " + inputDirectory);
+        }
+        int converted = 0;
+        long heartbeatMillis = leases.getLeaseMillis() / 3;
+        ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor();
+        heartbeat.scheduleAtFixedRate(this::renewLeases, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        logMessage("Peer " + workerId + " sharing " + inputDirectory.getAbsolutePath());
+        // Every holder of a job publishes under the same names, replacing rather than numbering
+        DirectorySink outputs = new DirectorySink(outputDirectory);
+        try {
+            while (true) {
+                List<File> inputs = scanInputs();
+                int unsettled = 0;
+                int claimed = 0;
+                int start = inputs.isEmpty() ? 0 : ThreadLocalRandom.current().nextInt(inputs.size());
+                for (int i = 0; i < inputs.size(); i++) {
+                    File input = inputs.get((start + i) % inputs.size());
+                    String key = keyFor(input);
+                    if (leases.isSettled(key)) {
+                        continue;
+                    }
+                    unsettled++;
+                    LeaseDirectory.Claim claim = leases.tryClaim(key);
+                    if (claim == null) {
+                        continue;
+                    }
+                    claimed++;
+                    if (convert(input, claim, outputs)) {
+                        converted++;
+                    }
+                }
+                if (unsettled == 0) {
+                    break;
+                }
+                // Everything left is held by live peers; wait for them to finish or go stale
+                if (claimed == 0) {
+                    Thread.sleep(WAIT_MILLIS);
+                }
+            }
+        } finally {
+            heartbeat.shutdownNow();
+            conversion.shutdown();
+        }
+        logMessage("Peer " + workerId + " finished after " + converted + " job(s)");
+        return converted;
+    }
+
+    private boolean convert(File input, LeaseDirectory.Claim claim, DirectorySink outputs) throws IOException {
+        held.put(claim, input.getName());
+        try {
+            logMessage("Claimed " + input.getName() + " (attempt " + claim.getAttempt() + ")");
+            FileConversionSettings settings = new FileConversionSettings(input);
+            if (outputFormat != null) {
+                settings.setOutputFormat(outputFormat);
+            }
+            // Outputs are published only while the lease is still held
+            OutputSink sink = new LeasedSink(outputs, claim::renew);
+            List<File> outputFiles = conversion.convertFile(settings, sink).getOutputFiles();
+            // Lost after the last output went out: what was published is the job's output under its final name,
+            // and marking the job done is left to its new holder
+            if (claim.isLost()) {
+                logMessage("Lease on " + input.getName() + " was taken over after converting; its new holder finishes the job");
+                return false;
+            }
+            StringBuilder note = new StringBuilder();
+            for (File outputFile : outputFiles) {
+                note.append(note.length() > 0 ? ", " : "").append(outputFile.getName());
+                logMessage("Converted " + input.getName() + " → " + outputFile.getName());
+            }
+            claim.complete(note.toString());
+            return true;
+        } catch (Conversion.ConversionException e) {
+            if (claim.isLost()) {
+                logMessage("Lease on " + input.getName() + " was taken over while converting; nothing was published");
+                return false;
+            }
+            logMessage("Failed " + input.getName() + ": " + e.getMessage());
+            claim.release();
+            return false;
+        } finally {
+            held.remove(claim);
+        }
+    }
+
+    private void renewLeases() {
+        held.forEach((claim, name) -> {
+            if (!claim.isLost() && !claim.renew()) {
+                logMessage("Lost the lease on " + name + " to another instance");
+            }
+        });
+    }
+
+    private List<File> scanInputs() {
+        File[] files = inputDirectory.listFiles(file -> file.isFile() && !file.getName().startsWith(".") &&
+                hasInputExtension(file.getName()));
+        if (files == null) {
+            return List.of();
+        }
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+    private static boolean hasInputExtension(String name) {
+        String fileName = name.toLowerCase();
+        return Arrays.stream(INPUT_FORMATS).anyMatch(format -> fileName.endsWith("." + format));
+    }
+
+    // Size and modification time are part of the key, so a replaced input is converted again
+    static String keyFor(File input) {
+        String key = input.getName() + "|" + input.length() + "|" + input.lastModified();
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "host";
+        }
+    }
+
+    private void logMessage(String message) {
+        if (logCallback != null) {
+            logCallback.accept(message);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package se233.project1.controller;
+
+import se233.project1.model.ConversionConfig.FileConversionSettings;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Inputs that failed every attempt. Later batches skip them until the file changes on disk or the entry is
+// released, so re-running a batch does not spend the whole retry budget on the same broken file again.
+// An entry covers one input converted with one set of targets into one location; changing either retries it.
+public class Quarantine {
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public void add(FileConversionSettings settings, File outputLocation, String reason) {
+        entries.put(key(settings, outputLocation), new Entry(settings.getSourceLocation(), reason));
+    }
+
+    public Entry find(FileConversionSettings settings, File outputLocation) {
+        return entries.get(key(settings, outputLocation));
+    }
+
+    public void release(FileConversionSettings settings, File outputLocation) {
+        entries.remove(key(settings, outputLocation));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public List<Entry> getEntries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    // Size and modification time are part of the key, so replacing or repairing the file lifts the quarantine
+    private static String key(FileConversionSettings settings, File outputLocation) {
+        File file = settings.isArchiveEntry() ? settings.getArchiveFile() : settings.getInputFile();
+        return settings.getSourceLocation() + "|" + file.length() + "|" + file.lastModified() + "|" +
+                outputLocation.getAbsolutePath() + "|" + settings.getOutputTargets() + "|" + settings.getTargetLufs();
+    }
+
+    public static class Entry {
+        private final String location;
+        private final String reason;
+
+        private Entry(String location, String reason) {
+            this.location = location;
+            this.reason = reason;
+        }
+
+        public String getLocation() { return location; }
+        public String getReason() { return reason; }
+    }
+}
@@ -0,0 +1,184 @@
+package se233.project1.controller;
+
+import se233.project1.model.ConversionConfig.FileConversionSettings;
+import se233.project1.model.ConversionConfig.OutputTarget;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// Appends one line per output as each job finishes, so memory stays flat however long the batch is.
+// The buffer is flushed when full or once a second, which keeps the file readable while the batch runs.
+public class ReportWriter implements Closeable {
+    public static final String STATUS_OK = "OK";
+    // A failed attempt that will be tried again; the retry gets its own line
+    public static final String STATUS_RETRY = "RETRY";
+    public static final String STATUS_FAILED = "FAILED";
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final long FLUSH_INTERVAL_NANOS = 1_000_000_000L;
+    private static final String[] COLUMNS = {"input", "output", "format", "quality", "sample_rate", "channels",
+            "engine_path", "input_bytes", "output_bytes", "queue_ms", "encode_ms", "status", "error", "verification",
+            "bytes_read", "bytes_written"};
+
+    public enum Format {
+        CSV("csv"),
+        JSON_LINES("jsonl");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private final File reportFile;
+    private final Format format;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    private long lastFlush = System.nanoTime();
+
+    public ReportWriter(File reportFile, Format format) throws IOException {
+        this.reportFile = reportFile;
+        this.format = format;
+        this.channel = FileChannel.open(reportFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        if (format == Format.CSV) {
+            append(String.join(",", COLUMNS) + "\n");
+        }
+    }
+
+    public File getReportFile() {
+        return reportFile;
+    }
+
+    // result is null when the job failed before producing anything; error is null on success
+    public synchronized void record(FileConversionSettings settings, ConversionResult result,
+                                    long queueMillis, long encodeMillis, String status, String error)
+            throws IOException {
+        List<OutputTarget> targets = settings.getOutputTargets();
+        List<File> outputs = result != null ? result.getOutputFiles() : List.of();
+        for (int i = 0; i < targets.size(); i++) {
+            OutputTarget target = targets.get(i);
+            File output = i < outputs.size() ? outputs.get(i) : null;
+            Object[] values = {
+                    settings.getSourceLocation(),
+                    output != null ? output.getName() : "",
+                    target.getOutputFormat(),
+                    target.getQuality(),
+                    target.getSampleRateAsNumber(),
+                    target.getChannelsAsNumber(),
+                    output != null ? result.getEnginePath(output).getLabel() : "",
+                    settings.getInputSize(),
+                    output != null ? result.getOutputBytes(output) : 0L,
+                    queueMillis,
+                    encodeMillis,
+                    status,
+                    error == null ? "" : error,
+                    output != null && result.getVerification(output) != null ? result.getVerification(output) : "",
+                    result != null ? result.getByteCounter().getBytesRead() : 0L,
+                    result != null ? result.getByteCounter().getBytesWritten() : 0L
+            };
+            append(format == Format.CSV ? toCsv(values) : toJson(values));
+        }
+        if (buffer.position() > 0 && System.nanoTime() - lastFlush >= FLUSH_INTERVAL_NANOS) {
+            flush();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void append(String line) throws IOException {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > buffer.remaining()) {
+            flush();
+        }
+        if (bytes.length > buffer.capacity()) {
+            writeFully(ByteBuffer.wrap(bytes));
+        } else {
+            buffer.put(bytes);
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+        lastFlush = System.nanoTime();
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    private static String toCsv(Object[] values) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            String value = String.valueOf(values[i]);
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                line.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(value);
+            }
+        }
+        return line.append('\n').toString();
+    }
+
+    private static String toJson(Object[] values) {
+        StringBuilder line = new StringBuilder("{");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            line.append('"').append(COLUMNS[i]).append("\":");
+            if (values[i] instanceof Long) {
+                line.append(values[i]);
+            } else {
+                appendJsonString(line, String.valueOf(values[i]));
+            }
+        }
+        return line.append("}\n").toString();
+    }
+
+    private static void appendJsonString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
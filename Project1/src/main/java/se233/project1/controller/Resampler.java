@@ -0,0 +1,134 @@
+package se233.project1.controller;
+
+// Streaming polyphase resampler for one channel. The rate ratio is reduced to up/down, a windowed-sinc
+// low-pass is designed at up times the input rate, and only the taps that meet real input samples are
+// evaluated: each output is one dot product of tapsPerPhase coefficients, which AudioDsp vectorizes.
+public class Resampler {
+    public static final int DEFAULT_TAPS_PER_PHASE = 32;
+    // Keeps the transition band below the new Nyquist frequency
+    private static final double CUTOFF = 0.95;
+
+    private final int up;
+    private final int down;
+    private final int taps;
+    private final float[][] phases;
+    // Input time, in up-rate units, of the centre of the filter; outputs are shifted back by it
+    private final long delay;
+
+    private float[] buffer;
+    private int buffered;
+    private long time;
+    private long consumed;
+    private long produced;
+
+    public Resampler(int inputRate, int outputRate) {
+        this(inputRate, outputRate, DEFAULT_TAPS_PER_PHASE);
+    }
+
+    public Resampler(int inputRate, int outputRate, int tapsPerPhase) {
+        if (inputRate <= 0 || outputRate <= 0 || tapsPerPhase < 2) {
+            throw new IllegalArgumentException("Rates must be positive and a phase needs at least 2 taps");
+        }
+        int gcd = gcd(inputRate, outputRate);
+        this.up = outputRate / gcd;
+        this.down = inputRate / gcd;
+        this.taps = tapsPerPhase;
+        this.phases = designPhases(up, down, tapsPerPhase);
+        this.delay = ((long) up * tapsPerPhase - 1) / 2;
+
+        this.buffer = new float[tapsPerPhase * 4];
+        this.buffered = tapsPerPhase - 1;
+        this.time = delay + (long) (tapsPerPhase - 1) * up;
+    }
+
+    // Exact number of outputs a stream of inputFrames samples turns into, once finish() has run
+    public static long outputLength(long inputFrames, int inputRate, int outputRate) {
+        int gcd = gcd(inputRate, outputRate);
+        long up = outputRate / gcd;
+        long down = inputRate / gcd;
+        return (inputFrames * up + down - 1) / down;
+    }
+
+    // Upper bound for the outputs one process call can return for length new inputs
+    public int maxOutput(int length) {
+        return (int) (((long) (length + taps) * up) / down) + 2;
+    }
+
+    public int process(float[] input, int offset, int length, float[] output) {
+        ensureCapacity(buffered + length);
+        System.arraycopy(input, offset, buffer, buffered, length);
+        buffered += length;
+        consumed += length;
+        return drain(output, 0, Long.MAX_VALUE);
+    }
+
+    // Pushes the filter's tail out with silence and stops at exactly outputLength() samples
+    public int finish(float[] output) {
+        long expected = (consumed * up + down - 1) / down;
+        int padding = (int) (delay / up) + 2;
+        ensureCapacity(buffered + padding);
+        for (int i = 0; i < padding; i++) {
+            buffer[buffered++] = 0;
+        }
+        return drain(output, 0, expected);
+    }
+
+    private int drain(float[] output, int outputOffset, long limit) {
+        int count = outputOffset;
+        while (produced < limit) {
+            long newest = time / up;
+            if (newest >= buffered) {
+                break;
+            }
+            int phase = (int) (time % up);
+            output[count++] = AudioDsp.dot(phases[phase], 0, buffer, (int) newest - taps + 1, taps);
+            produced++;
+            time += down;
+        }
+
+        // Keep only the history the next output still needs
+        int drop = (int) Math.min(time / up - (taps - 1), buffered);
+        if (drop > 0) {
+            System.arraycopy(buffer, drop, buffer, 0, buffered - drop);
+            buffered -= drop;
+            time -= (long) drop * up;
+        }
+        return count - outputOffset;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            float[] grown = new float[Math.max(capacity, buffer.length * 2)];
+            System.arraycopy(buffer, 0, grown, 0, buffered);
+            buffer = grown;
+        }
+    }
+
+    // Blackman-windowed sinc split into up phases; each phase is stored oldest input first,
+    // so it lines up with a contiguous slice of the input buffer
+    private static float[][] designPhases(int up, int down, int tapsPerPhase) {
+        int length = up * tapsPerPhase;
+        double cutoff = CUTOFF * 0.5 / Math.max(up, down);
+        double centre = (length - 1) / 2.0;
+        float[][] phases = new float[up][tapsPerPhase];
+        for (int k = 0; k < length; k++) {
+            double x = k - centre;
+            double sinc = x == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * x) / (Math.PI * x);
+            double window = 0.42 - 0.5 * Math.cos(2 * Math.PI * k / (length - 1)) +
+                    0.08 * Math.cos(4 * Math.PI * k / (length - 1));
+            int phase = k % up;
+            int tap = k / up;
+            phases[phase][tapsPerPhase - 1 - tap] = (float) (sinc * window * up);
+        }
+        return phases;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,85 @@
+package se233.project1.controller;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.NoSuchFileException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// How often a failed job is tried again and how long it waits in between. An error is retried when something
+// in its cause chain is one of the retryable classes and nothing in it is one of the permanent ones.
+public class RetryPolicy {
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 500;
+    public static final double DEFAULT_MULTIPLIER = 2.0;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 10_000;
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final double multiplier;
+    private final long maxBackoffMillis;
+    private final List<Class<? extends Throwable>> retryable;
+    private final List<Class<? extends Throwable>> permanent;
+
+    // Transient I/O trouble is retried; a missing or unreadable file will not fix itself
+    public RetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MULTIPLIER, DEFAULT_MAX_BACKOFF_MILLIS,
+                List.of(IOException.class),
+                List.of(NoSuchFileException.class, AccessDeniedException.class, IllegalArgumentException.class));
+    }
+
+    public RetryPolicy(int maxAttempts, long initialBackoffMillis, double multiplier, long maxBackoffMillis,
+                       List<Class<? extends Throwable>> retryable, List<Class<? extends Throwable>> permanent) {
+        if (maxAttempts < 1 || initialBackoffMillis < 0 || multiplier < 1 || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("Invalid retry policy");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.multiplier = multiplier;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.retryable = List.copyOf(retryable);
+        this.permanent = List.copyOf(permanent);
+    }
+
+    public static RetryPolicy noRetries() {
+        return new RetryPolicy(1, 0, 1, 0, List.of(), List.of());
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public boolean shouldRetry(int failedAttempts, Throwable error) {
+        return failedAttempts < maxAttempts && isRetryable(error);
+    }
+
+    public boolean isRetryable(Throwable error) {
+        boolean matched = false;
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException || cause instanceof InterruptedIOException ||
+                    cause instanceof ClosedByInterruptException || isAny(cause, permanent)) {
+                return false;
+            }
+            matched |= isAny(cause, retryable);
+        }
+        return matched;
+    }
+
+    // Exponential growth with the upper half jittered, so jobs that failed together do not retry in lockstep
+    public long backoffMillis(int failedAttempts) {
+        double backoff = initialBackoffMillis * Math.pow(multiplier, Math.max(0, failedAttempts - 1));
+        long capped = (long) Math.min(backoff, maxBackoffMillis);
+        return capped / 2 + (capped > 1 ? ThreadLocalRandom.current().nextLong(capped - capped / 2) : 0);
+    }
+
+    private static boolean isAny(Throwable error, List<Class<? extends Throwable>> classes) {
+        for (Class<? extends Throwable> type : classes) {
+            if (type.isInstance(error)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,107 @@
+package se233.project1.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Splits one very long input into time segments that separate encoder invocations convert at the same time.
+// PCM WAV cuts land on sample frames of the data chunk; for compressed sources the encoder's -ss seek lands
+// on a frame boundary by itself, so only the start time and duration matter.
+public class SegmentPlanner {
+    public static final double DEFAULT_MIN_FILE_SECONDS = 20 * 60.0;
+    public static final double DEFAULT_MIN_SEGMENT_SECONDS = 120.0;
+    // How many times its share of the queue a file must cost before it is split
+    public static final double DEFAULT_DOMINANCE = 4.0;
+    private static final double MIN_BYTES_PER_SECOND = 1_000.0;
+
+    private final double minFileSeconds;
+    private final double minSegmentSeconds;
+    private final double dominance;
+
+    public SegmentPlanner() {
+        this(DEFAULT_MIN_FILE_SECONDS, DEFAULT_MIN_SEGMENT_SECONDS, DEFAULT_DOMINANCE);
+    }
+
+    public SegmentPlanner(double minFileSeconds, double minSegmentSeconds, double dominance) {
+        if (minFileSeconds <= 0 || minSegmentSeconds <= 0 || dominance <= 0) {
+            throw new IllegalArgumentException("Segmenting limits must be positive");
+        }
+        this.minFileSeconds = minFileSeconds;
+        this.minSegmentSeconds = minSegmentSeconds;
+        this.dominance = dominance;
+    }
+
+    // Decided from sizes before any header is read, taking the queue to share one bitrate: a file that is too
+    // small to last minFileSeconds even at 8 kbps, or that does not dominate the queue's bytes, is never probed
+    public boolean isCandidate(long bytes, long restOfQueueBytes, int workers) {
+        return workers > 1 && bytes >= minFileSeconds * MIN_BYTES_PER_SECOND &&
+                bytes > dominance * restOfQueueBytes / workers;
+    }
+
+    // A file is split when it would still be running long after the workers have drained the rest of the queue
+    public boolean shouldSplit(double seconds, double restOfQueueSeconds, int workers) {
+        return workers > 1 && seconds >= minFileSeconds && seconds >= 2 * minSegmentSeconds &&
+                seconds > dominance * restOfQueueSeconds / workers;
+    }
+
+    // Two segments per worker, so a worker that finishes its first segment early picks up another
+    // instead of leaving one slow segment as the new tail; never shorter than minSegmentSeconds
+    public List<Segment> plan(AudioProbe.AudioInfo source, long inputSize, int workers) {
+        double duration = source.getDurationSeconds();
+        int count = (int) Math.max(1, Math.min(2L * Math.max(1, workers), (long) (duration / minSegmentSeconds)));
+
+        boolean pcm = source.getCodec() != null && source.getCodec().startsWith("pcm_") &&
+                source.getDataLength() > 0 && source.getBitsPerSample() > 0;
+        long blockAlign = pcm ? (long) source.getChannels() * source.getBitsPerSample() / 8 : 1;
+        long frames = pcm ? source.getDataLength() / blockAlign : 0;
+
+        List<Segment> segments = new ArrayList<>(count);
+        long previousByte = 0;
+        double previousSeconds = 0;
+        for (int i = 1; i <= count; i++) {
+            long endByte;
+            double endSeconds;
+            if (i == count) {
+                endByte = inputSize;
+                endSeconds = duration;
+            } else if (pcm) {
+                long frame = frames * i / count;
+                endByte = source.getDataOffset() + frame * blockAlign;
+                endSeconds = (double) frame / source.getSampleRate();
+            } else {
+                endSeconds = duration * i / count;
+                endByte = (long) (inputSize * ((double) i / count));
+            }
+            segments.add(new Segment(i - 1, count, previousSeconds, endSeconds - previousSeconds, previousByte, endByte));
+            previousByte = endByte;
+            previousSeconds = endSeconds;
+        }
+        return segments;
+    }
+
+    // The first segment also carries the container header and the last one anything after the audio
+    public static class Segment {
+        private final int index;
+        private final int count;
+        private final double startSeconds;
+        private final double durationSeconds;
+        private final long startByte;
+        private final long endByte;
+
+        public Segment(int index, int count, double startSeconds, double durationSeconds, long startByte, long endByte) {
+            this.index = index;
+            this.count = count;
+            this.startSeconds = startSeconds;
+            this.durationSeconds = durationSeconds;
+            this.startByte = startByte;
+            this.endByte = endByte;
+        }
+
+        public int getIndex() { return index; }
+        public int getCount() { return count; }
+        public double getStartSeconds() { return startSeconds; }
+        public double getDurationSeconds() { return durationSeconds; }
+        public long getStartByte() { return startByte; }
+        public long getEndByte() { return endByte; }
+        public long getLength() { return endByte - startByte; }
+    }
+}
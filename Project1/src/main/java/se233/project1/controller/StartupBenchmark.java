@@ -0,0 +1,129 @@
+package se233.project1.controller;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+// Cold start to first frame: --benchmark-startup [runs] relaunches this JVM with the same options as a probe
+// that exits as soon as its window is shown, so every run pays for JVM boot, class loading and the UI build.
+// Run it once with the class-data-sharing archive in the options and once without to see what it saves.
+public class StartupBenchmark {
+    public static final String PROBE_ARGUMENT = "--startup-probe";
+    private static final String PROBE_PROPERTY = "se233.startup.probe";
+    private static final String RESULT_PREFIX = "STARTUP ";
+    private static final int DEFAULT_RUNS = 5;
+
+    private final int runs;
+
+    public StartupBenchmark(int runs) {
+        this.runs = runs > 0 ? runs : DEFAULT_RUNS;
+    }
+
+    // Set by the launcher in the probe process, before the UI starts
+    public static void markProbe() {
+        System.setProperty(PROBE_PROPERTY, "true");
+    }
+
+    public static boolean isProbe() {
+        return Boolean.getBoolean(PROBE_PROPERTY);
+    }
+
+    public static void report(Timing timing) {
+        System.out.println(RESULT_PREFIX + timing.processMillis + " " + timing.uiMillis);
+    }
+
+    public void run(PrintStream out, String[] ownArguments) throws Exception {
+        List<String> command = probeCommand(ownArguments);
+        if (command == null) {
+            out.println("Cannot read this JVM's command line on this platform; start the probe by hand with " +
+                    PROBE_ARGUMENT);
+            return;
+        }
+        boolean cds = command.stream().anyMatch(a -> a.startsWith("-XX:SharedArchiveFile"));
+        out.println("Class-data-sharing archive: " + (cds ? "in use" : "not configured"));
+        out.printf("%-6s %18s %14s%n", "run", "process to frame", "UI build");
+
+        long[] process = new long[runs];
+        long[] ui = new long[runs];
+        for (int run = 0; run < runs; run++) {
+            Process probe = new ProcessBuilder(command).redirectErrorStream(true).start();
+            String result = null;
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(probe.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith(RESULT_PREFIX)) {
+                        result = line.substring(RESULT_PREFIX.length());
+                    }
+                }
+            }
+            probe.waitFor();
+            if (result == null) {
+                out.println("Probe " + (run + 1) + " exited with " + probe.exitValue() + " without reporting");
+                return;
+            }
+            String[] fields = result.trim().split(" ");
+            process[run] = Long.parseLong(fields[0]);
+            ui[run] = Long.parseLong(fields[1]);
+            out.printf("%-6d %15d ms %11d ms%n", run + 1, process[run], ui[run]);
+        }
+        // The first run also warms the OS file cache, so the median is the figure to compare
+        out.printf("%-6s %15d ms %11d ms%n", "median", median(process), median(ui));
+    }
+
+    // Same executable and JVM options, with the benchmark's own arguments swapped for the probe flag
+    private static List<String> probeCommand(String[] ownArguments) {
+        ProcessHandle.Info info = ProcessHandle.current().info();
+        Optional<String> executable = info.command();
+        Optional<String[]> arguments = info.arguments();
+        if (executable.isEmpty() || arguments.isEmpty() || arguments.get().length < ownArguments.length) {
+            return null;
+        }
+        String[] all = arguments.get();
+        List<String> command = new ArrayList<>();
+        command.add(executable.get());
+        command.addAll(Arrays.asList(all).subList(0, all.length - ownArguments.length));
+        command.add(PROBE_ARGUMENT);
+        return command;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    // From process start, which includes JVM boot, and from Application.start alone
+    public static class Timing {
+        private final long processMillis;
+        private final long uiMillis;
+
+        private Timing(long processMillis, long uiMillis) {
+            this.processMillis = processMillis;
+            this.uiMillis = uiMillis;
+        }
+
+        public static Timing since(long startNanos) {
+            long uiMillis = (System.nanoTime() - startNanos) / 1_000_000;
+            long processMillis = ProcessHandle.current().info().startInstant()
+                    .map(start -> Duration.between(start, Instant.now()).toMillis())
+                    .orElse(-1L);
+            return new Timing(processMillis, uiMillis);
+        }
+
+        public long getProcessMillis() { return processMillis; }
+        public long getUiMillis() { return uiMillis; }
+
+        @Override
+        public String toString() {
+            return (processMillis >= 0 ? processMillis + " ms from process start, " : "") + uiMillis + " ms building the UI";
+        }
+    }
+}
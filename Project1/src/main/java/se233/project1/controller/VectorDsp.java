@@ -0,0 +1,95 @@
+package se233.project1.controller;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+// SIMD kernels behind AudioDsp; only loaded once AudioDsp has seen the incubator module in the boot layer
+final class VectorDsp {
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    // Same lane count as FLOATS, so one short vector widens into exactly one float vector
+    private static final VectorSpecies<Short> SHORTS =
+            VectorSpecies.of(short.class, VectorShape.forBitSize(FLOATS.length() * Short.SIZE));
+    // Gather offsets for up to 8 interleaved channels
+    private static final int[][] STRIDES = new int[9][];
+
+    static {
+        for (int channels = 1; channels < STRIDES.length; channels++) {
+            STRIDES[channels] = new int[FLOATS.length()];
+            for (int lane = 0; lane < FLOATS.length(); lane++) {
+                STRIDES[channels][lane] = lane * channels;
+            }
+        }
+    }
+
+    private VectorDsp() {
+    }
+
+    // Narrow vectors (e.g. 64-bit) would lose to the scalar loops once loop overhead is counted
+    static boolean isWorthwhile() {
+        return FLOATS.length() >= 4;
+    }
+
+    static void toFloat(short[] in, float[] out, int count) {
+        int i = 0;
+        for (int bound = FLOATS.loopBound(count); i < bound; i += FLOATS.length()) {
+            ((FloatVector) ShortVector.fromArray(SHORTS, in, i).convertShape(VectorOperators.S2F, FLOATS, 0))
+                    .mul(1.0f / 32768.0f)
+                    .intoArray(out, i);
+        }
+        AudioDsp.Scalar.toFloat(in, out, i, count);
+    }
+
+    static void toShort(float[] in, short[] out, int count) {
+        int i = 0;
+        for (int bound = FLOATS.loopBound(count); i < bound; i += FLOATS.length()) {
+            ((ShortVector) FloatVector.fromArray(FLOATS, in, i)
+                    .max(-1.0f).min(1.0f).mul(32767.0f)
+                    .convertShape(VectorOperators.F2S, SHORTS, 0))
+                    .intoArray(out, i);
+        }
+        AudioDsp.Scalar.toShort(in, out, i, count);
+    }
+
+    static void downmix(float[] interleaved, int channels, float[] mono, int frames) {
+        if (channels >= STRIDES.length) {
+            AudioDsp.Scalar.downmix(interleaved, channels, mono, 0, frames);
+            return;
+        }
+        int[] stride = STRIDES[channels];
+        float scale = 1.0f / channels;
+        int frame = 0;
+        for (int bound = FLOATS.loopBound(frames); frame < bound; frame += FLOATS.length()) {
+            int base = frame * channels;
+            FloatVector sum = FloatVector.fromArray(FLOATS, interleaved, base, stride, 0);
+            for (int c = 1; c < channels; c++) {
+                sum = sum.add(FloatVector.fromArray(FLOATS, interleaved, base + c, stride, 0));
+            }
+            sum.mul(scale).intoArray(mono, frame);
+        }
+        AudioDsp.Scalar.downmix(interleaved, channels, mono, frame, frames);
+    }
+
+    static void scale(float[] samples, int count, float gain) {
+        int i = 0;
+        for (int bound = FLOATS.loopBound(count); i < bound; i += FLOATS.length()) {
+            FloatVector.fromArray(FLOATS, samples, i).mul(gain).intoArray(samples, i);
+        }
+        AudioDsp.Scalar.scale(samples, i, count, gain);
+    }
+
+    static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector acc = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            acc = FloatVector.fromArray(FLOATS, a, aOffset + i).fma(FloatVector.fromArray(FLOATS, b, bOffset + i), acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+}
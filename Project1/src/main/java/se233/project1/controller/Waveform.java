@@ -0,0 +1,176 @@
+package se233.project1.controller;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+// Min/max peaks of a file at several levels of detail: FINEST_BLOCKS blocks, then each level halves the one
+// before it down to COARSEST_BLOCKS. Peaks are kept as the top 8 bits of the 16-bit samples, which is all a
+// thumbnail can show, and only the finest level is stored; the others are rebuilt from it.
+public class Waveform {
+    public static final int FINEST_BLOCKS = 1024;
+    public static final int COARSEST_BLOCKS = 32;
+    // Three or more consecutive full-scale samples on one channel count as a clipped run
+    private static final int CLIP_RUN = 3;
+    // -60 dBFS
+    private static final int SILENCE_PEAK = 33;
+    private static final int MAGIC = 0x57564631; // "WVF1"
+
+    private final long frames;
+    private final int peak;
+    private final long clippedRuns;
+    private final byte[][] minima;
+    private final byte[][] maxima;
+
+    private Waveform(long frames, int peak, long clippedRuns, byte[] finestMinima, byte[] finestMaxima) {
+        this.frames = frames;
+        this.peak = peak;
+        this.clippedRuns = clippedRuns;
+        int levels = Integer.numberOfTrailingZeros(FINEST_BLOCKS / COARSEST_BLOCKS) + 1;
+        this.minima = new byte[levels][];
+        this.maxima = new byte[levels][];
+        minima[0] = finestMinima;
+        maxima[0] = finestMaxima;
+        for (int level = 1; level < levels; level++) {
+            int blocks = minima[level - 1].length / 2;
+            minima[level] = new byte[blocks];
+            maxima[level] = new byte[blocks];
+            for (int i = 0; i < blocks; i++) {
+                minima[level][i] = (byte) Math.min(minima[level - 1][2 * i], minima[level - 1][2 * i + 1]);
+                maxima[level][i] = (byte) Math.max(maxima[level - 1][2 * i], maxima[level - 1][2 * i + 1]);
+            }
+        }
+    }
+
+    // One streaming pass over the data chunk; null for sources that are not 16-bit PCM WAV
+    public static Waveform summarise(File file) throws IOException {
+        AudioProbe.AudioInfo source = AudioProbe.probe(file);
+        if (!"pcm_s16le".equals(source.getCodec()) || source.getChannels() < 1) {
+            return null;
+        }
+        int channels = source.getChannels();
+        long frames = source.getDataLength() / (2L * channels);
+        byte[] minima = new byte[FINEST_BLOCKS];
+        byte[] maxima = new byte[FINEST_BLOCKS];
+        int[] run = new int[channels];
+        int peak = 0;
+        long clippedRuns = 0;
+
+        try (FileChannel input = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(256 * 1024 / (2 * channels) * (2 * channels))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            long position = source.getDataOffset();
+            long frame = 0;
+            int block = -1;
+            int low = 0;
+            int high = 0;
+            while (frame < frames) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), (frames - frame) * 2 * channels));
+                int read = input.read(buffer, position);
+                if (read < 2 * channels) {
+                    break;
+                }
+                position += read - read % (2 * channels);
+                buffer.flip();
+                while (buffer.remaining() >= 2 * channels) {
+                    int frameBlock = (int) (frame * FINEST_BLOCKS / frames);
+                    if (frameBlock != block) {
+                        if (block >= 0) {
+                            minima[block] = (byte) (low >> 8);
+                            maxima[block] = (byte) (high >> 8);
+                        }
+                        block = frameBlock;
+                        low = Short.MAX_VALUE;
+                        high = Short.MIN_VALUE;
+                    }
+                    for (int c = 0; c < channels; c++) {
+                        short sample = buffer.getShort();
+                        low = Math.min(low, sample);
+                        high = Math.max(high, sample);
+                        peak = Math.max(peak, Math.abs((int) sample));
+                        if (sample == Short.MAX_VALUE || sample == Short.MIN_VALUE) {
+                            if (++run[c] == CLIP_RUN) {
+                                clippedRuns++;
+                            }
+                        } else {
+                            run[c] = 0;
+                        }
+                    }
+                    frame++;
+                }
+            }
+            if (block >= 0) {
+                minima[block] = (byte) (low >> 8);
+                maxima[block] = (byte) (high >> 8);
+            }
+            frames = frame;
+        }
+        return new Waveform(frames, peak, clippedRuns, minima, maxima);
+    }
+
+    public long getFrames() { return frames; }
+    public long getClippedRuns() { return clippedRuns; }
+
+    public boolean isSilent() {
+        return peak < SILENCE_PEAK;
+    }
+
+    public boolean isClipped() {
+        return clippedRuns > 0;
+    }
+
+    // Peak of the loudest sample in dBFS
+    public double getPeakDb() {
+        return peak == 0 ? Double.NEGATIVE_INFINITY : 20 * Math.log10(peak / 32768.0);
+    }
+
+    // The coarsest level that still has at least one block per pixel of the given width
+    public int levelFor(int width) {
+        int level = minima.length - 1;
+        while (level > 0 && minima[level].length < width) {
+            level--;
+        }
+        return level;
+    }
+
+    public int getBlocks(int level) {
+        return minima[level].length;
+    }
+
+    // In [-1, 1)
+    public float getMinimum(int level, int block) {
+        return minima[level][block] / 128.0f;
+    }
+
+    public float getMaximum(int level, int block) {
+        return maxima[level][block] / 128.0f;
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeLong(frames);
+        out.writeInt(peak);
+        out.writeLong(clippedRuns);
+        out.write(minima[0]);
+        out.write(maxima[0]);
+    }
+
+    public static Waveform read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a waveform summary");
+        }
+        long frames = in.readLong();
+        int peak = in.readInt();
+        long clippedRuns = in.readLong();
+        byte[] minima = new byte[FINEST_BLOCKS];
+        byte[] maxima = new byte[FINEST_BLOCKS];
+        in.readFully(minima);
+        in.readFully(maxima);
+        return new Waveform(frames, peak, clippedRuns, minima, maxima);
+    }
+}
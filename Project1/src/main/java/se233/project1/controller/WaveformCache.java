@@ -0,0 +1,73 @@
+package se233.project1.controller;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// One small file per summarised input (about 2 KB), named after a hash of its path, size and modification
+// time, so an edited or replaced input simply misses and stale entries are never read
+public class WaveformCache {
+    private final File directory;
+
+    public WaveformCache() {
+        this(defaultDirectory());
+    }
+
+    public WaveformCache(File directory) {
+        this.directory = directory;
+    }
+
+    // Next to the loudness cache
+    public static File defaultDirectory() {
+        return new File(LoudnessCache.defaultFile().getParentFile(), "waveforms");
+    }
+
+    // Null on a miss or an unreadable entry
+    public Waveform load(File input) {
+        File entry = entryFor(input);
+        if (!entry.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry.toPath())))) {
+            return Waveform.read(in);
+        } catch (IOException e) {
+            entry.delete();
+            return null;
+        }
+    }
+
+    // Written to a temporary file and moved into place, so a reader never sees half an entry
+    public void store(File input, Waveform waveform) throws IOException {
+        Files.createDirectories(directory.toPath());
+        Path entry = entryFor(input).toPath();
+        Path temp = Files.createTempFile(directory.toPath(), ".wave", ".part");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                waveform.write(out);
+            }
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private File entryFor(File input) {
+        String key = input.getAbsolutePath() + "|" + input.length() + "|" + input.lastModified();
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return new File(directory, HexFormat.of().formatHex(hash, 0, 16) + ".wvf");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package se233.project1.controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.function.Consumer;
+
+// Summarises inputs for the file list on one low-priority daemon thread, so at most one core is ever spent on
+// thumbnails. Requests are served newest first: the rows on screen now win over rows that scrolled past,
+// and a row that is reused for another file withdraws its old request before it runs.
+public class WaveformService {
+    private static final int MEMORY_ENTRIES = 256;
+
+    private final WaveformCache cache;
+    private final LinkedBlockingDeque<Request> queue = new LinkedBlockingDeque<>();
+    // Empty for inputs that cannot be summarised, so they are not probed again
+    private final Map<String, Optional<Waveform>> memory = new LinkedHashMap<>(MEMORY_ENTRIES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Optional<Waveform>> eldest) {
+            return size() > MEMORY_ENTRIES;
+        }
+    };
+    private final Thread worker;
+
+    public WaveformService() {
+        this(new WaveformCache());
+    }
+
+    public WaveformService(WaveformCache cache) {
+        this.cache = cache;
+        this.worker = new Thread(this::serve, "waveform-summariser");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+    }
+
+    // onReady runs on the summariser thread, or right away when the summary is already in memory;
+    // it receives null for inputs that have no waveform, e.g. compressed formats
+    public Request request(File input, Consumer<Waveform> onReady) {
+        Request request = new Request(input, onReady);
+        Optional<Waveform> known;
+        synchronized (memory) {
+            known = memory.get(keyFor(input));
+        }
+        if (known != null) {
+            onReady.accept(known.orElse(null));
+        } else {
+            queue.offerFirst(request);
+        }
+        return request;
+    }
+
+    public void shutdown() {
+        worker.interrupt();
+    }
+
+    private void serve() {
+        try {
+            while (true) {
+                Request request = queue.takeFirst();
+                if (request.cancelled) {
+                    continue;
+                }
+                Waveform waveform = summarise(request.input);
+                if (!request.cancelled) {
+                    request.onReady.accept(waveform);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Waveform summarise(File input) {
+        String key = keyFor(input);
+        synchronized (memory) {
+            Optional<Waveform> known = memory.get(key);
+            if (known != null) {
+                return known.orElse(null);
+            }
+        }
+        Waveform waveform = cache.load(input);
+        if (waveform == null) {
+            try {
+                waveform = Waveform.summarise(input);
+                if (waveform != null) {
+                    cache.store(input, waveform);
+                }
+            } catch (IOException e) {
+                // Shown without a waveform; a later request tries again
+                return null;
+            }
+        }
+        synchronized (memory) {
+            memory.put(key, Optional.ofNullable(waveform));
+        }
+        return waveform;
+    }
+
+    private static String keyFor(File input) {
+        return input.getAbsolutePath() + "|" + input.length() + "|" + input.lastModified();
+    }
+
+    public class Request {
+        private final File input;
+        private final Consumer<Waveform> onReady;
+        private volatile boolean cancelled;
+
+        private Request(File input, Consumer<Waveform> onReady) {
+            this.input = input;
+            this.onReady = onReady;
+        }
+
+        public void cancel() {
+            cancelled = true;
+            queue.remove(this);
+        }
+    }
+}
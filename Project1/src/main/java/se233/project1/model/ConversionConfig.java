@@ -5,10 +5,15 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 public class ConversionConfig {
     private List<FileConversionSettings> fileSettings;
     private Map<File, FileConversionSettings> settingsMap;
+    private final FileIndex index = new FileIndex();
+
+    // Where a file stands in the current session; set by the conversion engine
+    public enum FileStatus { PENDING, CONVERTING, CONVERTED, FAILED, SKIPPED }
 
     public ConversionConfig() {
         this.fileSettings = new ArrayList<>();
@@ -28,8 +33,7 @@ public class ConversionConfig {
             throw new IllegalArgumentException("Input files list cannot be null");
         }
 
-        fileSettings.clear();
-        settingsMap.clear();
+        clearInputFiles();
 
         for (File file : inputFiles) {
             addInputFile(file);
@@ -49,21 +53,60 @@ public class ConversionConfig {
             return; // Don't add duplicates
         }
 
-        FileConversionSettings settings = new FileConversionSettings(file);
+        track(new FileConversionSettings(file));
+    }
+
+    // An archive member is addressed as <archive>/<entry>; it is read from the archive and never extracted
+    public void addArchiveEntry(File archiveFile, String entryName, long entrySize) {
+        if (archiveFile == null || !archiveFile.isFile()) {
+            throw new IllegalArgumentException("Archive file does not exist");
+        }
+        if (entryName == null || entryName.isEmpty()) {
+            throw new IllegalArgumentException("Archive entry name cannot be empty");
+        }
+
+        FileConversionSettings settings = new FileConversionSettings(archiveFile, entryName, entrySize);
+        if (settingsMap.containsKey(settings.getInputFile())) {
+            return;
+        }
+        track(settings);
+    }
+
+    private void track(FileConversionSettings settings) {
         fileSettings.add(settings);
-        settingsMap.put(file, settings);
+        settingsMap.put(settings.getInputFile(), settings);
+        settings.index = index;
+        index.add(settings);
+    }
+
+    // For settings restored from a saved batch: the input is not checked here, a missing file fails its own job
+    public boolean addSettings(FileConversionSettings settings) {
+        if (settings == null) {
+            throw new IllegalArgumentException("Settings cannot be null");
+        }
+        if (settingsMap.containsKey(settings.getInputFile())) {
+            return false;
+        }
+        track(settings);
+        return true;
     }
 
     public void removeInputFile(File file) {
         FileConversionSettings settings = settingsMap.remove(file);
         if (settings != null) {
             fileSettings.remove(settings);
+            index.remove(settings);
+            settings.index = null;
         }
     }
 
     public void clearInputFiles() {
+        for (FileConversionSettings settings : fileSettings) {
+            settings.index = null;
+        }
         fileSettings.clear();
         settingsMap.clear();
+        index.clear();
     }
 
     public int getInputFileCount() {
@@ -78,6 +121,11 @@ public class ConversionConfig {
         return new ArrayList<>(fileSettings);
     }
 
+    // Answered from indexes kept up to date on every change, never by scanning all settings
+    public List<FileConversionSettings> query(FileQuery query) {
+        return index.query(query);
+    }
+
     public FileConversionSettings getSettingsForFile(File file) {
         return settingsMap.get(file);
     }
@@ -101,6 +149,17 @@ public class ConversionConfig {
         private String sampleRate;
         private String channels;
         private String bitrate;
+        private List<OutputTarget> extraTargets;
+        private File archiveFile;
+        private String archiveEntry;
+        private long archiveEntrySize;
+        private Double targetLufs;
+        private volatile FileStatus status = FileStatus.PENDING;
+        // Set by a DuplicateFinder; the modification time it saw keeps a later edit from matching old copies
+        private volatile String contentKey;
+        private volatile long contentModified;
+        // The index of the config holding these settings, told about changes to indexed values
+        private volatile FileIndex index;
 
         public FileConversionSettings(File inputFile) {
             this.inputFile = inputFile;
@@ -109,16 +168,38 @@ public class ConversionConfig {
             this.sampleRate = "44100 Hz";
             this.channels = "Stereo";
             this.bitrate = "192 kbps";
+            this.extraTargets = new ArrayList<>();
+        }
+
+        public FileConversionSettings(File archiveFile, String archiveEntry, long archiveEntrySize) {
+            this(new File(archiveFile, archiveEntry));
+            this.archiveFile = archiveFile;
+            this.archiveEntry = archiveEntry;
+            this.archiveEntrySize = archiveEntrySize;
         }
 
         public File getInputFile() { return inputFile; }
 
+        public boolean isArchiveEntry() { return archiveFile != null; }
+        public File getArchiveFile() { return archiveFile; }
+        public String getArchiveEntry() { return archiveEntry; }
+
+        public long getInputSize() {
+            return isArchiveEntry() ? archiveEntrySize : inputFile.length();
+        }
+
+        // Plain path, or <archive>!/<entry> for archive members
+        public String getSourceLocation() {
+            return isArchiveEntry() ? archiveFile.getAbsolutePath() + "!/" + archiveEntry : inputFile.getAbsolutePath();
+        }
+
         public String getOutputFormat() { return outputFormat; }
         public void setOutputFormat(String outputFormat) {
             if (outputFormat == null || outputFormat.trim().isEmpty()) {
                 throw new IllegalArgumentException("Output format cannot be null or empty");
             }
             this.outputFormat = outputFormat.toLowerCase().trim();
+            reindex();
         }
 
         public String getQuality() { return quality; }
@@ -145,9 +226,74 @@ public class ConversionConfig {
             this.channels = channels.trim();
         }
 
+        // Integrated loudness every output is normalised to, or null to keep the source level
+        public Double getTargetLufs() { return targetLufs; }
+        public void setTargetLufs(Double targetLufs) {
+            if (targetLufs != null && (targetLufs < -70 || targetLufs > -5)) {
+                throw new IllegalArgumentException("Target loudness must be between -70 and -5 LUFS");
+            }
+            this.targetLufs = targetLufs;
+        }
+
+        public FileStatus getStatus() { return status; }
+        public void setStatus(FileStatus status) {
+            if (status == null) {
+                throw new IllegalArgumentException("Status cannot be null");
+            }
+            this.status = status;
+            reindex();
+        }
+
+        private void reindex() {
+            FileIndex current = index;
+            if (current != null) {
+                current.update(this);
+            }
+        }
+
+        // Equal for inputs with byte-identical content, null when no copy is known or the file changed since
+        public String getContentKey() {
+            String key = contentKey;
+            return key != null && inputFile.lastModified() == contentModified ? key : null;
+        }
+
+        public void setContentKey(String contentKey) {
+            this.contentModified = inputFile.lastModified();
+            this.contentKey = contentKey;
+        }
+
         public String getBitrate() { return bitrate; }
         public void setBitrate(String bitrate) { this.bitrate = bitrate; }
 
+        // Additional outputs produced from the same decode pass as the primary settings above
+        public boolean addOutputTarget(String outputFormat, String quality, String sampleRate, String channels) {
+            OutputTarget target = new OutputTarget(outputFormat, quality, sampleRate, channels);
+            if (getOutputTargets().contains(target)) {
+                return false;
+            }
+            extraTargets.add(target);
+            return true;
+        }
+
+        public void removeOutputTarget(OutputTarget target) {
+            extraTargets.remove(target);
+        }
+
+        public void clearExtraOutputTargets() {
+            extraTargets.clear();
+        }
+
+        public List<OutputTarget> getExtraOutputTargets() {
+            return new ArrayList<>(extraTargets);
+        }
+
+        public List<OutputTarget> getOutputTargets() {
+            List<OutputTarget> targets = new ArrayList<>(extraTargets.size() + 1);
+            targets.add(new OutputTarget(outputFormat, quality, sampleRate, channels));
+            targets.addAll(extraTargets);
+            return targets;
+        }
+
         public String getChannelsAsNumber() {
             return "Mono".equals(channels) ? "1" : "2";
         }
@@ -162,4 +308,63 @@ public class ConversionConfig {
                     inputFile.getName(), outputFormat, quality, sampleRate, channels);
         }
     }
+
+    // One requested output of a file: format, quality, sample rate and channels
+    public static class OutputTarget {
+        private final String outputFormat;
+        private final String quality;
+        private final String sampleRate;
+        private final String channels;
+
+        public OutputTarget(String outputFormat, String quality, String sampleRate, String channels) {
+            if (outputFormat == null || outputFormat.trim().isEmpty()) {
+                throw new IllegalArgumentException("Output format cannot be null or empty");
+            }
+            if (quality == null || quality.trim().isEmpty()) {
+                throw new IllegalArgumentException("Quality cannot be null or empty");
+            }
+            if (sampleRate == null || sampleRate.trim().isEmpty()) {
+                throw new IllegalArgumentException("Sample rate cannot be null or empty");
+            }
+            if (channels == null || channels.trim().isEmpty()) {
+                throw new IllegalArgumentException("Channels cannot be null or empty");
+            }
+            this.outputFormat = outputFormat.toLowerCase().trim();
+            this.quality = quality.trim();
+            this.sampleRate = sampleRate.trim();
+            this.channels = channels.trim();
+        }
+
+        public String getOutputFormat() { return outputFormat; }
+        public String getQuality() { return quality; }
+        public String getSampleRate() { return sampleRate; }
+        public String getChannels() { return channels; }
+
+        public String getChannelsAsNumber() {
+            return "Mono".equals(channels) ? "1" : "2";
+        }
+
+        public String getSampleRateAsNumber() {
+            return sampleRate.split(" ")[0];
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof OutputTarget)) return false;
+            OutputTarget other = (OutputTarget) o;
+            return outputFormat.equals(other.outputFormat) && quality.equals(other.quality) &&
+                    sampleRate.equals(other.sampleRate) && channels.equals(other.channels);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(outputFormat, quality, sampleRate, channels);
+        }
+
+        @Override
+        public String toString() {
+            return outputFormat.toUpperCase() + " " + quality + ", " + sampleRate + ", " + channels;
+        }
+    }
 }
@@ -0,0 +1,263 @@
+package se233.project1.model;
+
+import se233.project1.model.ConversionConfig.FileConversionSettings;
+import se233.project1.model.ConversionConfig.FileStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Secondary indexes over the settings of one ConversionConfig, kept up to date on every add, remove and
+// settings change, so a query touches only the entries of its most selective criterion instead of the whole list.
+// Sizes and names sit in sorted sets, which serve size ranges and name prefixes and hand out results already
+// in order when a query sorts by them; the primary map keeps the order files were added in.
+class FileIndex {
+    // Settings do not override equals, so this is keyed by identity like every bucket below
+    private final LinkedHashMap<FileConversionSettings, Entry> entries = new LinkedHashMap<>();
+    private final Map<String, Set<Entry>> byInputFormat = new HashMap<>();
+    private final Map<String, Set<Entry>> byTargetFormat = new HashMap<>();
+    private final Map<FileStatus, Set<Entry>> byStatus = new EnumMap<>(FileStatus.class);
+    // Ties are broken by the order of adding, so every entry has its own place and needs no bucket
+    private final NavigableSet<Entry> bySize = new TreeSet<>(Comparator.<Entry>comparingLong(e -> e.size)
+            .thenComparingLong(e -> e.sequence));
+    private final NavigableSet<Entry> byName = new TreeSet<>(Comparator.<Entry, String>comparing(e -> e.name)
+            .thenComparingLong(e -> e.sequence));
+    private long nextSequence;
+
+    synchronized void add(FileConversionSettings settings) {
+        if (!entries.containsKey(settings)) {
+            Entry entry = new Entry(settings, nextSequence++, settings.getInputSize());
+            entries.put(settings, entry);
+            insert(entry);
+        }
+    }
+
+    synchronized void remove(FileConversionSettings settings) {
+        Entry entry = entries.remove(settings);
+        if (entry != null) {
+            delete(entry);
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        byInputFormat.clear();
+        byTargetFormat.clear();
+        byStatus.clear();
+        bySize.clear();
+        byName.clear();
+    }
+
+    // Called after an indexed setting changed; the entry moves between buckets only if one of its keys moved.
+    // The input itself does not change with its settings, so the size is carried over rather than read again.
+    synchronized void update(FileConversionSettings settings) {
+        Entry old = entries.get(settings);
+        if (old == null) {
+            return;
+        }
+        Entry entry = new Entry(settings, old.sequence, old.size);
+        if (!entry.sameKeys(old)) {
+            delete(old);
+            entries.put(settings, entry);
+            insert(entry);
+        }
+    }
+
+    synchronized List<FileConversionSettings> query(FileQuery query) {
+        Collection<Entry> candidates = null;
+        if (query.getInputFormat() != null) {
+            candidates = smaller(candidates, bucket(byInputFormat, query.getInputFormat()));
+        }
+        if (query.getTargetFormat() != null) {
+            candidates = smaller(candidates, bucket(byTargetFormat, query.getTargetFormat()));
+        }
+        if (query.getStatus() != null) {
+            candidates = smaller(candidates, bucket(byStatus, query.getStatus()));
+        }
+        if (query.getNamePrefix() != null && query.getSortKey() != FileQuery.SortKey.NAME && isLarge(candidates)) {
+            candidates = smaller(candidates, new ArrayList<>(nameRange(query)));
+        }
+
+        // A small candidate set is filtered and sorted. Otherwise an index that is already in the requested
+        // order is walked, which never sorts and tests each entry once.
+        List<FileConversionSettings> result = new ArrayList<>();
+        boolean descending = query.isDescending();
+        switch (query.getSortKey()) {
+            case ADDED -> {
+                if (isLarge(candidates)) {
+                    collect(descending ? entries.sequencedValues().reversed() : entries.sequencedValues(), query, result);
+                    return result;
+                }
+            }
+            case SIZE -> {
+                if (isLarge(candidates)) {
+                    collect(descending ? sizeRange(query).descendingSet() : sizeRange(query), query, result);
+                    return result;
+                }
+            }
+            case NAME -> {
+                if (isLarge(candidates)) {
+                    collect(descending ? nameRange(query).descendingSet() : nameRange(query), query, result);
+                    return result;
+                }
+            }
+            default -> {
+                if (candidates == null) {
+                    candidates = entries.values();
+                }
+            }
+        }
+
+        List<Entry> matching = new ArrayList<>();
+        for (Entry entry : candidates) {
+            if (entry.matches(query)) {
+                matching.add(entry);
+            }
+        }
+        matching.sort(comparator(query));
+        for (Entry entry : matching) {
+            result.add(entry.settings);
+        }
+        return result;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    // Walking a sorted index costs about as much as sorting a quarter of it, so half is where they meet.
+    // Null stands for everything.
+    private boolean isLarge(Collection<Entry> candidates) {
+        return candidates == null || candidates.size() > entries.size() / 2;
+    }
+
+    private NavigableSet<Entry> sizeRange(FileQuery query) {
+        if (query.getMinSize() > query.getMaxSize()) {
+            return Collections.emptyNavigableSet();
+        }
+        return bySize.subSet(Entry.probe(query.getMinSize(), null, Long.MIN_VALUE), true,
+                Entry.probe(query.getMaxSize(), null, Long.MAX_VALUE), true);
+    }
+
+    private NavigableSet<Entry> nameRange(FileQuery query) {
+        String prefix = query.getNamePrefix();
+        return prefix == null ? byName : byName.subSet(Entry.probe(0, prefix, Long.MIN_VALUE), true,
+                Entry.probe(0, prefix + Character.MAX_VALUE, Long.MIN_VALUE), false);
+    }
+
+    private static void collect(Collection<Entry> entries, FileQuery query, List<FileConversionSettings> result) {
+        for (Entry entry : entries) {
+            if (entry.matches(query)) {
+                result.add(entry.settings);
+            }
+        }
+    }
+
+    private static <K> Collection<Entry> bucket(Map<K, Set<Entry>> index, K key) {
+        Collection<Entry> bucket = index.get(key);
+        return bucket != null ? bucket : List.of();
+    }
+
+    private static Collection<Entry> smaller(Collection<Entry> current, Collection<Entry> candidate) {
+        return current == null || candidate.size() < current.size() ? candidate : current;
+    }
+
+    private static Comparator<Entry> comparator(FileQuery query) {
+        Comparator<Entry> order = switch (query.getSortKey()) {
+            case NAME -> Comparator.comparing(e -> e.name);
+            case SIZE -> Comparator.comparingLong(e -> e.size);
+            case INPUT_FORMAT -> Comparator.comparing(e -> e.inputFormat);
+            case TARGET_FORMAT -> Comparator.comparing(e -> e.targetFormat);
+            case STATUS -> Comparator.comparing(e -> e.status);
+            case ADDED -> Comparator.comparingLong(e -> e.sequence);
+        };
+        // Ties keep the order the files were added in
+        order = order.thenComparingLong(e -> e.sequence);
+        return query.isDescending() ? order.reversed() : order;
+    }
+
+    private void insert(Entry entry) {
+        byInputFormat.computeIfAbsent(entry.inputFormat, k -> new LinkedHashSet<>()).add(entry);
+        byTargetFormat.computeIfAbsent(entry.targetFormat, k -> new LinkedHashSet<>()).add(entry);
+        byStatus.computeIfAbsent(entry.status, k -> new LinkedHashSet<>()).add(entry);
+        bySize.add(entry);
+        byName.add(entry);
+    }
+
+    private void delete(Entry entry) {
+        removeFrom(byInputFormat, entry.inputFormat, entry);
+        removeFrom(byTargetFormat, entry.targetFormat, entry);
+        removeFrom(byStatus, entry.status, entry);
+        bySize.remove(entry);
+        byName.remove(entry);
+    }
+
+    private static <K> void removeFrom(Map<K, Set<Entry>> index, K key, Entry entry) {
+        Set<Entry> bucket = index.get(key);
+        if (bucket != null && bucket.remove(entry) && bucket.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    // The values one settings object is filed under, kept so a change can be taken out of its old buckets.
+    // Buckets hold entries rather than settings, so filtering and sorting never look anything up.
+    private static class Entry {
+        private final FileConversionSettings settings;
+        private final long sequence;
+        private final String inputFormat;
+        private final String targetFormat;
+        private final FileStatus status;
+        private final long size;
+        private final String name;
+
+        private Entry(long size, String name, long sequence) {
+            this.settings = null;
+            this.sequence = sequence;
+            this.inputFormat = null;
+            this.targetFormat = null;
+            this.status = null;
+            this.size = size;
+            this.name = name;
+        }
+
+        // A bound for range lookups in the sorted sets
+        private static Entry probe(long size, String name, long sequence) {
+            return new Entry(size, name, sequence);
+        }
+
+        private Entry(FileConversionSettings settings, long sequence, long size) {
+            this.settings = settings;
+            this.sequence = sequence;
+            String fileName = settings.getInputFile().getName().toLowerCase();
+            int dot = fileName.lastIndexOf('.');
+            this.inputFormat = dot > 0 ? fileName.substring(dot + 1) : "";
+            this.targetFormat = settings.getOutputFormat();
+            this.status = settings.getStatus();
+            this.size = size;
+            this.name = fileName;
+        }
+
+        private boolean sameKeys(Entry other) {
+            return inputFormat.equals(other.inputFormat) && targetFormat.equals(other.targetFormat) &&
+                    status == other.status && size == other.size && name.equals(other.name);
+        }
+
+        private boolean matches(FileQuery query) {
+            return (query.getInputFormat() == null || query.getInputFormat().equals(inputFormat)) &&
+                    (query.getTargetFormat() == null || query.getTargetFormat().equals(targetFormat)) &&
+                    (query.getStatus() == null || query.getStatus() == status) &&
+                    size >= query.getMinSize() && size <= query.getMaxSize() &&
+                    (query.getNamePrefix() == null || name.startsWith(query.getNamePrefix()));
+        }
+    }
+}
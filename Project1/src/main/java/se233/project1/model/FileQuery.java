@@ -0,0 +1,132 @@
+package se233.project1.model;
+
+import se233.project1.model.ConversionConfig.FileStatus;
+
+import java.util.Locale;
+
+// Filter and order for ConversionConfig.query. Unset criteria match everything.
+public class FileQuery {
+    public enum SortKey { ADDED, NAME, SIZE, INPUT_FORMAT, TARGET_FORMAT, STATUS }
+
+    private String inputFormat;
+    private String targetFormat;
+    private FileStatus status;
+    private long minSize;
+    private long maxSize = Long.MAX_VALUE;
+    private String namePrefix;
+    private SortKey sortKey = SortKey.ADDED;
+    private boolean descending;
+
+    /*
+     * The search box syntax; terms combine with AND and anything else is the start of the file name:
+     *
+     *   in:m4a  to:wav  status:failed  >50mb  <2gb  >=700kb
+     *
+     * An unreadable term is taken as part of the name rather than rejected, so typing never raises an error.
+     */
+    public static FileQuery parse(String text) {
+        FileQuery query = new FileQuery();
+        StringBuilder name = new StringBuilder();
+        for (String term : text.trim().toLowerCase(Locale.ROOT).split("\\s+")) {
+            if (term.isEmpty() || !query.applyTerm(term)) {
+                name.append(name.length() > 0 ? " " : "").append(term);
+            }
+        }
+        return name.length() > 0 ? query.namePrefix(name.toString()) : query;
+    }
+
+    private boolean applyTerm(String term) {
+        if (term.startsWith("in:") && term.length() > 3) {
+            inputFormat(term.substring(3));
+        } else if (term.startsWith("to:") && term.length() > 3) {
+            targetFormat(term.substring(3));
+        } else if (term.startsWith("status:")) {
+            String value = term.substring(7);
+            for (FileStatus candidate : FileStatus.values()) {
+                if (!value.isEmpty() && candidate.name().toLowerCase(Locale.ROOT).startsWith(value)) {
+                    status(candidate);
+                    return true;
+                }
+            }
+            return false;
+        } else if (term.startsWith(">") || term.startsWith("<")) {
+            boolean inclusive = term.length() > 1 && term.charAt(1) == '=';
+            long bytes = parseSize(term.substring(inclusive ? 2 : 1));
+            if (bytes < 0) {
+                return false;
+            }
+            if (term.startsWith(">")) {
+                minSize(inclusive ? bytes : bytes + 1);
+            } else {
+                maxSize(inclusive ? bytes : bytes - 1);
+            }
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    // 50mb, 1.5gb, 700kb or plain bytes; -1 when it is not a size
+    private static long parseSize(String text) {
+        long unit = 1;
+        String number = text;
+        for (String[] suffix : new String[][]{{"kb", "1024"}, {"mb", "1048576"}, {"gb", "1073741824"}, {"b", "1"}}) {
+            if (text.endsWith(suffix[0])) {
+                unit = Long.parseLong(suffix[1]);
+                number = text.substring(0, text.length() - suffix[0].length());
+                break;
+            }
+        }
+        try {
+            double value = Double.parseDouble(number);
+            return value >= 0 ? (long) (value * unit) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public FileQuery inputFormat(String inputFormat) {
+        this.inputFormat = inputFormat == null ? null : inputFormat.toLowerCase(Locale.ROOT);
+        return this;
+    }
+
+    public FileQuery targetFormat(String targetFormat) {
+        this.targetFormat = targetFormat == null ? null : targetFormat.toLowerCase(Locale.ROOT);
+        return this;
+    }
+
+    public FileQuery status(FileStatus status) {
+        this.status = status;
+        return this;
+    }
+
+    public FileQuery minSize(long minSize) {
+        this.minSize = minSize;
+        return this;
+    }
+
+    public FileQuery maxSize(long maxSize) {
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    public FileQuery namePrefix(String namePrefix) {
+        this.namePrefix = namePrefix == null || namePrefix.isEmpty() ? null : namePrefix.toLowerCase(Locale.ROOT);
+        return this;
+    }
+
+    public FileQuery sortBy(SortKey sortKey, boolean descending) {
+        this.sortKey = sortKey;
+        this.descending = descending;
+        return this;
+    }
+
+    public String getInputFormat() { return inputFormat; }
+    public String getTargetFormat() { return targetFormat; }
+    public FileStatus getStatus() { return status; }
+    public long getMinSize() { return minSize; }
+    public long getMaxSize() { return maxSize; }
+    public String getNamePrefix() { return namePrefix; }
+    public SortKey getSortKey() { return sortKey; }
+    public boolean isDescending() { return descending; }
+}
@@ -1,26 +1,63 @@
 package se233.project1.view;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import se233.project1.controller.ArchiveSink;
+import se233.project1.controller.BatchManifest;
+import se233.project1.controller.BatchOutcome;
+import se233.project1.controller.BatchState;
+import se233.project1.controller.ClipBatcher;
 import se233.project1.controller.Configr;
 import se233.project1.controller.Conversion;
+import se233.project1.controller.DirectorySink;
 import se233.project1.controller.DropZone;
+import se233.project1.controller.DuplicateFinder;
+import se233.project1.controller.EncoderBinary;
+import se233.project1.controller.ManifestJson;
+import se233.project1.controller.OutputSink;
+import se233.project1.controller.OutputVerifier;
+import se233.project1.controller.Quarantine;
+import se233.project1.controller.ReportWriter;
+import se233.project1.controller.StartupBenchmark;
+import se233.project1.controller.Waveform;
+import se233.project1.controller.WaveformService;
 import se233.project1.model.ConversionConfig;
+import se233.project1.model.FileQuery;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.List;
 
 public class AudioConverter extends Application {
+    private static final String REPORT_NONE = "No report";
+    private static final String REPORT_CSV = "CSV report";
+    private static final String REPORT_JSON_LINES = "JSON Lines report";
+    private static final String LOUDNESS_OFF = "Keep source level";
+    private static final String[] LOUDNESS_TARGETS = {LOUDNESS_OFF, "-14 LUFS", "-16 LUFS", "-23 LUFS"};
+    private static final int WAVEFORM_WIDTH = 120;
+    private static final int WAVEFORM_HEIGHT = 30;
+    private static final String SORT_ADDED = "Order added";
+    private static final String SORT_NAME = "Name";
+    private static final String SORT_LARGEST = "Largest first";
+    private static final String SORT_SMALLEST = "Smallest first";
+    private static final String SORT_INPUT_FORMAT = "Input format";
+    private static final String SORT_TARGET_FORMAT = "Target format";
+    private static final String SORT_STATUS = "Status";
 
     private Stage primaryStage;
     private ConversionConfig config;
@@ -28,19 +65,31 @@ public class AudioConverter extends Application {
     private Configr configController;
     private Conversion conversionController;
     private BatchConverter batchConverter;
+    private DuplicateFinder duplicateFinder;
+    private WaveformService waveformService;
 
     private VBox mainContainer;
     private VBox dropZoneView;
     private VBox configurationPanel;
     private ListView<ConversionConfig.FileConversionSettings> fileList;
+    private TextField searchField;
+    private ComboBox<String> sortCombo;
+    private Label matchLabel;
     private Button convertButton;
+    private CheckBox packageOutputsCheckBox;
+    private CheckBox verifyOutputsCheckBox;
+    private ComboBox<String> reportCombo;
     private Button clearButton;
     private ProgressBar progressBar;
     private Label statusLabel;
     private TextArea logArea;
+    private final StringBuilder pendingLog = new StringBuilder();
 
+    // Only the drop zone is built on launch; the configuration panel, the conversion engine and the thumbnail
+    // summariser are created when the first files arrive, and the engine is warmed in the background meanwhile
     @Override
     public void start(Stage primaryStage) {
+        long startNanos = System.nanoTime();
         this.primaryStage = primaryStage;
 
         initializeControllers();
@@ -54,30 +103,89 @@ public class AudioConverter extends Application {
         primaryStage.setMinWidth(900);
         primaryStage.setMinHeight(800);
         primaryStage.setOnCloseRequest(e -> {
-            conversionController.shutdown();
+            if (conversionController != null) {
+                conversionController.shutdown();
+            }
+            if (waveformService != null) {
+                waveformService.shutdown();
+            }
             Platform.exit();
         });
         primaryStage.show();
+
+        // Runs after the first frame has been laid out
+        Platform.runLater(() -> {
+            StartupBenchmark.Timing timing = StartupBenchmark.Timing.since(startNanos);
+            if (StartupBenchmark.isProbe()) {
+                StartupBenchmark.report(timing);
+                Platform.exit();
+                return;
+            }
+            logMessage("🚀 Started in " + timing);
+            warmUpInBackground();
+        });
     }
 
     private void initializeControllers() {
         config = new ConversionConfig();
         dropZoneController = new DropZone(config);
         configController = new Configr(config);
-        conversionController = new Conversion(config);
-        batchConverter = new BatchConverter();
-
-        setupControllerCallbacks();
-    }
 
-    private void setupControllerCallbacks() {
         dropZoneController.setOnFilesDropped(this::onFilesDropped);
         dropZoneController.setOnDragEntered(this::onDragEntered);
         dropZoneController.setOnDragExited(this::onDragExited);
+    }
+
+    // The engine is built on first use; warmUpInBackground() usually gets there first
+    private synchronized Conversion conversion() {
+        if (conversionController == null) {
+            conversionController = new Conversion(config);
+            conversionController.setClipBatcher(new ClipBatcher());
+            conversionController.setLogCallback(this::logMessage);
+        }
+        return conversionController;
+    }
 
-        conversionController.setLogCallback(this::logMessage);
-        conversionController.setProgressCallback(this::updateProgress);
-        conversionController.setStatusCallback(this::updateStatus);
+    private synchronized BatchConverter batchConverter() {
+        if (batchConverter == null) {
+            batchConverter = new BatchConverter();
+        }
+        return batchConverter;
+    }
+
+    private synchronized DuplicateFinder duplicateFinder() {
+        if (duplicateFinder == null) {
+            duplicateFinder = new DuplicateFinder();
+        }
+        return duplicateFinder;
+    }
+
+    // Hashes the new files off the FX thread; identical inputs are then converted once per batch
+    private void findDuplicatesInBackground() {
+        List<ConversionConfig.FileConversionSettings> snapshot = config.getAllFileSettings();
+        Thread scan = new Thread(() -> {
+            long started = System.nanoTime();
+            List<List<ConversionConfig.FileConversionSettings>> groups = duplicateFinder().find(snapshot);
+            int copies = groups.stream().mapToInt(group -> group.size() - 1).sum();
+            if (copies > 0) {
+                logMessage("🔁 " + copies + " file(s) have the same content as another input (" + groups.size() +
+                        " group(s), found in " + (System.nanoTime() - started) / 1_000_000 + " ms); each group converts once");
+            }
+        }, "duplicate-scan");
+        scan.setDaemon(true);
+        scan.start();
+    }
+
+    // Loads the engine classes and finds the encoder while the user is still choosing files
+    private void warmUpInBackground() {
+        Thread warmUp = new Thread(() -> {
+            EncoderBinary.warmUp();
+            conversion();
+            batchConverter();
+        }, "startup-warm-up");
+        warmUp.setDaemon(true);
+        warmUp.setPriority(Thread.MIN_PRIORITY);
+        warmUp.start();
     }
 
     private void initializeUI() {
@@ -87,10 +195,22 @@ public class AudioConverter extends Application {
         mainContainer.setStyle("-fx-background-color: #f0f2f5;");
 
         createDropZone();
-        createConfigurationPanel();
+        mainContainer.getChildren().addAll(createHeader(), dropZoneView);
+    }
 
-        configurationPanel.setVisible(false);
-        mainContainer.getChildren().addAll(createHeader(), dropZoneView, configurationPanel);
+    private void showConfigurationPanel() {
+        if (configurationPanel == null) {
+            waveformService = new WaveformService();
+            createConfigurationPanel();
+            clearButton.setOnAction(e -> clearFiles());
+            convertButton.setOnAction(e -> startConversion());
+            mainContainer.getChildren().add(configurationPanel);
+            if (pendingLog.length() > 0) {
+                logArea.appendText(pendingLog.toString());
+                pendingLog.setLength(0);
+            }
+        }
+        configurationPanel.setVisible(true);
     }
 
     private VBox createHeader() {
@@ -128,7 +248,7 @@ public class AudioConverter extends Application {
         dropLabel.setFont(Font.font("Arial", FontWeight.BOLD, 18));
         dropLabel.setTextFill(Color.web("#34495e"));
 
-        Label supportedLabel = new Label("Supported: MP3, WAV, M4A, FLAC");
+        Label supportedLabel = new Label("Supported: MP3, WAV, M4A, FLAC (also inside ZIP and TAR archives)");
         supportedLabel.setFont(Font.font("Arial", 13));
         supportedLabel.setTextFill(Color.web("#7f8c8d"));
 
@@ -136,7 +256,15 @@ public class AudioConverter extends Application {
         instructionLabel.setFont(Font.font("Arial", 12));
         instructionLabel.setTextFill(Color.web("#95a5a6"));
 
-        dropZoneView.getChildren().addAll(dropIcon, dropLabel, supportedLabel, instructionLabel);
+        Button openBatchButton = new Button("Open Saved Batch...");
+        openBatchButton.setStyle(
+                "-fx-background-color: transparent; " +
+                        "-fx-text-fill: #2980b9; " +
+                        "-fx-underline: true;"
+        );
+        openBatchButton.setOnAction(e -> openBatch());
+
+        dropZoneView.getChildren().addAll(dropIcon, dropLabel, supportedLabel, instructionLabel, openBatchButton);
     }
 
     private void createConfigurationPanel() {
@@ -172,6 +300,25 @@ public class AudioConverter extends Application {
         fileList.setStyle("-fx-background-radius: 8; -fx-border-color: #ecf0f1; -fx-border-radius: 8;");
         fileList.setCellFactory(param -> new FileConversionCell());
 
+        // Every keystroke is one indexed query; only the matching rows are handed to the list
+        searchField = new TextField();
+        searchField.setPromptText("Search: name  in:m4a  to:wav  >50mb  status:failed");
+        searchField.textProperty().addListener((obs, old, text) -> updateFileList());
+        HBox.setHgrow(searchField, Priority.ALWAYS);
+
+        sortCombo = new ComboBox<>();
+        sortCombo.getItems().addAll(SORT_ADDED, SORT_NAME, SORT_LARGEST, SORT_SMALLEST, SORT_INPUT_FORMAT,
+                SORT_TARGET_FORMAT, SORT_STATUS);
+        sortCombo.setValue(SORT_ADDED);
+        sortCombo.setOnAction(e -> updateFileList());
+
+        HBox searchBox = new HBox(10, searchField, sortCombo);
+        searchBox.setAlignment(Pos.CENTER_LEFT);
+
+        matchLabel = new Label();
+        matchLabel.setFont(Font.font("Arial", 11));
+        matchLabel.setTextFill(Color.web("#7f8c8d"));
+
         clearButton = new Button("Clear All");
         clearButton.setStyle(
                 "-fx-background-color: #e74c3c; " +
@@ -181,10 +328,32 @@ public class AudioConverter extends Application {
                         "-fx-padding: 8 16;"
         );
 
-        HBox buttonBox = new HBox(clearButton);
+        Region buttonSpacer = new Region();
+        HBox.setHgrow(buttonSpacer, Priority.ALWAYS);
+        Button saveBatchButton = new Button("Save Batch...");
+        saveBatchButton.setStyle(
+                "-fx-background-color: #7f8c8d; " +
+                        "-fx-text-fill: white; " +
+                        "-fx-font-weight: bold; " +
+                        "-fx-background-radius: 6; " +
+                        "-fx-padding: 8 16;"
+        );
+        saveBatchButton.setOnAction(e -> saveBatch());
+
+        Button clearQuarantineButton = new Button("Retry Quarantined");
+        clearQuarantineButton.setStyle(
+                "-fx-background-color: #7f8c8d; " +
+                        "-fx-text-fill: white; " +
+                        "-fx-font-weight: bold; " +
+                        "-fx-background-radius: 6; " +
+                        "-fx-padding: 8 16;"
+        );
+        clearQuarantineButton.setOnAction(e -> clearQuarantine());
+
+        HBox buttonBox = new HBox(10, matchLabel, buttonSpacer, clearQuarantineButton, saveBatchButton, clearButton);
         buttonBox.setAlignment(Pos.CENTER_RIGHT);
 
-        return new VBox(10, filesLabel, fileList, buttonBox);
+        return new VBox(10, filesLabel, searchBox, fileList, buttonBox);
     }
 
     // Custom ListCell for individual file configuration
@@ -193,6 +362,8 @@ public class AudioConverter extends Application {
         private VBox infoBox;
         private Label fileNameLabel;
         private Label fileSizeLabel;
+        private Canvas waveformCanvas;
+        private WaveformService.Request waveformRequest;
         private ComboBox<String> formatCombo;
         private ComboBox<String> qualityCombo;
         private Button settingsButton;
@@ -213,6 +384,9 @@ public class AudioConverter extends Application {
             infoBox = new VBox(3, fileNameLabel, fileSizeLabel);
             infoBox.setPrefWidth(250);
 
+            // Filled in from the background summariser; only cells for visible rows exist, so only they ask
+            waveformCanvas = new Canvas(WAVEFORM_WIDTH, WAVEFORM_HEIGHT);
+
             // Format combo
             formatCombo = new ComboBox<>();
             formatCombo.getItems().addAll(configController.getSupportedFormats());
@@ -266,19 +440,40 @@ public class AudioConverter extends Application {
             content.setAlignment(Pos.CENTER_LEFT);
             content.setPadding(new Insets(10));
             content.setStyle("-fx-background-color: #f8f9fa; -fx-background-radius: 8;");
-            content.getChildren().addAll(infoBox, spacer, formatBox, qualityBox, settingsButton, removeButton);
+            content.getChildren().addAll(infoBox, waveformCanvas, spacer, formatBox, qualityBox, settingsButton, removeButton);
         }
 
         @Override
         protected void updateItem(ConversionConfig.FileConversionSettings item, boolean empty) {
             super.updateItem(item, empty);
+            if (waveformRequest != null) {
+                waveformRequest.cancel();
+                waveformRequest = null;
+            }
 
             if (empty || item == null) {
                 setGraphic(null);
             } else {
                 File file = item.getInputFile();
                 fileNameLabel.setText("📄 " + file.getName());
-                fileSizeLabel.setText(getFileSize(file) + " • " + getFileExtension(file.getName()).toUpperCase());
+                int extraOutputs = item.getExtraOutputTargets().size();
+                String details = formatSize(item.getInputSize()) + " • " + getFileExtension(file.getName()).toUpperCase() +
+                        (extraOutputs > 0 ? " • +" + extraOutputs + " output(s)" : "") + describeStatus(item.getStatus());
+                fileSizeLabel.setText(details);
+
+                waveformCanvas.getGraphicsContext2D().clearRect(0, 0, WAVEFORM_WIDTH, WAVEFORM_HEIGHT);
+                if (!item.isArchiveEntry()) {
+                    waveformRequest = waveformService.request(file, waveform -> Platform.runLater(() -> {
+                        if (getItem() == item && waveform != null) {
+                            drawWaveform(waveformCanvas.getGraphicsContext2D(), waveform);
+                            if (waveform.isSilent()) {
+                                fileSizeLabel.setText(details + " • silent");
+                            } else if (waveform.isClipped()) {
+                                fileSizeLabel.setText(details + " • ⚠ clipped");
+                            }
+                        }
+                    }));
+                }
 
                 // Set format
                 formatCombo.setValue(item.getOutputFormat());
@@ -318,6 +513,22 @@ public class AudioConverter extends Application {
         }
     }
 
+    // One vertical min/max line per pixel, red when the file clips and grey when it is silent
+    private static void drawWaveform(GraphicsContext graphics, Waveform waveform) {
+        graphics.clearRect(0, 0, WAVEFORM_WIDTH, WAVEFORM_HEIGHT);
+        graphics.setStroke(waveform.isClipped() ? Color.web("#e74c3c")
+                : waveform.isSilent() ? Color.web("#bdc3c7") : Color.web("#3498db"));
+        int level = waveform.levelFor(WAVEFORM_WIDTH);
+        int blocks = waveform.getBlocks(level);
+        double middle = WAVEFORM_HEIGHT / 2.0;
+        for (int x = 0; x < WAVEFORM_WIDTH; x++) {
+            int block = x * blocks / WAVEFORM_WIDTH;
+            double top = middle - waveform.getMaximum(level, block) * middle;
+            double bottom = middle - waveform.getMinimum(level, block) * middle;
+            graphics.strokeLine(x + 0.5, top, x + 0.5, Math.max(bottom, top + 1));
+        }
+    }
+
     private void updateQualityComboForItem(ConversionConfig.FileConversionSettings item,
                                            ComboBox<String> combo, String format) {
         combo.getItems().clear();
@@ -353,8 +564,56 @@ public class AudioConverter extends Application {
         channelsCombo.setValue(fileSettings.getChannels());
         channelsCombo.setPrefWidth(150);
 
+        Label loudnessLabel = new Label("Normalise to:");
+        ComboBox<String> loudnessCombo = new ComboBox<>();
+        loudnessCombo.getItems().addAll(LOUDNESS_TARGETS);
+        loudnessCombo.setValue(fileSettings.getTargetLufs() == null ? LOUDNESS_OFF
+                : Math.round(fileSettings.getTargetLufs()) + " LUFS");
+        loudnessCombo.setPrefWidth(150);
+
+        // Extra outputs are encoded from the same decode pass as the main format
+        Label extraLabel = new Label("Extra Outputs:");
+        ComboBox<String> extraFormatCombo = new ComboBox<>();
+        extraFormatCombo.getItems().addAll(configController.getSupportedFormats());
+        extraFormatCombo.setPrefWidth(150);
+        ComboBox<String> extraQualityCombo = new ComboBox<>();
+        extraQualityCombo.setPrefWidth(150);
+        extraFormatCombo.setOnAction(e -> {
+            extraQualityCombo.getItems().clear();
+            for (Configr.QualityPreset preset : configController.getQualityPresetsForFormat(extraFormatCombo.getValue())) {
+                extraQualityCombo.getItems().add(preset.getValue());
+            }
+            if (!extraQualityCombo.getItems().isEmpty()) {
+                extraQualityCombo.setValue(extraQualityCombo.getItems().get(0));
+            }
+        });
+
+        Label extraTargetsLabel = new Label(describeExtraTargets(fileSettings));
+        extraTargetsLabel.setWrapText(true);
+
+        Button addOutputButton = new Button("Add Output");
+        addOutputButton.setOnAction(e -> {
+            if (extraFormatCombo.getValue() == null || extraQualityCombo.getValue() == null) {
+                return;
+            }
+            if (fileSettings.addOutputTarget(extraFormatCombo.getValue(), extraQualityCombo.getValue(),
+                    sampleRateCombo.getValue(), channelsCombo.getValue())) {
+                extraTargetsLabel.setText(describeExtraTargets(fileSettings));
+            }
+        });
+
+        Button clearOutputsButton = new Button("Clear Extra");
+        clearOutputsButton.setOnAction(e -> {
+            fileSettings.clearExtraOutputTargets();
+            extraTargetsLabel.setText(describeExtraTargets(fileSettings));
+        });
+
         grid.addRow(0, sampleRateLabel, sampleRateCombo);
         grid.addRow(1, channelsLabel, channelsCombo);
+        grid.addRow(2, loudnessLabel, loudnessCombo);
+        grid.addRow(3, extraLabel, extraFormatCombo, extraQualityCombo);
+        grid.addRow(4, new Label(), addOutputButton, clearOutputsButton);
+        grid.addRow(5, new Label(), extraTargetsLabel);
 
         dialog.getDialogPane().setContent(grid);
         dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
@@ -363,12 +622,29 @@ public class AudioConverter extends Application {
             if (response == ButtonType.OK) {
                 fileSettings.setSampleRate(sampleRateCombo.getValue());
                 fileSettings.setChannels(channelsCombo.getValue());
+                String loudness = loudnessCombo.getValue();
+                fileSettings.setTargetLufs(loudness == null || loudness.equals(LOUDNESS_OFF) ? null
+                        : Double.valueOf(loudness.replace(" LUFS", "")));
                 logMessage("Advanced settings updated for " + fileSettings.getInputFile().getName() +
-                        ": " + sampleRateCombo.getValue() + ", " + channelsCombo.getValue());
+                        ": " + sampleRateCombo.getValue() + ", " + channelsCombo.getValue() +
+                        (fileSettings.getTargetLufs() != null ? ", normalised to " + loudness : ""));
             }
+            fileList.refresh();
         });
     }
 
+    private String describeExtraTargets(ConversionConfig.FileConversionSettings fileSettings) {
+        List<ConversionConfig.OutputTarget> extras = fileSettings.getExtraOutputTargets();
+        if (extras.isEmpty()) {
+            return "None";
+        }
+        StringBuilder text = new StringBuilder();
+        for (ConversionConfig.OutputTarget target : extras) {
+            text.append("• ").append(target).append("\n");
+        }
+        return text.toString().trim();
+    }
+
     private VBox createConvertSection() {
         convertButton = new Button("Convert All Files");
         convertButton.setPrefWidth(250);
@@ -382,10 +658,22 @@ public class AudioConverter extends Application {
                         "-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.3), 8, 0, 0, 3);"
         );
 
+        packageOutputsCheckBox = new CheckBox("Package outputs into one ZIP");
+        verifyOutputsCheckBox = new CheckBox("Verify outputs");
+        verifyOutputsCheckBox.setTooltip(new Tooltip("Check each output's header, duration and a few sampled frames " +
+                "after it is written, and retry files that fail"));
+
         HBox convertBox = new HBox(convertButton);
         convertBox.setAlignment(Pos.CENTER);
+        reportCombo = new ComboBox<>();
+        reportCombo.getItems().addAll(REPORT_NONE, REPORT_CSV, REPORT_JSON_LINES);
+        reportCombo.setValue(REPORT_NONE);
+        reportCombo.setStyle("-fx-font-size: 11px;");
+
+        HBox packageBox = new HBox(15, packageOutputsCheckBox, verifyOutputsCheckBox, reportCombo);
+        packageBox.setAlignment(Pos.CENTER);
 
-        return new VBox(convertBox);
+        return new VBox(10, convertBox, packageBox);
     }
 
     private VBox createProgressSection() {
@@ -428,15 +716,13 @@ public class AudioConverter extends Application {
     private void setupEventHandlers() {
         dropZoneView.setOnDragOver(e -> dropZoneController.handleDragOver(e));
         dropZoneView.setOnDragDropped(e -> dropZoneController.handleDragDropped(e));
-
-        clearButton.setOnAction(e -> clearFiles());
-        convertButton.setOnAction(e -> startConversion());
     }
 
     private void onFilesDropped() {
+        showConfigurationPanel();
         updateFileList();
-        configurationPanel.setVisible(true);
         logMessage("✅ Added " + config.getInputFileCount() + " file(s)");
+        findDuplicatesInBackground();
     }
 
     private void onDragEntered() {
@@ -462,12 +748,42 @@ public class AudioConverter extends Application {
     }
 
     private void updateFileList() {
-        fileList.getItems().clear();
-        fileList.getItems().addAll(config.getAllFileSettings());
+        List<ConversionConfig.FileConversionSettings> shown = config.query(currentQuery());
+        fileList.getItems().setAll(shown);
+        int total = config.getInputFileCount();
+        matchLabel.setText(shown.size() == total ? total + " file(s)" : shown.size() + " of " + total + " file(s)");
+    }
+
+    private FileQuery currentQuery() {
+        FileQuery query = FileQuery.parse(searchField.getText());
+        String sort = sortCombo.getValue();
+        if (SORT_NAME.equals(sort)) {
+            query.sortBy(FileQuery.SortKey.NAME, false);
+        } else if (SORT_LARGEST.equals(sort)) {
+            query.sortBy(FileQuery.SortKey.SIZE, true);
+        } else if (SORT_SMALLEST.equals(sort)) {
+            query.sortBy(FileQuery.SortKey.SIZE, false);
+        } else if (SORT_INPUT_FORMAT.equals(sort)) {
+            query.sortBy(FileQuery.SortKey.INPUT_FORMAT, false);
+        } else if (SORT_TARGET_FORMAT.equals(sort)) {
+            query.sortBy(FileQuery.SortKey.TARGET_FORMAT, false);
+        } else if (SORT_STATUS.equals(sort)) {
+            query.sortBy(FileQuery.SortKey.STATUS, false);
+        }
+        return query;
+    }
+
+    private static String describeStatus(ConversionConfig.FileStatus status) {
+        return switch (status) {
+            case PENDING -> "";
+            case CONVERTING -> " • converting";
+            case CONVERTED -> " • ✓ converted";
+            case FAILED -> " • ✗ failed";
+            case SKIPPED -> " • skipped";
+        };
     }
 
-    private String getFileSize(File file) {
-        long bytes = file.length();
+    private String formatSize(long bytes) {
         if (bytes < 1024) return bytes + " B";
         if (bytes < 1024 * 1024) return String.format("%.1f KB", bytes / 1024.0);
         return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
@@ -478,6 +794,68 @@ public class AudioConverter extends Application {
         return lastDot > 0 ? fileName.substring(lastDot + 1) : "";
     }
 
+    private FileChooser batchChooser(String title) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(title);
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Batch manifest", "*." + BatchManifest.EXTENSION),
+                new FileChooser.ExtensionFilter("JSON", "*.json"));
+        return chooser;
+    }
+
+    // Inputs are not re-validated on load; a file that has gone missing fails its own job
+    private void openBatch() {
+        File file = batchChooser("Open Saved Batch").showOpenDialog(primaryStage);
+        if (file == null) return;
+
+        long started = System.nanoTime();
+        int added;
+        try {
+            if (file.getName().toLowerCase().endsWith(".json")) {
+                added = ManifestJson.importInto(config, file);
+            } else {
+                added = BatchManifest.open(file).loadInto(config);
+            }
+        } catch (IOException ex) {
+            showAlert("Cannot Open Batch", ex.getMessage());
+            return;
+        }
+        showConfigurationPanel();
+        updateFileList();
+        logMessage("📂 Loaded " + added + " file(s) from " + file.getName() + " in " +
+                (System.nanoTime() - started) / 1_000_000 + " ms");
+        findDuplicatesInBackground();
+    }
+
+    private void saveBatch() {
+        File file = batchChooser("Save Batch").showSaveDialog(primaryStage);
+        if (file == null) return;
+
+        boolean json = file.getName().toLowerCase().endsWith(".json");
+        if (!json && !file.getName().contains(".")) {
+            file = new File(file.getParentFile(), file.getName() + "." + BatchManifest.EXTENSION);
+        }
+        try {
+            if (json) {
+                ManifestJson.export(config, file);
+            } else {
+                BatchManifest.save(config, file);
+            }
+            logMessage("💾 Saved " + config.getInputFileCount() + " file(s) to " + file.getName());
+        } catch (IOException ex) {
+            showAlert("Cannot Save Batch", ex.getMessage());
+        }
+    }
+
+    // Inputs that failed every attempt are skipped by later batches until this lets them run again
+    private void clearQuarantine() {
+        Quarantine quarantine = conversion().getQuarantine();
+        int count = quarantine.getEntries().size();
+        quarantine.clear();
+        logMessage(count == 0 ? "No quarantined files"
+                : "🔓 Released " + count + " quarantined file(s); the next batch converts them again");
+    }
+
     private void clearFiles() {
         config.clearInputFiles();
         updateFileList();
@@ -501,24 +879,62 @@ public class AudioConverter extends Application {
 
         if (outputDir == null) return;
 
+        try {
+            BatchConverter.PreflightReport report = batchConverter().validateBatchConversion(config, outputDir);
+            if (!report.isOk()) {
+                showAlert("Cannot Start Conversion", report.summarize(10));
+                return;
+            }
+        } catch (BatchConverter.BatchConversionException ex) {
+            showAlert("Cannot Start Conversion", ex.getMessage());
+            return;
+        }
+
+        OutputSink sink;
+        File outputLocation = outputDir;
+        if (packageOutputsCheckBox.isSelected()) {
+            outputLocation = new File(outputDir, "converted_" + System.currentTimeMillis() + ".zip");
+            try {
+                sink = new ArchiveSink(outputLocation);
+            } catch (IOException ex) {
+                showAlert("Error", "Cannot create archive: " + ex.getMessage());
+                return;
+            }
+        } else {
+            sink = new DirectorySink(outputDir);
+        }
+        File finalOutputLocation = outputLocation;
+
         convertButton.setDisable(true);
         clearButton.setDisable(true);
         progressBar.setVisible(true);
         progressBar.setProgress(0);
         statusLabel.setText("🔄 Starting conversion...");
 
-        Task<Void> conversionTask = conversionController.createConversionTask(outputDir);
-
-        progressBar.setVisible(true);
-        statusLabel.setText("🔄 Starting conversion...");
+        String report = reportCombo.getValue();
+        Conversion conversion = conversion();
+        conversion.setReportFormat(REPORT_CSV.equals(report) ? ReportWriter.Format.CSV
+                : REPORT_JSON_LINES.equals(report) ? ReportWriter.Format.JSON_LINES : null);
+        conversion.setOutputVerifier(verifyOutputsCheckBox.isSelected() ? new OutputVerifier() : null);
+        Task<BatchOutcome> conversionTask = conversion.createConversionTask(sink);
+        BatchProgressTimer progressTimer = new BatchProgressTimer(conversion);
+        progressTimer.start();
 
         conversionTask.setOnSucceeded(e -> {
+            progressTimer.finish();
             convertButton.setDisable(false);
             clearButton.setDisable(false);
-            showAlert("Success", "All files converted successfully!\nOutput: " + outputDir.getAbsolutePath());
+            BatchOutcome outcome = conversionTask.getValue();
+            if (outcome.isCompleteSuccess()) {
+                showAlert("Success", "All files converted successfully!\nOutput: " + finalOutputLocation.getAbsolutePath());
+            } else {
+                showAlert("Partially Completed", outcome.summarize(10) + "\n\nOutput: " +
+                        finalOutputLocation.getAbsolutePath());
+            }
         });
 
         conversionTask.setOnFailed(e -> {
+            progressTimer.finish();
             convertButton.setDisable(false);
             clearButton.setDisable(false);
             showAlert("Error", "Conversion failed: " + conversionTask.getException().getMessage());
@@ -531,20 +947,77 @@ public class AudioConverter extends Application {
 
     }
 
+    // Lines logged before the log area exists are kept until the configuration panel is built
     private void logMessage(String message) {
-        Platform.runLater(() -> {
-            String timestamp = java.time.LocalTime.now().toString().substring(0, 8);
-            logArea.appendText("[" + timestamp + "] " + message + "\n");
-            logArea.setScrollTop(Double.MAX_VALUE);
-        });
+        Platform.runLater(() -> appendLog(logLine(message)));
     }
 
-    private void updateProgress(double progress) {
-        Platform.runLater(() -> progressBar.setProgress(progress));
+    private static String logLine(String message) {
+        String timestamp = java.time.LocalTime.now().toString().substring(0, 8);
+        return "[" + timestamp + "] " + message + "\n";
     }
 
-    private void updateStatus(String status) {
-        Platform.runLater(() -> statusLabel.setText(status));
+    private void appendLog(String text) {
+        if (logArea == null) {
+            pendingLog.append(text);
+            return;
+        }
+        logArea.appendText(text);
+        logArea.setScrollTop(Double.MAX_VALUE);
+    }
+
+    /*
+     * Draws a running batch once per frame. Workers never post to the FX thread; they update the batch state,
+     * and each frame reads it, skips the frame if nothing changed since the last one, and applies a bounded
+     * amount of log and per-file status so a burst of tiny jobs cannot stall the window.
+     */
+    private class BatchProgressTimer extends AnimationTimer {
+        private static final int LOG_LINES_PER_FRAME = 200;
+        private static final int STATUSES_PER_FRAME = 500;
+
+        private final Conversion conversion;
+        private long seenChanges = -1;
+
+        private BatchProgressTimer(Conversion conversion) {
+            this.conversion = conversion;
+        }
+
+        @Override
+        public void handle(long now) {
+            drawFrame(LOG_LINES_PER_FRAME, STATUSES_PER_FRAME);
+        }
+
+        // The last frame, once the task is done: everything still queued is drawn and the timer stops.
+        // Posted, so it also sees the final status the task sets after its handlers have run.
+        private void finish() {
+            stop();
+            Platform.runLater(() -> {
+                drawFrame(Integer.MAX_VALUE, Integer.MAX_VALUE);
+                updateFileList();
+            });
+        }
+
+        private void drawFrame(int maxLines, int maxStatuses) {
+            BatchState state = conversion.getBatchState();
+            long changes = state.getChanges();
+            if (changes == seenChanges) {
+                return;
+            }
+            progressBar.setProgress(state.getProgress());
+            statusLabel.setText(state.describe());
+
+            StringBuilder lines = new StringBuilder();
+            int drained = state.drainLog(maxLines, message -> lines.append(logLine(message)));
+            if (drained > 0) {
+                appendLog(lines.toString());
+            }
+            int published = state.publishStatuses(maxStatuses);
+            if (published > 0) {
+                fileList.refresh();
+            }
+            // Whatever stayed queued is drawn next frame even if nothing else changes
+            seenChanges = drained == maxLines || published == maxStatuses ? -1 : changes;
+        }
     }
 
     private void showAlert(String title, String message) {
@@ -1,34 +1,117 @@
 package se233.project1.view;
 
 import javafx.scene.control.Alert;
+import se233.project1.controller.OutputPlanner;
 import se233.project1.model.ConversionConfig;
+import se233.project1.model.ConversionConfig.FileConversionSettings;
+import se233.project1.model.ConversionConfig.OutputTarget;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class BatchConverter {
 
-    public void validateBatchConversion(ConversionConfig config) throws BatchConversionException {
+    // Leaves room for the file system and anything else writing to the same disk
+    private static final double SPACE_MARGIN = 1.1;
+
+    // Checks the whole batch in one parallel pass and reports every problem instead of stopping at the first one.
+    // Each input costs one attribute read plus an access check; archive members share one check of their archive.
+    public PreflightReport validateBatchConversion(ConversionConfig config, File outputDirectory)
+            throws BatchConversionException {
         if (config == null) {
             throw new BatchConversionException("Configuration cannot be null");
         }
 
-        List<File> files = config.getInputFiles();
-        if (files == null || files.isEmpty()) {
+        List<FileConversionSettings> allSettings = config.getAllFileSettings();
+        if (allSettings == null || allSettings.isEmpty()) {
             throw new BatchConversionException("No files selected for batch conversion");
         }
 
-        for (File file : files) {
-            if (!file.exists()) {
-                throw new BatchConversionException("File not found: " + file.getName());
+        Map<File, String> archiveProblems = new ConcurrentHashMap<>();
+        Queue<Problem> problems = new ConcurrentLinkedQueue<>();
+        long estimatedBytes = allSettings.parallelStream().mapToLong(settings -> {
+            File source = settings.isArchiveEntry() ? settings.getArchiveFile() : settings.getInputFile();
+            String problem = settings.isArchiveEntry()
+                    ? archiveProblems.computeIfAbsent(source, BatchConverter::checkSource)
+                    : checkSource(source);
+            if (!problem.isEmpty()) {
+                problems.add(new Problem(settings.getSourceLocation(), problem));
+                return 0;
+            }
+            long inputSize = settings.isArchiveEntry() ? settings.getInputSize() : source.length();
+            return estimateOutputBytes(settings, inputSize);
+        }).sum();
+
+        long usableBytes = -1;
+        if (outputDirectory == null || !Files.isDirectory(outputDirectory.toPath())) {
+            problems.add(new Problem(String.valueOf(outputDirectory), "Output directory does not exist"));
+        } else if (!Files.isWritable(outputDirectory.toPath())) {
+            problems.add(new Problem(outputDirectory.getPath(), "Output directory is not writable"));
+        } else {
+            try {
+                usableBytes = Files.getFileStore(outputDirectory.toPath()).getUsableSpace();
+                if (usableBytes < estimatedBytes * SPACE_MARGIN) {
+                    problems.add(new Problem(outputDirectory.getPath(), "Not enough free space: about " +
+                            toMegabytes(estimatedBytes) + " MB needed, " + toMegabytes(usableBytes) + " MB free"));
+                }
+            } catch (IOException e) {
+                problems.add(new Problem(outputDirectory.getPath(), "Cannot read free space: " + e.getMessage()));
             }
+        }
 
-            if (!file.canRead()) {
-                throw new BatchConversionException("Cannot read file: " + file.getName());
+        List<Problem> sorted = new ArrayList<>(problems);
+        sorted.sort(Comparator.comparing(Problem::getLocation));
+        return new PreflightReport(allSettings.size(), estimatedBytes, usableBytes, sorted);
+    }
+
+    // Empty when the file is usable
+    private static String checkSource(File file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return "Not a regular file";
+            }
+            if (attributes.size() == 0) {
+                return "File is empty";
+            }
+            if (!Files.isReadable(file.toPath())) {
+                return "Cannot read file";
             }
+            return "";
+        } catch (NoSuchFileException e) {
+            return "File not found";
+        } catch (IOException e) {
+            return "Cannot read attributes: " + e.getMessage();
         }
     }
 
+    // Duration is guessed from the input size and container, so no input has to be opened during pre-flight
+    private static long estimateOutputBytes(FileConversionSettings settings, long inputSize) {
+        String name = settings.getInputFile().getName().toLowerCase();
+        double inputBytesPerSecond = name.endsWith(".wav") ? 176_400 : name.endsWith(".flac") ? 100_000 : 16_000;
+        double seconds = inputSize / inputBytesPerSecond;
+        long total = 0;
+        for (OutputTarget target : settings.getOutputTargets()) {
+            total += OutputPlanner.estimateSize(seconds, target);
+        }
+        return total;
+    }
+
+    private static long toMegabytes(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+
     public void showBatchProgress(int current, int total) {
         System.out.println("Processing file " + current + " of " + total);
     }
@@ -71,6 +154,57 @@ public class BatchConverter {
         }
     }
 
+    public static class PreflightReport {
+        private final int checkedFiles;
+        private final long estimatedOutputBytes;
+        private final long usableBytes;
+        private final List<Problem> problems;
+
+        private PreflightReport(int checkedFiles, long estimatedOutputBytes, long usableBytes, List<Problem> problems) {
+            this.checkedFiles = checkedFiles;
+            this.estimatedOutputBytes = estimatedOutputBytes;
+            this.usableBytes = usableBytes;
+            this.problems = Collections.unmodifiableList(problems);
+        }
+
+        public boolean isOk() { return problems.isEmpty(); }
+        public int getCheckedFiles() { return checkedFiles; }
+        public long getEstimatedOutputBytes() { return estimatedOutputBytes; }
+        public long getUsableBytes() { return usableBytes; }
+        public List<Problem> getProblems() { return problems; }
+
+        // Lists at most maxProblems entries so a batch with thousands of missing files still fits in a dialog
+        public String summarize(int maxProblems) {
+            StringBuilder text = new StringBuilder();
+            text.append(problems.size()).append(" problem(s) in ").append(checkedFiles).append(" file(s)\n");
+            for (int i = 0; i < Math.min(maxProblems, problems.size()); i++) {
+                text.append("• ").append(problems.get(i)).append("\n");
+            }
+            if (problems.size() > maxProblems) {
+                text.append("... and ").append(problems.size() - maxProblems).append(" more\n");
+            }
+            return text.toString().trim();
+        }
+    }
+
+    public static class Problem {
+        private final String location;
+        private final String reason;
+
+        public Problem(String location, String reason) {
+            this.location = location;
+            this.reason = reason;
+        }
+
+        public String getLocation() { return location; }
+        public String getReason() { return reason; }
+
+        @Override
+        public String toString() {
+            return location + ": " + reason;
+        }
+    }
+
     public static class BatchConversionException extends Exception {
         public BatchConversionException(String message) {
             super(message);
@@ -0,0 +1,153 @@
+package se233.project1.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ArchiveSinkTest {
+    private static final int WRITE_BYTES = 64 * 1024;
+
+    @TempDir
+    File directory;
+
+    // One entry streams, the others wait on the heap until the budget is spent and then in spill files
+    @Test
+    @Timeout(60)
+    void concurrentEntriesAreStoredWhole() throws Exception {
+        File archiveFile = new File(directory, "out.zip");
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 4; i++) {
+            byte[] bytes = new byte[12 * 1024 * 1024 + i * 1000];
+            random.nextBytes(bytes);
+            contents.put("entry" + i + ".mp3", bytes);
+        }
+
+        CountDownLatch started = new CountDownLatch(contents.size());
+        ExecutorService threads = Executors.newFixedThreadPool(contents.size());
+        try (ArchiveSink sink = new ArchiveSink(archiveFile)) {
+            List<Future<Void>> writers = new ArrayList<>();
+            for (Map.Entry<String, byte[]> entry : contents.entrySet()) {
+                writers.add(threads.submit(() -> {
+                    try (OutputSink.Output output = sink.create(entry.getKey())) {
+                        byte[] bytes = entry.getValue();
+                        for (int offset = 0; offset < bytes.length; offset += WRITE_BYTES) {
+                            output.write(ByteBuffer.wrap(bytes, offset, Math.min(WRITE_BYTES, bytes.length - offset)));
+                            if (offset == 0) {
+                                started.countDown();
+                                started.await();
+                            }
+                        }
+                        output.commit();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        assertEquals(contents.keySet(), readWithCentralDirectory(archiveFile).keySet());
+        assertArchiveHolds(archiveFile, contents);
+    }
+
+    @Test
+    void abandonedEntryLeavesNoTrace() throws Exception {
+        File archiveFile = new File(directory, "out.zip");
+        try (ArchiveSink sink = new ArchiveSink(archiveFile)) {
+            OutputSink.Output failed = sink.create("failed.mp3");
+            failed.write(ByteBuffer.wrap(new byte[100_000]));
+            failed.close();
+            try (OutputSink.Output empty = sink.create("empty.mp3")) {
+                empty.commit();
+            }
+            try (OutputSink.Output kept = sink.create("kept.mp3")) {
+                kept.write(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+                kept.commit();
+            }
+        }
+        Map<String, byte[]> expected = new LinkedHashMap<>();
+        expected.put("empty.mp3", new byte[0]);
+        expected.put("kept.mp3", new byte[]{1, 2, 3});
+        assertArchiveHolds(archiveFile, expected);
+    }
+
+    // The retry of a job that committed one of its two outputs before failing writes both names again
+    @Test
+    void retryKeepsEachNameOnce() throws Exception {
+        File archiveFile = new File(directory, "out.zip");
+        try (ArchiveSink sink = new ArchiveSink(archiveFile)) {
+            try (OutputSink.Output first = sink.create("a.mp3");
+                 OutputSink.Output second = sink.create("a.ogg")) {
+                first.write(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+                first.commit();
+                second.write(ByteBuffer.wrap(new byte[]{4}));
+            }
+            try (OutputSink.Output first = sink.create("a.mp3");
+                 OutputSink.Output second = sink.create("a.ogg")) {
+                first.write(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+                second.write(ByteBuffer.wrap(new byte[]{4, 5}));
+                first.commit();
+                second.commit();
+            }
+        }
+        Map<String, byte[]> expected = new LinkedHashMap<>();
+        expected.put("a.mp3", new byte[]{1, 2, 3});
+        expected.put("a.ogg", new byte[]{4, 5});
+        assertArchiveHolds(archiveFile, expected);
+    }
+
+    // Both the central directory and a front-to-back read of the local headers must agree
+    static void assertArchiveHolds(File archiveFile, Map<String, byte[]> expected) throws IOException {
+        Map<String, byte[]> central = readWithCentralDirectory(archiveFile);
+        assertEquals(expected.keySet(), central.keySet());
+        for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+            assertArrayEquals(entry.getValue(), central.get(entry.getKey()), entry.getKey());
+        }
+
+        Map<String, byte[]> streamed = new LinkedHashMap<>();
+        try (ZipInputStream in = new ZipInputStream(new FileInputStream(archiveFile))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                streamed.put(entry.getName(), in.readAllBytes());
+            }
+        }
+        assertEquals(expected.keySet(), streamed.keySet());
+        for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+            assertArrayEquals(entry.getValue(), streamed.get(entry.getKey()), entry.getKey());
+        }
+    }
+
+    private static Map<String, byte[]> readWithCentralDirectory(File archiveFile) throws IOException {
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        try (ZipFile zip = new ZipFile(archiveFile)) {
+            for (ZipEntry entry : zip.stream().toList()) {
+                contents.put(entry.getName(), zip.getInputStream(entry).readAllBytes());
+            }
+        }
+        return contents;
+    }
+}
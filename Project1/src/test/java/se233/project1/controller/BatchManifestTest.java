@@ -0,0 +1,97 @@
+package se233.project1.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se233.project1.model.ConversionConfig;
+import se233.project1.model.ConversionConfig.FileConversionSettings;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// A batch saved and opened again, as a binary manifest and as JSON, must come back setting for setting
+class BatchManifestTest {
+    @TempDir
+    File directory;
+
+    @Test
+    void binaryManifestRoundTrips() throws IOException {
+        ConversionConfig config = sampleBatch();
+        File file = new File(directory, "batch." + BatchManifest.EXTENSION);
+        BatchManifest.save(config, file);
+
+        ConversionConfig loaded = new ConversionConfig();
+        assertEquals(config.getInputFileCount(), BatchManifest.open(file).loadInto(loaded));
+        assertEquals(describe(config), describe(loaded));
+    }
+
+    @Test
+    void jsonManifestRoundTrips() throws IOException {
+        ConversionConfig config = sampleBatch();
+        File file = new File(directory, "batch.json");
+        ManifestJson.export(config, file);
+
+        ConversionConfig loaded = new ConversionConfig();
+        assertEquals(config.getInputFileCount(), ManifestJson.importInto(loaded, file));
+        assertEquals(describe(config), describe(loaded));
+    }
+
+    @Test
+    void filesAlreadyInTheBatchAreNotAddedTwice() throws IOException {
+        ConversionConfig config = sampleBatch();
+        File file = new File(directory, "batch." + BatchManifest.EXTENSION);
+        BatchManifest.save(config, file);
+        assertEquals(0, BatchManifest.open(file).loadInto(config));
+    }
+
+    @Test
+    void truncatedManifestIsRejected() throws IOException {
+        File file = new File(directory, "batch." + BatchManifest.EXTENSION);
+        BatchManifest.save(sampleBatch(), file);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() / 2);
+        }
+        assertThrows(IOException.class, () -> BatchManifest.open(file).loadInto(new ConversionConfig()));
+    }
+
+    // Shared directories and repeated settings exercise the string and profile tables; the odd names, JSON escaping
+    private ConversionConfig sampleBatch() {
+        ConversionConfig config = new ConversionConfig();
+        File music = new File(directory, "music");
+        for (int i = 0; i < 50; i++) {
+            FileConversionSettings settings = new FileConversionSettings(new File(music, "track" + i + ".wav"));
+            settings.setOutputFormat(i % 3 == 0 ? "flac" : "mp3");
+            if (i % 5 == 0) {
+                settings.setTargetLufs(-16.0);
+            }
+            config.addSettings(settings);
+        }
+        FileConversionSettings odd = new FileConversionSettings(new File(music, "Café \"live\" \\ take\t2.m4a"));
+        odd.setQuality("320 kbps");
+        odd.setSampleRate("48000 Hz");
+        odd.setChannels("Mono");
+        odd.setBitrate("320 kbps");
+        odd.addOutputTarget("wav", "Lossless", "44100 Hz", "Stereo");
+        odd.addOutputTarget("m4a", "256 kbps", "48000 Hz", "Mono");
+        config.addSettings(odd);
+        FileConversionSettings member = new FileConversionSettings(new File(directory, "archive.zip"), "disc 1/a.flac",
+                123_456_789_012L);
+        member.setOutputFormat("wav");
+        config.addSettings(member);
+        return config;
+    }
+
+    private static List<String> describe(ConversionConfig config) {
+        List<String> lines = new ArrayList<>();
+        for (FileConversionSettings settings : config.getAllFileSettings()) {
+            lines.add(settings.getSourceLocation() + " | " + (settings.isArchiveEntry() ? settings.getInputSize() : "") +
+                    " | " + settings.getOutputTargets() + " | " + settings.getBitrate() + " | " + settings.getTargetLufs());
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,31 @@
+package se233.project1.controller;
+
+import org.junit.jupiter.api.Test;
+import se233.project1.model.ConversionConfig.FileConversionSettings;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchStateTest {
+    @Test
+    void finishedBatchKeepsNoMoreLines() {
+        BatchState state = new BatchState(List.of(new FileConversionSettings(new File("a.wav"))));
+        assertTrue(state.log("during"));
+        state.finish("done");
+        assertFalse(state.log("after"));
+
+        List<String> drained = new ArrayList<>();
+        state.drainLog(Integer.MAX_VALUE, drained::add);
+        assertEquals(List.of("during"), drained);
+    }
+
+    @Test
+    void idleStateKeepsNoLines() {
+        assertFalse(BatchState.idle().log("outside a batch"));
+    }
+}
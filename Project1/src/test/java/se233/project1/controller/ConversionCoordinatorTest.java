@@ -0,0 +1,155 @@
+package se233.project1.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import se233.project1.model.ConversionConfig;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// A coordinator and several workers on an ephemeral localhost port, converting real files
+class ConversionCoordinatorTest {
+    private static final int JOBS = 6;
+    private static final int WORKERS = 3;
+    private static final long LEASE_MILLIS = 1500;
+
+    @TempDir
+    File directory;
+
+    @Test
+    @Timeout(60)
+    void everyJobIsConvertedExactlyOnce() throws Exception {
+        File output = outputDirectory();
+        ConversionCoordinator coordinator = start(TestAudio.writeInputs(directory, JOBS));
+        try {
+            assertEquals(JOBS, runWorkers(coordinator, output));
+            assertEquals(0, coordinator.getFailedJobCount());
+            assertEquals(expectedOutputs(), TestAudio.outputNames(output));
+        } finally {
+            coordinator.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(60)
+    void leaseOfDisconnectedWorkerIsReclaimed() throws Exception {
+        File output = outputDirectory();
+        ConversionCoordinator coordinator = start(TestAudio.writeInputs(directory, JOBS));
+        try {
+            try (RawWorker killed = new RawWorker(coordinator)) {
+                assertTrue(killed.request("LEASE killed").startsWith("JOB "));
+            }
+            assertEquals(JOBS, runWorkers(coordinator, output));
+            assertEquals(0, coordinator.getFailedJobCount());
+            assertEquals(expectedOutputs(), TestAudio.outputNames(output));
+        } finally {
+            coordinator.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(60)
+    void expiredLeaseIsReclaimedAndItsLateResultIgnored() throws Exception {
+        File output = outputDirectory();
+        ConversionCoordinator coordinator = start(TestAudio.writeInputs(directory, JOBS));
+        try (RawWorker hung = new RawWorker(coordinator)) {
+            String[] job = hung.request("LEASE hung").split(" ");
+            // No heartbeats: the lease expires and a live worker converts the job instead
+            assertEquals(JOBS, runWorkers(coordinator, output));
+
+            assertEquals("STALE", hung.request("HEARTBEAT hung " + job[1] + " " + job[2]));
+            assertEquals("STALE", hung.request("FAIL " + job[1] + " " + job[2] + " late"));
+            assertEquals("STALE", hung.request("COMPLETE " + job[1] + " " + job[2]));
+            assertEquals("DONE", hung.request("LEASE hung"));
+            assertEquals(0, coordinator.getFailedJobCount());
+            assertEquals(expectedOutputs(), TestAudio.outputNames(output));
+        } finally {
+            coordinator.shutdown();
+        }
+    }
+
+    private File outputDirectory() {
+        File output = new File(directory, "out");
+        assertTrue(output.mkdir());
+        return output;
+    }
+
+    private static ConversionCoordinator start(List<File> inputs) throws IOException {
+        ConversionConfig config = new ConversionConfig();
+        for (File input : inputs) {
+            config.addInputFile(input);
+        }
+        ConversionCoordinator coordinator = new ConversionCoordinator(config, 0, LEASE_MILLIS);
+        coordinator.start();
+        return coordinator;
+    }
+
+    // Returns how many jobs the workers converted between them
+    private static int runWorkers(ConversionCoordinator coordinator, File output) throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(WORKERS);
+        try {
+            List<Future<Integer>> workers = new ArrayList<>();
+            for (int i = 0; i < WORKERS; i++) {
+                workers.add(threads.submit(() ->
+                        new ConversionWorker("localhost", coordinator.getPort(), output, LEASE_MILLIS / 5).run()));
+            }
+            int converted = 0;
+            for (Future<Integer> worker : workers) {
+                converted += worker.get();
+            }
+            coordinator.awaitCompletion();
+            return converted;
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    private static List<String> expectedOutputs() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < JOBS; i++) {
+            names.add("input" + i + "_converted.mp3");
+        }
+        names.sort(null);
+        return names;
+    }
+
+    // Speaks the protocol directly, to play a worker that dies or hangs while holding a lease
+    private static class RawWorker implements AutoCloseable {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final BufferedWriter out;
+
+        private RawWorker(ConversionCoordinator coordinator) throws IOException {
+            socket = new Socket("localhost", coordinator.getPort());
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        private String request(String line) throws IOException {
+            out.write(line);
+            out.newLine();
+            out.flush();
+            return in.readLine();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
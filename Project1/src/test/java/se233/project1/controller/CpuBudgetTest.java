@@ -0,0 +1,38 @@
+package se233.project1.controller;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CpuBudgetTest {
+    @Test
+    void busyBatchSplitsCoresEvenly() throws InterruptedException {
+        CpuBudget budget = new CpuBudget(32, 8, false);
+        for (int i = 0; i < 8; i++) {
+            assertEquals(4, budget.acquire(100).getThreads());
+        }
+    }
+
+    // The last job of a batch takes spare cores, but leaves some for a job that starts right after it
+    @Test
+    void lastJobIsCappedAtFourShares() throws InterruptedException {
+        CpuBudget budget = new CpuBudget(32, 8, false);
+        try (CpuBudget.Lease last = budget.acquire(1)) {
+            assertEquals(16, last.getThreads());
+            assertEquals(16, budget.acquire(1).getThreads());
+        }
+    }
+
+    @Test
+    void leaseHasNoCpuListWithoutPinning() throws InterruptedException {
+        CpuBudget budget = new CpuBudget(8, 2, false);
+        assertNull(budget.acquire(2).getCpuList());
+    }
+
+    @Test
+    void budgetNeedsACore() {
+        assertThrows(IllegalArgumentException.class, () -> new CpuBudget(0, 1, false));
+    }
+}
@@ -0,0 +1,65 @@
+package se233.project1.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DirectorySinkTest {
+    @TempDir
+    File directory;
+
+    @Test
+    void replacingSinkUpdatesOutputsInPlace() throws IOException {
+        DirectorySink sink = new DirectorySink(directory);
+        assertEquals("a_converted.mp3", publish(sink, "a_converted.mp3", new byte[]{1}));
+        assertEquals("a_converted.mp3", publish(sink, "a_converted.mp3", new byte[]{2}));
+        assertEquals(List.of("a_converted.mp3"), TestAudio.outputNames(directory));
+        assertArrayEquals(new byte[]{2}, Files.readAllBytes(new File(directory, "a_converted.mp3").toPath()));
+    }
+
+    @Test
+    void numberingSinkKeepsExistingOutputs() throws IOException {
+        DirectorySink sink = new DirectorySink(directory, false);
+        assertEquals("a_converted.mp3", publish(sink, "a_converted.mp3", new byte[]{1}));
+        assertEquals("a_converted_2.mp3", publish(sink, "a_converted.mp3", new byte[]{2}));
+        assertArrayEquals(new byte[]{1}, Files.readAllBytes(new File(directory, "a_converted.mp3").toPath()));
+    }
+
+    // Parts left by a crash go; a part another process is still writing, and unrelated hidden files, stay
+    @Test
+    void openingSweepsOnlyStaleParts() throws IOException {
+        File stale = part(".a_converted.mp3.1f2e3d4c5b6a7988.part", 60 * 60 * 1000);
+        File live = part(".b_converted.mp3.0123456789abcdef.part", 0);
+        File other = part(".settings.part", 60 * 60 * 1000);
+
+        new DirectorySink(directory);
+        assertFalse(stale.exists());
+        assertTrue(live.exists());
+        assertTrue(other.exists());
+    }
+
+    private static String publish(DirectorySink sink, String name, byte[] bytes) throws IOException {
+        try (OutputSink.Output output = sink.create(name)) {
+            output.write(ByteBuffer.wrap(bytes));
+            output.commit();
+            return output.getName();
+        }
+    }
+
+    private File part(String name, long ageMillis) throws IOException {
+        File file = new File(directory, name);
+        Files.write(file.toPath(), new byte[]{0});
+        assertTrue(file.setLastModified(System.currentTimeMillis() - ageMillis));
+        return file;
+    }
+}
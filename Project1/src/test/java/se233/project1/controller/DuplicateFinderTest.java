@@ -0,0 +1,91 @@
+package se233.project1.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se233.project1.model.ConversionConfig.FileConversionSettings;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DuplicateFinderTest {
+    // Past the three 64 KB sample blocks, so the middle of the file is never sampled
+    private static final int LARGE_BYTES = 1024 * 1024;
+
+    private final DuplicateFinder finder = new DuplicateFinder(2);
+    private final Random random = new Random(5);
+
+    @TempDir
+    File directory;
+
+    @AfterEach
+    void shutDown() {
+        finder.shutdown();
+    }
+
+    @Test
+    void copiesAreGroupedInInputOrder() throws IOException {
+        byte[] song = randomBytes(10_000);
+        FileConversionSettings a = input("a.wav", song);
+        FileConversionSettings unique = input("unique.wav", randomBytes(12_345));
+        FileConversionSettings sameSize = input("same-size.wav", randomBytes(10_000));
+        FileConversionSettings b = input("sub/b copy.wav", song);
+        FileConversionSettings c = input("c.flac", song);
+
+        List<List<FileConversionSettings>> groups = finder.find(List.of(a, unique, sameSize, b, c));
+        assertEquals(List.of(List.of(a, b, c)), groups);
+        assertNotNull(a.getContentKey());
+        assertEquals(a.getContentKey(), c.getContentKey());
+        assertNull(unique.getContentKey());
+        assertNull(sameSize.getContentKey());
+    }
+
+    // Head, middle and tail blocks agree, so only the full hash tells these two apart
+    @Test
+    void largeFilesDifferingBetweenSamplesAreNotCopies() throws IOException {
+        byte[] original = randomBytes(LARGE_BYTES);
+        byte[] edited = original.clone();
+        edited[LARGE_BYTES / 4] ^= 1;
+        FileConversionSettings first = input("first.wav", original);
+        FileConversionSettings second = input("second.wav", edited);
+        FileConversionSettings copy = input("copy.wav", original);
+
+        assertEquals(List.of(List.of(first, copy)), finder.find(List.of(first, second, copy)));
+        assertNull(second.getContentKey());
+    }
+
+    // Hashes are reused across scans only while the file keeps its size and modification time
+    @Test
+    void changedFileIsHashedAgain() throws IOException {
+        byte[] song = randomBytes(10_000);
+        FileConversionSettings a = input("a.wav", song);
+        FileConversionSettings b = input("b.wav", song);
+        assertEquals(1, finder.find(List.of(a, b)).size());
+
+        Files.write(b.getInputFile().toPath(), randomBytes(10_000));
+        assertTrue(b.getInputFile().setLastModified(b.getInputFile().lastModified() + 10_000));
+        assertTrue(finder.find(List.of(a, b)).isEmpty());
+        assertNull(a.getContentKey());
+    }
+
+    private FileConversionSettings input(String name, byte[] bytes) throws IOException {
+        File file = new File(directory, name);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), bytes);
+        return new FileConversionSettings(file);
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
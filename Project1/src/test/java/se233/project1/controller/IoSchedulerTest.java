@@ -0,0 +1,58 @@
+package se233.project1.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IoSchedulerTest {
+    @TempDir
+    File directory;
+
+    @Test
+    void transferTimeOfLargeCopiesDoesNotOverflow() {
+        long tenGigabytes = 10L * 1024 * 1024 * 1024;
+        assertEquals(10_000_000_000L, IoScheduler.Lane.transferNanos(tenGigabytes, tenGigabytes / 10));
+        assertEquals(1_500_000_000L, IoScheduler.Lane.transferNanos(3, 2));
+        assertEquals(Long.MAX_VALUE, IoScheduler.Lane.transferNanos(Long.MAX_VALUE, 1));
+    }
+
+    @Test
+    @Timeout(10)
+    void raisedLimitStartsWaitingJobs() throws Exception {
+        IoScheduler scheduler = new IoScheduler(4);
+        scheduler.setLimits(directory, 1, 0);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch secondStarted = new CountDownLatch(1);
+        try {
+            CompletableFuture<Void> first = scheduler.submit(directory, directory, () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, pool);
+            CompletableFuture<Void> second = scheduler.submit(directory, directory, secondStarted::countDown, pool);
+            assertFalse(secondStarted.await(200, TimeUnit.MILLISECONDS));
+
+            scheduler.setLimits(directory, 2, 0);
+            assertTrue(secondStarted.await(5, TimeUnit.SECONDS));
+            second.get();
+            assertFalse(first.isDone());
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package se233.project1.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OutputVerifierTest {
+    // MPEG-1 Layer III, 128 kbps, 44.1 kHz, no padding: 417 bytes per frame
+    private static final int MP3_HEADER = 0xFFFB9004;
+    private static final int MP3_FRAME_BYTES = 417;
+
+    private final OutputVerifier verifier = new OutputVerifier();
+
+    @TempDir
+    File directory;
+
+    @Test
+    void wholeOutputsPass() throws IOException {
+        File input = new File(directory, "input.wav");
+        TestAudio.writeWav(input, 8000, 1, 2.0);
+        File wav = new File(directory, "output.wav");
+        TestAudio.writeWav(wav, 8000, 2, 2.0);
+        File mp3 = writeMp3(new File(directory, "output.mp3"), 77);
+
+        AudioProbe.AudioInfo source = AudioProbe.probe(input);
+        assertEquals("wav header, 2.0 s of 2.0 s, 4 frame(s) sampled", verifier.verify(wav, source));
+        assertEquals("mp3 header, 2.0 s of 2.0 s, 4 frame(s) sampled", verifier.verify(mp3, source));
+    }
+
+    @Test
+    void truncatedWavIsRejected() throws IOException {
+        File wav = new File(directory, "output.wav");
+        TestAudio.writeWav(wav, 8000, 1, 2.0);
+        truncate(wav, 1000);
+        assertThrows(OutputVerifier.VerificationException.class, () -> verifier.verify(wav, null));
+    }
+
+    @Test
+    void mp3CutOffMidFrameIsRejected() throws IOException {
+        File mp3 = writeMp3(new File(directory, "output.mp3"), 77);
+        truncate(mp3, MP3_FRAME_BYTES / 2);
+        assertThrows(OutputVerifier.VerificationException.class, () -> verifier.verify(mp3, null));
+    }
+
+    @Test
+    void outputShorterThanItsInputIsRejected() throws IOException {
+        File input = new File(directory, "input.wav");
+        TestAudio.writeWav(input, 8000, 1, 4.0);
+        File wav = new File(directory, "output.wav");
+        TestAudio.writeWav(wav, 8000, 1, 2.0);
+        assertThrows(OutputVerifier.VerificationException.class, () -> verifier.verify(wav, AudioProbe.probe(input)));
+    }
+
+    @Test
+    void emptyOrUnknownOutputIsRejected() throws IOException {
+        File empty = new File(directory, "empty.mp3");
+        Files.write(empty.toPath(), new byte[0]);
+        File text = new File(directory, "notes.mp3");
+        Files.writeString(text.toPath(), "not audio at all");
+        assertThrows(OutputVerifier.VerificationException.class, () -> verifier.verify(empty, null));
+        assertThrows(OutputVerifier.VerificationException.class, () -> verifier.verify(text, null));
+    }
+
+    // Frames of silence behind valid headers; about 2 s at 26 ms per frame for 77 frames
+    private static File writeMp3(File file, int frames) throws IOException {
+        ByteBuffer mp3 = ByteBuffer.allocate(frames * MP3_FRAME_BYTES);
+        for (int i = 0; i < frames; i++) {
+            mp3.putInt(i * MP3_FRAME_BYTES, MP3_HEADER);
+        }
+        Files.write(file.toPath(), mp3.array());
+        return file;
+    }
+
+    private static void truncate(File file, int bytes) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - bytes);
+        }
+    }
+}
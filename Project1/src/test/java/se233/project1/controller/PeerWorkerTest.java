@@ -0,0 +1,133 @@
+package se233.project1.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Several peers sharing one input directory, with no coordinator between them
+class PeerWorkerTest {
+    private static final int JOBS = 6;
+    private static final int PEERS = 3;
+    private static final long LEASE_MILLIS = 1000;
+
+    @TempDir
+    File directory;
+
+    @Test
+    @Timeout(60)
+    void everyInputIsConvertedExactlyOnce() throws Exception {
+        File input = inputDirectory();
+        List<File> inputs = TestAudio.writeInputs(input, JOBS);
+        File output = new File(directory, "out");
+
+        assertEquals(JOBS, runPeers(input, output));
+        assertEquals(expectedOutputs(), TestAudio.outputNames(output));
+        for (File file : inputs) {
+            assertTrue(new File(new File(input, PeerWorker.CLAIMS_DIRECTORY), PeerWorker.keyFor(file) + ".done").isFile());
+        }
+    }
+
+    @Test
+    @Timeout(60)
+    void claimOfKilledPeerIsReclaimed() throws Exception {
+        File input = inputDirectory();
+        List<File> inputs = TestAudio.writeInputs(input, JOBS);
+        File output = new File(directory, "out");
+
+        // A peer that claimed a job and died: its lease is never renewed
+        LeaseDirectory killed = new LeaseDirectory(new File(input, PeerWorker.CLAIMS_DIRECTORY), "killed", LEASE_MILLIS);
+        LeaseDirectory.Claim orphan = killed.tryClaim(PeerWorker.keyFor(inputs.get(0)));
+        assertNotNull(orphan);
+
+        assertEquals(JOBS, runPeers(input, output));
+        assertEquals(expectedOutputs(), TestAudio.outputNames(output));
+        assertFalse(orphan.renew());
+        assertTrue(orphan.isLost());
+    }
+
+    // The lease on the first job runs out while it converts, and a rival takes the job over and finishes it first
+    @Test
+    @Timeout(60)
+    void peerThatLostItsLeasePublishesNothing() throws Exception {
+        File input = inputDirectory();
+        TestAudio.writeInputs(input, JOBS);
+        File output = new File(directory, "out");
+        assertTrue(output.mkdir());
+        File claims = new File(input, PeerWorker.CLAIMS_DIRECTORY);
+        byte[] rivalOutput = {1, 2, 3};
+        AtomicReference<String> takenOver = new AtomicReference<>();
+
+        PeerWorker peer = new PeerWorker(input, output, "mp3", LEASE_MILLIS);
+        peer.setLogCallback(message -> {
+            if (message.startsWith("Claimed ") && takenOver.compareAndSet(null, message)) {
+                String name = message.substring("Claimed ".length(), message.indexOf(" (attempt"));
+                String key = PeerWorker.keyFor(new File(input, name));
+                try {
+                    Files.writeString(new File(claims, key + ".2.lease").toPath(), "rival\t0");
+                    Files.write(new File(output, name.substring(0, name.lastIndexOf('.')) + "_converted.mp3").toPath(),
+                            rivalOutput);
+                    Files.writeString(new File(claims, key + ".done").toPath(), "rival\tdone");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+
+        assertEquals(JOBS - 1, peer.run());
+        assertEquals(expectedOutputs(), TestAudio.outputNames(output));
+        String name = takenOver.get().substring("Claimed ".length(), takenOver.get().indexOf(" (attempt"));
+        File rivals = new File(output, name.substring(0, name.lastIndexOf('.')) + "_converted.mp3");
+        assertArrayEquals(rivalOutput, Files.readAllBytes(rivals.toPath()));
+    }
+
+    private File inputDirectory() {
+        File input = new File(directory, "in");
+        assertTrue(input.mkdir());
+        return input;
+    }
+
+    // Returns how many inputs the peers converted between them
+    private static int runPeers(File input, File output) throws Exception {
+        assertTrue(output.mkdir());
+        ExecutorService threads = Executors.newFixedThreadPool(PEERS);
+        try {
+            List<Future<Integer>> peers = new ArrayList<>();
+            for (int i = 0; i < PEERS; i++) {
+                peers.add(threads.submit(() -> new PeerWorker(input, output, "mp3", LEASE_MILLIS).run()));
+            }
+            int converted = 0;
+            for (Future<Integer> peer : peers) {
+                converted += peer.get();
+            }
+            return converted;
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    private static List<String> expectedOutputs() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < JOBS; i++) {
+            names.add("input" + i + "_converted.mp3");
+        }
+        names.sort(null);
+        return names;
+    }
+}
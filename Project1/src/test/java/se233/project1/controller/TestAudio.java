@@ -0,0 +1,55 @@
+package se233.project1.controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+// Small 16-bit PCM WAV inputs for tests that run real conversions
+final class TestAudio {
+    private TestAudio() {
+    }
+
+    static List<File> writeInputs(File directory, int count) throws IOException {
+        List<File> inputs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            File input = new File(directory, "input" + i + ".wav");
+            writeWav(input, 8000, 1, 0.1 + i * 0.01);
+            inputs.add(input);
+        }
+        return inputs;
+    }
+
+    static void writeWav(File file, int sampleRate, int channels, double seconds) throws IOException {
+        int frames = (int) (sampleRate * seconds);
+        int dataLength = frames * channels * 2;
+        ByteBuffer wav = ByteBuffer.allocate(44 + dataLength).order(ByteOrder.LITTLE_ENDIAN);
+        wav.putInt(0x46464952).putInt(36 + dataLength).putInt(0x45564157);
+        wav.putInt(0x20746d66).putInt(16).putShort((short) 1).putShort((short) channels)
+                .putInt(sampleRate).putInt(sampleRate * channels * 2)
+                .putShort((short) (channels * 2)).putShort((short) 16);
+        wav.putInt(0x61746164).putInt(dataLength);
+        for (int frame = 0; frame < frames; frame++) {
+            short sample = (short) (Math.sin(2 * Math.PI * 440 * frame / sampleRate) * 8000);
+            for (int channel = 0; channel < channels; channel++) {
+                wav.putShort(sample);
+            }
+        }
+        Files.write(file.toPath(), wav.array());
+    }
+
+    static List<String> outputNames(File directory) {
+        List<String> names = new ArrayList<>();
+        File[] files = directory.listFiles(file -> file.isFile() && !file.getName().startsWith("."));
+        if (files != null) {
+            for (File file : files) {
+                names.add(file.getName());
+            }
+        }
+        names.sort(null);
+        return names;
+    }
+}
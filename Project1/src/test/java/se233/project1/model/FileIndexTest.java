@@ -0,0 +1,134 @@
+package se233.project1.model;
+
+import org.junit.jupiter.api.Test;
+import se233.project1.model.ConversionConfig.FileConversionSettings;
+import se233.project1.model.ConversionConfig.FileStatus;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Every query answered from the indexes must match a plain scan of the settings list, in the same order
+class FileIndexTest {
+    private static final String[] INPUT_FORMATS = {"mp3", "wav", "m4a", "flac"};
+    private static final String[] TARGET_FORMATS = {"mp3", "wav", "m4a", "flac"};
+    private static final String[] NAME_STARTS = {"intro", "interview", "live", "mix", "take"};
+    private static final long MB = 1024 * 1024;
+
+    private final Random random = new Random(11);
+
+    @Test
+    void queriesMatchLinearScan() {
+        ConversionConfig config = new ConversionConfig();
+        File archive = new File("batch.zip");
+        for (int i = 0; i < 3000; i++) {
+            String name = NAME_STARTS[random.nextInt(NAME_STARTS.length)] + "_" + i + "." +
+                    INPUT_FORMATS[random.nextInt(INPUT_FORMATS.length)];
+            FileConversionSettings settings = new FileConversionSettings(archive, name, random.nextInt(200) * MB / 2);
+            config.addSettings(settings);
+            settings.setOutputFormat(TARGET_FORMATS[random.nextInt(TARGET_FORMATS.length)]);
+        }
+
+        for (int round = 0; round < 5; round++) {
+            // Changes between rounds move entries between buckets, and removals leave gaps in the added order
+            List<FileConversionSettings> all = config.getAllFileSettings();
+            for (int i = 0; i < 300; i++) {
+                FileConversionSettings settings = all.get(random.nextInt(all.size()));
+                settings.setStatus(FileStatus.values()[random.nextInt(FileStatus.values().length)]);
+                settings.setOutputFormat(TARGET_FORMATS[random.nextInt(TARGET_FORMATS.length)]);
+            }
+            for (int i = 0; i < 50; i++) {
+                config.removeInputFile(all.get(random.nextInt(all.size())).getInputFile());
+            }
+
+            for (int i = 0; i < 200; i++) {
+                FileQuery query = randomQuery();
+                assertEquals(scan(config.getAllFileSettings(), query), config.query(query), describe(query));
+            }
+        }
+    }
+
+    @Test
+    void searchBoxTermsFilterTheList() {
+        ConversionConfig config = new ConversionConfig();
+        File archive = new File("batch.zip");
+        FileConversionSettings bigM4a = new FileConversionSettings(archive, "Interview.m4a", 80 * MB);
+        FileConversionSettings smallM4a = new FileConversionSettings(archive, "intro.m4a", 10 * MB);
+        FileConversionSettings bigMp3 = new FileConversionSettings(archive, "interlude.mp3", 90 * MB);
+        for (FileConversionSettings settings : List.of(bigM4a, smallM4a, bigMp3)) {
+            config.addSettings(settings);
+            settings.setOutputFormat("wav");
+        }
+
+        assertEquals(List.of(bigM4a), config.query(FileQuery.parse("in:m4a >50mb to:wav")));
+        assertEquals(List.of(bigM4a, bigMp3), config.query(FileQuery.parse("inter >50mb")));
+    }
+
+    private FileQuery randomQuery() {
+        FileQuery query = new FileQuery();
+        if (random.nextInt(3) == 0) {
+            query.inputFormat(INPUT_FORMATS[random.nextInt(INPUT_FORMATS.length)]);
+        }
+        if (random.nextInt(3) == 0) {
+            query.targetFormat(TARGET_FORMATS[random.nextInt(TARGET_FORMATS.length)]);
+        }
+        if (random.nextInt(3) == 0) {
+            query.status(FileStatus.values()[random.nextInt(FileStatus.values().length)]);
+        }
+        if (random.nextInt(3) == 0) {
+            query.minSize(random.nextInt(100) * MB);
+        }
+        if (random.nextInt(3) == 0) {
+            query.maxSize(random.nextInt(100) * MB);
+        }
+        if (random.nextInt(3) == 0) {
+            String start = NAME_STARTS[random.nextInt(NAME_STARTS.length)];
+            query.namePrefix(start.substring(0, 1 + random.nextInt(start.length())));
+        }
+        FileQuery.SortKey[] keys = FileQuery.SortKey.values();
+        return query.sortBy(keys[random.nextInt(keys.length)], random.nextBoolean());
+    }
+
+    private static List<FileConversionSettings> scan(List<FileConversionSettings> all, FileQuery query) {
+        List<FileConversionSettings> result = new ArrayList<>();
+        for (FileConversionSettings settings : all) {
+            String name = name(settings);
+            if ((query.getInputFormat() == null || name.endsWith("." + query.getInputFormat())) &&
+                    (query.getTargetFormat() == null || query.getTargetFormat().equals(settings.getOutputFormat())) &&
+                    (query.getStatus() == null || query.getStatus() == settings.getStatus()) &&
+                    settings.getInputSize() >= query.getMinSize() && settings.getInputSize() <= query.getMaxSize() &&
+                    (query.getNamePrefix() == null || name.startsWith(query.getNamePrefix()))) {
+                result.add(settings);
+            }
+        }
+        Comparator<FileConversionSettings> order = switch (query.getSortKey()) {
+            case NAME -> Comparator.comparing(FileIndexTest::name);
+            case SIZE -> Comparator.comparingLong(FileConversionSettings::getInputSize);
+            case INPUT_FORMAT -> Comparator.comparing(s -> name(s).substring(name(s).lastIndexOf('.') + 1));
+            case TARGET_FORMAT -> Comparator.comparing(FileConversionSettings::getOutputFormat);
+            case STATUS -> Comparator.comparing(FileConversionSettings::getStatus);
+            case ADDED -> (a, b) -> 0;
+        };
+        // The list is in the order files were added, and the sort is stable, so ties keep that order
+        result.sort(order);
+        if (query.isDescending()) {
+            result = result.reversed();
+        }
+        return result;
+    }
+
+    private static String name(FileConversionSettings settings) {
+        return settings.getInputFile().getName().toLowerCase(Locale.ROOT);
+    }
+
+    private static String describe(FileQuery query) {
+        return "in:" + query.getInputFormat() + " to:" + query.getTargetFormat() + " status:" + query.getStatus() +
+                " size:" + query.getMinSize() + ".." + query.getMaxSize() + " name:" + query.getNamePrefix() +
+                " sort:" + query.getSortKey() + (query.isDescending() ? " desc" : "");
+    }
+}